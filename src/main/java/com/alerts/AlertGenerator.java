@@ -2,22 +2,113 @@ package com.alerts;
 
 import com.data_management.DataStorage;
 import com.data_management.Patient;
+import com.data_management.PatientDataListener;
 import com.data_management.PatientRecord;
+import com.data_management.RecordTypes;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 /**
  * The {@code AlertGenerator} class is responsible for monitoring patient data
  * and generating alerts when certain predefined conditions are met.
- * …
+ *
+ * A generator from {@link #attach(DataStorage)} is registered as a
+ * {@link PatientDataListener}; it keeps a small {@link PatientAlertState} per
+ * patient, so every record stored in the {@link DataStorage} is evaluated as it
+ * arrives in O(1), independent of how much history the patient has. One from
+ * the constructor only evaluates on demand. {@link #evaluateData(Patient)}
+ * rebuilds that state from storage, e.g. for data that was stored before the
+ * generator existed.
+ *
+ * Alerts are de-duplicated per (patient, {@link AlertRule}) through a hash
+ * index: while a condition keeps holding it fires at most once per suppression
+ * window, and it fires again as soon as it has cleared. Entries that have not
+ * been seen for a whole window are swept, and triggered alerts go to a bounded
+ * {@link AlertHistory}, so memory does not grow with the life of the process.
+ *
+ * {@link #evaluateAll()} re-evaluates a whole cohort in parallel, e.g. after a
+ * reconnect. Alerts are collected per patient and committed in patient-ID order,
+ * so a pass produces the same history however the work was scheduled.
  */
-public class AlertGenerator {
+public class AlertGenerator implements PatientDataListener {
+    /** Default time a still-holding condition stays silent after firing. */
+    public static final long DEFAULT_SUPPRESSION_MILLIS = 5 * 60 * 1000L;
+    /** Default number of alerts kept in the history. */
+    public static final int DEFAULT_HISTORY_CAPACITY = 10_000;
+
+    private static final int RULE_COUNT = AlertRule.values().length;
+    /** Slices per worker in {@link #evaluateAll}, so uneven slices still balance out. */
+    private static final int SLICES_PER_WORKER = 4;
+
     private final DataStorage dataStorage;
-    private final List<Alert> alerts = new ArrayList<>();
+    private final long suppressionMillis;
+    private final LongSupplier clock;
+    private final AlertHistory history;
+    private final ConcurrentMap<Integer, PatientAlertState> states = new ConcurrentHashMap<>();
+    // key: patientId * RULE_COUNT + rule ordinal
+    private final ConcurrentMap<Long, Suppression> suppressions = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep = new AtomicLong();
 
+    /**
+     * Creates a generator that evaluates on demand through
+     * {@link #evaluateData(Patient)} and {@link #evaluateAll()}, with the default
+     * suppression window and history capacity. It does not listen to the
+     * storage; use {@link #attach(DataStorage)} for that.
+     *
+     * @param dataStorage storage to read from
+     */
     public AlertGenerator(DataStorage dataStorage) {
+        this(dataStorage, DEFAULT_SUPPRESSION_MILLIS, DEFAULT_HISTORY_CAPACITY, System::currentTimeMillis);
+    }
+
+    private AlertGenerator(DataStorage dataStorage, long suppressionMillis, int historyCapacity,
+                           LongSupplier clock) {
+        if (suppressionMillis < 1) {
+            throw new IllegalArgumentException("suppressionMillis must be positive: " + suppressionMillis);
+        }
         this.dataStorage = dataStorage;
+        this.suppressionMillis = suppressionMillis;
+        this.history = new AlertHistory(historyCapacity);
+        this.clock = clock;
+    }
+
+    /**
+     * Creates a generator with the default suppression window and history
+     * capacity and registers it with the storage.
+     *
+     * @param dataStorage storage to listen to and read from
+     * @return the listening generator
+     */
+    public static AlertGenerator attach(DataStorage dataStorage) {
+        AlertGenerator generator = new AlertGenerator(dataStorage);
+        dataStorage.addListener(generator);
+        return generator;
+    }
+
+    /**
+     * Creates a generator and registers it with the storage once it is fully
+     * constructed.
+     *
+     * @param dataStorage       storage to listen to and read from
+     * @param suppressionMillis how long a condition that keeps holding stays silent after firing
+     * @param historyCapacity   maximum number of alerts kept by {@link #getAlerts()}
+     * @param clock             time source in milliseconds since epoch
+     * @return the listening generator
+     * @throws IllegalArgumentException if {@code suppressionMillis} or {@code historyCapacity} is not positive
+     */
+    public static AlertGenerator attach(DataStorage dataStorage, long suppressionMillis, int historyCapacity,
+                                        LongSupplier clock) {
+        AlertGenerator generator = new AlertGenerator(dataStorage, suppressionMillis, historyCapacity, clock);
+        dataStorage.addListener(generator);
+        return generator;
     }
 
     /* ==============================================================
@@ -29,103 +120,239 @@ public class AlertGenerator {
      * conditions are met.  If a condition is met, an alert is triggered via
      * {@link #triggerAlert(Alert)}.
      *
+     * The patient's rule state is rebuilt from the newest stored readings,
+     * so this also resynchronises a patient whose data was stored before
+     * this generator was listening.
+     *
      * @param patient the patient data to evaluate for alert conditions
      */
     public void evaluateData(Patient patient) {
-        int    id  = patient.getPatientId();
-        long   now = System.currentTimeMillis();
-        List<PatientRecord> all =
-                dataStorage.getRecords(id, 0, now);
+        commit(evaluateFromStorage(patient.getPatientId(), clock.getAsLong()));
+    }
+
+    /**
+     * Evaluates every patient in the storage in parallel on the common
+     * fork-join pool.
+     *
+     * @return wall time and throughput of the pass
+     */
+    public EvaluationReport evaluateAll() {
+        return evaluateAll(dataStorage.getAllPatients(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Evaluates a cohort in parallel. Patients are sorted by ID and cut into
+     * contiguous slices that run on {@code executor}; each patient is evaluated
+     * exactly as {@link #evaluateData(Patient)} would. The resulting alerts are
+     * committed in patient-ID order once every slice has finished.
+     *
+     * @param patients patients to evaluate
+     * @param executor executor that runs the slices, e.g. a {@link ForkJoinPool}
+     * @return wall time and throughput of the pass
+     * @throws IllegalStateException if a slice failed or the caller was interrupted
+     */
+    public EvaluationReport evaluateAll(Collection<Patient> patients, ExecutorService executor) {
+        long start = System.nanoTime();
+        long now = clock.getAsLong();
+        int[] ids = patients.stream().mapToInt(Patient::getPatientId).sorted().toArray();
+        List<List<Alert>> results = new ArrayList<>(Collections.nCopies(ids.length, null));
+
+        int slices = Math.max(1, Math.min(ids.length,
+                Runtime.getRuntime().availableProcessors() * SLICES_PER_WORKER));
+        int sliceSize = (ids.length + slices - 1) / Math.max(1, slices);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int from = 0; from < ids.length; from += sliceSize) {
+            int sliceStart = from;
+            int sliceEnd = Math.min(ids.length, from + sliceSize);
+            futures.add(executor.submit(() -> {
+                for (int i = sliceStart; i < sliceEnd; i++) {
+                    results.set(i, evaluateFromStorage(ids[i], now));
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating patients", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Evaluating patients failed", e.getCause());
+        }
+
+        int alertCount = 0;
+        for (List<Alert> fired : results) {
+            commit(fired);
+            alertCount += fired.size();
+        }
+        return new EvaluationReport(ids.length, alertCount, System.nanoTime() - start);
+    }
+
+    /**
+     * Rebuilds one patient's rule state from the newest stored readings and
+     * evaluates it.
+     *
+     * The rebuild holds the state's monitor, so a record stored meanwhile is
+     * added by {@link #onRecord} once it is done rather than lost. A record
+     * that is both read here and delivered afterwards is only kept once.
+     *
+     * @return alerts that fired, not yet committed
+     */
+    private List<Alert> evaluateFromStorage(int id, long now) {
+        PatientAlertState state = states.computeIfAbsent(id, k -> new PatientAlertState());
+        synchronized (state) {
+            state.clear();
+            for (int type = 0; type < RecordTypes.count(); type++) {
+                RecordTypes.Category category = RecordTypes.category(type);
+                if (category == RecordTypes.Category.OTHER) {
+                    continue;
+                }
+                for (PatientRecord r : dataStorage.getLatestRecords(id, type, PatientAlertState.WINDOW)) {
+                    state.add(category, r.getTimestamp(), (int) r.getMeasurementValue());
+                }
+            }
+            return evaluate(id, state, now);
+        }
+    }
+
+    /**
+     * Updates the patient's rule state with one newly stored record and
+     * re-evaluates the rules if the record changed it.
+     */
+    @Override
+    public void onRecord(int patientId, int recordTypeId, double measurementValue, long timestamp) {
+        RecordTypes.Category category = RecordTypes.category(recordTypeId);
+        if (category == RecordTypes.Category.OTHER) {
+            return;
+        }
+        PatientAlertState state = states.computeIfAbsent(patientId, id -> new PatientAlertState());
+        synchronized (state) {
+            if (state.add(category, timestamp, (int) measurementValue)) {
+                commit(evaluate(patientId, state, clock.getAsLong()));
+            }
+        }
+    }
+
+    /** @return the most recent alerts, oldest first, at most the history capacity */
+    public List<Alert> getAlerts() {
+        return history.getAll();
+    }
+
+    /**
+     * Returns the recent alerts of one patient in a time range.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param startTime start of the range, inclusive, in milliseconds since epoch
+     * @param endTime   end of the range, inclusive, in milliseconds since epoch
+     * @return matching alerts, oldest first
+     */
+    public List<Alert> getAlerts(int patientId, long startTime, long endTime) {
+        return history.query(idString(patientId), startTime, endTime);
+    }
+
+    /* ==============================================================
+       ================  RULES  ======================================
+       ============================================================== */
+
+    /** @return alerts that fired, not yet committed */
+    private List<Alert> evaluate(int id, PatientAlertState state, long now) {
+        List<Alert> fired = new ArrayList<>(0);
 
         // --- latest individual readings ------------------------------------
-        Integer sys = latest(all, this::isSystolic);
-        Integer dia = latest(all, this::isDiastolic);
-        Integer spo = latest(all, this::isSpo2);
+        Integer sys = state.systolic.latest();
+        Integer dia = state.diastolic.latest();
+        Integer spo = state.saturation.latest();
 
         // --- 1. critical BP thresholds -------------------------------------
-        if (criticalBp(sys, dia)) {
-            triggerAlert(new Alert(idString(id),
+        if (check(id, AlertRule.CRITICAL_BP, criticalBp(sys, dia), now)) {
+            fired.add(new Alert(idString(id),
                     "Critical BP " + fmt(sys) + "/" + fmt(dia), now));
         }
 
         // --- 2. BP trend (3 consecutive ±10 mmHg steps) --------------------
-        if (trend(latestThree(all, this::isSystolic))
-                || trend(latestThree(all, this::isDiastolic))) {
-            triggerAlert(new Alert(idString(id), "BP Trend Alert", now));
+        if (check(id, AlertRule.BP_TREND, trend(state.systolic) || trend(state.diastolic), now)) {
+            fired.add(new Alert(idString(id), "BP Trend Alert", now));
         }
 
         // --- 3. persistent low SpO₂ (<92 %) --------------------------------
-        if (spo != null && spo < 92) {
-            triggerAlert(new Alert(idString(id),
+        if (check(id, AlertRule.LOW_SPO2, spo != null && spo < 92, now)) {
+            fired.add(new Alert(idString(id),
                     "Low SpO\u2082 (" + spo + "%)", now));
         }
 
         // --- 4. rapid SpO₂ drop (≥5 % between last two readings) -----------
-        if (rapidDrop(latestThree(all, this::isSpo2), 5)) {
-            triggerAlert(new Alert(idString(id), "Rapid SpO\u2082 Drop", now));
+        if (check(id, AlertRule.RAPID_SPO2_DROP, rapidDrop(state.saturation, 5), now)) {
+            fired.add(new Alert(idString(id), "Rapid SpO\u2082 Drop", now));
         }
 
         // --- 5. combined hypotensive-hypoxemia -----------------------------
-        if (sys != null && spo != null && sys < 90 && spo < 92) {
-            triggerAlert(new Alert(idString(id),
+        if (check(id, AlertRule.HYPOTENSIVE_HYPOXEMIA,
+                sys != null && spo != null && sys < 90 && spo < 92, now)) {
+            fired.add(new Alert(idString(id),
                     "Hypotensive-Hypoxemia", now));
         }
-    }
 
-    /* package-private getter used only by the JUnit tests */
-    public List<Alert> getAlerts() { return alerts; }
+        sweepExpired(now);
+        return fired;
+    }
 
     /**
-     * Triggers an alert for the monitoring system…
+     * De-duplication: decides whether a rule that was just evaluated should fire.
+     * A condition that clears is forgotten, so it fires again the next time it holds.
      *
-     * @param alert the alert object containing details about the alert condition
+     * @return {@code true} if the condition holds and is not suppressed
      */
-    private void triggerAlert(Alert alert) {
-        // avoid duplicate alerts for the same patient / condition / run
-        boolean seen = alerts.stream()
-                             .anyMatch(a -> a.getPatientId().equals(alert.getPatientId())
-                                         && a.getCondition().equals(alert.getCondition()));
-        if (!seen) {
-            alerts.add(alert);
-            System.out.printf("ALERT: patient %s - %s%n",
-                              alert.getPatientId(), alert.getCondition());
+    private boolean check(int patientId, AlertRule rule, boolean holds, long now) {
+        long key = (long) patientId * RULE_COUNT + rule.ordinal();
+        if (!holds) {
+            suppressions.remove(key);
+            return false;
+        }
+        Suppression suppression = suppressions.computeIfAbsent(key, k -> new Suppression());
+        synchronized (suppression) {
+            suppression.lastSeen = now;
+            if (suppression.fired && now - suppression.lastFired < suppressionMillis) {
+                return false;
+            }
+            suppression.fired = true;
+            suppression.lastFired = now;
+            return true;
         }
     }
 
-    /* ---------------- label helpers -------------------------------------- */
-
-    private boolean isSystolic(String t)  { return t.toLowerCase().contains("systolic"); }
-    private boolean isDiastolic(String t) { return t.toLowerCase().contains("diastolic"); }
-
-    /** any label that mentions “spo” or “saturation” counts as SpO₂ */
-    private boolean isSpo2(String t) {
-        String s = t.toLowerCase();
-        return s.contains("spo") || s.contains("saturation");
+    /**
+     * Drops index entries not seen for a whole suppression window; they would
+     * fire again anyway. Runs at most once per window, on whichever thread
+     * gets there first.
+     */
+    private void sweepExpired(long now) {
+        long due = nextSweep.get();
+        if (now < due || !nextSweep.compareAndSet(due, now + suppressionMillis)) {
+            return;
+        }
+        suppressions.values().removeIf(s -> {
+            synchronized (s) {
+                return now - s.lastSeen >= suppressionMillis;
+            }
+        });
     }
 
-    /* ---------------- data-extraction helpers ----------------------------- */
-
-    private Integer latest(List<PatientRecord> list,
-                           java.util.function.Predicate<String> labelMatch) {
-        for (int i = list.size() - 1; i >= 0; i--) {
-            PatientRecord r = list.get(i);
-            if (labelMatch.test(r.getRecordType())) {
-                return (int) r.getMeasurementValue();
-            }
+    private void commit(List<Alert> fired) {
+        for (Alert alert : fired) {
+            triggerAlert(alert);
         }
-        return null;
     }
 
-    /** newest N values (oldest-to-newest order) matching predicate */
-    private List<Integer> latestThree(List<PatientRecord> list,
-                                      java.util.function.Predicate<String> labelMatch) {
-        return list.stream()
-                   .filter(r -> labelMatch.test(r.getRecordType()))
-                   .sorted(Comparator.comparingLong(PatientRecord::getTimestamp))
-                   .map(r -> (int) r.getMeasurementValue())
-                   .collect(Collectors.collectingAndThen(
-                           Collectors.toList(),
-                           l -> l.subList(Math.max(0, l.size() - 3), l.size())));
+    /**
+     * Triggers an alert for the monitoring system…
+     *
+     * @param alert the alert object containing details about the alert condition
+     */
+    private void triggerAlert(Alert alert) {
+        history.add(alert);
+        System.out.printf("ALERT: patient %s - %s%n",
+                          alert.getPatientId(), alert.getCondition());
     }
 
     /* ---------------- rule checks ---------------------------------------- */
@@ -136,7 +363,7 @@ public class AlertGenerator {
     }
 
     /** three consecutive monotone steps of >10 mmHg */
-    private boolean trend(List<Integer> vals) {
+    private boolean trend(PatientAlertState.RecentValues vals) {
         if (vals.size() < 3) return false;
         int a = vals.get(vals.size() - 3);
         int b = vals.get(vals.size() - 2);
@@ -146,7 +373,7 @@ public class AlertGenerator {
     }
 
     /** drop of ≥delta % between the newest two SpO₂ readings */
-    private boolean rapidDrop(List<Integer> vals, int delta) {
+    private boolean rapidDrop(PatientAlertState.RecentValues vals, int delta) {
         if (vals.size() < 2) return false;
         int prev = vals.get(vals.size() - 2);
         int last = vals.get(vals.size() - 1);
@@ -155,4 +382,11 @@ public class AlertGenerator {
 
     private static String idString(int id) { return Integer.toString(id); }
     private static String fmt(Integer v)   { return v == null ? "?" : v.toString(); }
+
+    /** De-duplication entry for one (patient, rule); guarded by its own monitor. */
+    private static final class Suppression {
+        boolean fired;
+        long lastFired;
+        long lastSeen;
+    }
 }
@@ -0,0 +1,70 @@
+package com.alerts;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-capacity ring of the most recently triggered alerts. Once full, every
+ * new alert replaces the oldest one, so memory stays bounded for the life of
+ * the process.
+ *
+ * Thread-safe: all access is synchronised on the history.
+ */
+public class AlertHistory {
+    private final Alert[] ring;
+    private int next;   // slot the next alert goes to
+    private int size;
+
+    /**
+     * @param capacity maximum number of alerts kept
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public AlertHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.ring = new Alert[capacity];
+    }
+
+    /**
+     * Records an alert, evicting the oldest one when full.
+     *
+     * @param alert the alert to keep
+     */
+    public synchronized void add(Alert alert) {
+        ring[next] = alert;
+        next = (next + 1) % ring.length;
+        size = Math.min(size + 1, ring.length);
+    }
+
+    /** @return every kept alert, oldest first */
+    public synchronized List<Alert> getAll() {
+        return query(null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the kept alerts of one patient in a time range.
+     *
+     * @param patientId patient to filter by, or {@code null} for every patient
+     * @param startTime start of the range, inclusive, in milliseconds since epoch
+     * @param endTime   end of the range, inclusive, in milliseconds since epoch
+     * @return matching alerts, oldest first
+     */
+    public synchronized List<Alert> query(String patientId, long startTime, long endTime) {
+        List<Alert> result = new ArrayList<>();
+        int first = (next - size + ring.length) % ring.length;
+        for (int i = 0; i < size; i++) {
+            Alert alert = ring[(first + i) % ring.length];
+            if ((patientId == null || patientId.equals(alert.getPatientId()))
+                    && alert.getTimestamp() >= startTime && alert.getTimestamp() <= endTime) {
+                result.add(alert);
+            }
+        }
+        return result;
+    }
+
+    /** @return number of alerts currently kept */
+    public synchronized int size() {
+        return size;
+    }
+}
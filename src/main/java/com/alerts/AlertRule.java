@@ -0,0 +1,13 @@
+package com.alerts;
+
+/**
+ * The conditions {@link AlertGenerator} checks. Alerts are de-duplicated per
+ * patient and rule, independent of the values quoted in the condition text.
+ */
+enum AlertRule {
+    CRITICAL_BP,
+    BP_TREND,
+    LOW_SPO2,
+    RAPID_SPO2_DROP,
+    HYPOTENSIVE_HYPOXEMIA
+}
@@ -0,0 +1,40 @@
+package com.alerts;
+
+/**
+ * Outcome of one {@link AlertGenerator#evaluateAll} pass over a cohort.
+ */
+public class EvaluationReport {
+    private final int patientCount;
+    private final int alertCount;
+    private final long wallNanos;
+
+    public EvaluationReport(int patientCount, int alertCount, long wallNanos) {
+        this.patientCount = patientCount;
+        this.alertCount = alertCount;
+        this.wallNanos = wallNanos;
+    }
+
+    public int getPatientCount() {
+        return patientCount;
+    }
+
+    /** @return alerts triggered by this pass (after de-duplication) */
+    public int getAlertCount() {
+        return alertCount;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    /** @return patients evaluated per second of wall time */
+    public double getPatientsPerSecond() {
+        return wallNanos == 0 ? 0 : patientCount * 1_000_000_000.0 / wallNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("evaluated %d patients in %.3f ms (%.0f patients/s), %d alerts",
+                patientCount, wallNanos / 1_000_000.0, getPatientsPerSecond(), alertCount);
+    }
+}
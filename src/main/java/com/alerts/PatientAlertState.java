@@ -0,0 +1,96 @@
+package com.alerts;
+
+import com.data_management.RecordTypes;
+
+/**
+ * The little per-patient state the alert rules need: the newest
+ * {@value #WINDOW} systolic, diastolic and SpO₂ readings, ordered by timestamp.
+ * Updating it and evaluating the rules against it costs O(1) per record,
+ * however long the patient's history is.
+ *
+ * Not thread-safe; {@link AlertGenerator} locks it while updating and evaluating.
+ */
+final class PatientAlertState {
+
+    /** Readings kept per vital sign; the trend rule needs three. */
+    static final int WINDOW = 3;
+
+    final RecentValues systolic = new RecentValues();
+    final RecentValues diastolic = new RecentValues();
+    final RecentValues saturation = new RecentValues();
+
+    /**
+     * Adds one reading to the window of its vital sign.
+     *
+     * @return {@code false} if the reading was ignored: it is not a vital sign the
+     *         rules use, it is older than every reading in a full window, or the
+     *         window already holds it
+     */
+    boolean add(RecordTypes.Category category, long timestamp, int value) {
+        switch (category) {
+            case SYSTOLIC_PRESSURE:
+                return systolic.add(timestamp, value);
+            case DIASTOLIC_PRESSURE:
+                return diastolic.add(timestamp, value);
+            case SATURATION:
+                return saturation.add(timestamp, value);
+            default:
+                return false;
+        }
+    }
+
+    /** Forgets every reading, before the state is rebuilt from storage. */
+    void clear() {
+        systolic.size = 0;
+        diastolic.size = 0;
+        saturation.size = 0;
+    }
+
+    /** Newest {@value #WINDOW} readings of one vital sign, oldest first. */
+    static final class RecentValues {
+        private final long[] timestamps = new long[WINDOW];
+        private final int[] values = new int[WINDOW];
+        private int size;
+
+        boolean add(long timestamp, int value) {
+            for (int i = 0; i < size; i++) {
+                if (timestamps[i] == timestamp && values[i] == value) {
+                    return false; // read from storage by a rebuild and delivered again
+                }
+            }
+            if (size == WINDOW) {
+                if (timestamp < timestamps[0]) {
+                    return false; // late reading that is no longer among the newest
+                }
+                System.arraycopy(timestamps, 1, timestamps, 0, WINDOW - 1);
+                System.arraycopy(values, 1, values, 0, WINDOW - 1);
+                size--;
+            }
+            // insertion step; equal timestamps keep arrival order
+            int i = size;
+            while (i > 0 && timestamps[i - 1] > timestamp) {
+                timestamps[i] = timestamps[i - 1];
+                values[i] = values[i - 1];
+                i--;
+            }
+            timestamps[i] = timestamp;
+            values[i] = value;
+            size++;
+            return true;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /** @param index 0 = oldest kept reading */
+        int get(int index) {
+            return values[index];
+        }
+
+        /** @return the newest reading, or {@code null} if there is none */
+        Integer latest() {
+            return size == 0 ? null : values[size - 1];
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.cardio_generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.cardio_generator.generators.AlertGenerator;
+import com.cardio_generator.generators.BloodLevelsDataGenerator;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.BloodSaturationDataGenerator;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.SampleBatch;
+
+/**
+ * Measures how fast the generators produce samples on their own, through the
+ * same batch path the {@link TickScheduler} uses, with no output behind them.
+ *
+ * The patients are cut into one contiguous range per thread. Every thread runs
+ * all five generators over its range, one tick after the other, in slices of
+ * {@value #SLICE_SIZE} patients into its own {@link SampleBatch} that is
+ * cleared instead of written. After a warm-up the
+ * samples produced are reported in millions per second, in total and per thread.
+ * An ECG sample rate above 1 Hz benchmarks the waveform blocks instead of one
+ * ECG value per patient and tick.
+ * <pre>
+ *   java -jar cardio_generator.jar GeneratorBenchmark [patients] [threads] [seconds] [ecg-rate]
+ * </pre>
+ */
+public class GeneratorBenchmark {
+
+    private static final int DEFAULT_PATIENT_COUNT = 100_000;
+    private static final int DEFAULT_SECONDS = 10;
+    private static final long SEED = 42;
+    /** Patients generated into the batch at once, so a waveform batch stays in cache. */
+    private static final int SLICE_SIZE = 256;
+
+    /**
+     * @param args optional patient count (default {@value #DEFAULT_PATIENT_COUNT}), thread count
+     *             (default: one per core), measured seconds (default {@value #DEFAULT_SECONDS}) and
+     *             ECG sample rate in Hz (default {@value ECGDataGenerator#DEFAULT_SAMPLE_RATE_HZ})
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int patientCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PATIENT_COUNT;
+        int threadCount = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SECONDS;
+        int ecgSampleRate = args.length > 3 ? Integer.parseInt(args[3]) : ECGDataGenerator.DEFAULT_SAMPLE_RATE_HZ;
+
+        PatientDataGenerator[] generators = {
+            new ECGDataGenerator(patientCount, SEED, ecgSampleRate),
+            new BloodSaturationDataGenerator(patientCount, SEED),
+            new BloodPressureDataGenerator(patientCount, SEED),
+            new BloodLevelsDataGenerator(patientCount, SEED),
+            new AlertGenerator(patientCount, SEED)
+        };
+        int[] patientIds = new int[patientCount];
+        for (int i = 0; i < patientCount; i++) {
+            patientIds[i] = i + 1;
+        }
+
+        run(generators, patientIds, threadCount, Math.max(1, seconds / 5)); // warm-up
+        long samples = run(generators, patientIds, threadCount, seconds);
+
+        double perSecond = samples / (double) seconds / 1e6;
+        System.out.printf("%d patients, %d threads: %.2f M samples/s, %.2f M samples/s per thread%n",
+                patientCount, threadCount, perSecond, perSecond / threadCount);
+    }
+
+    /** @return samples generated by all threads within {@code seconds} */
+    private static long run(PatientDataGenerator[] generators, int[] patientIds, int threadCount, int seconds)
+            throws InterruptedException {
+        LongAdder samples = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        int rangeSize = (patientIds.length + threadCount - 1) / threadCount;
+        List<Thread> threads = new ArrayList<>();
+        for (int from = 0; from < patientIds.length; from += rangeSize) {
+            int start = from;
+            int end = Math.min(patientIds.length, from + rangeSize);
+            Thread thread = new Thread(() -> {
+                SampleBatch batch = new SampleBatch(SLICE_SIZE * 3); // grows to the largest slice
+                long generated = 0;
+                while (System.nanoTime() < deadline) {
+                    for (PatientDataGenerator generator : generators) {
+                        for (int slice = start; slice < end; slice += SLICE_SIZE) {
+                            generator.generate(patientIds, slice, Math.min(end, slice + SLICE_SIZE), batch);
+                            generated += batch.size();
+                            batch.clear();
+                        }
+                    }
+                }
+                samples.add(generated);
+            }, "generator-benchmark-" + threads.size());
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return samples.sum();
+    }
+}
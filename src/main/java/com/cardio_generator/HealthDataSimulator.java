@@ -10,6 +10,7 @@ import com.cardio_generator.generators.BloodPressureDataGenerator;
 import com.cardio_generator.generators.BloodSaturationDataGenerator;
 import com.cardio_generator.generators.BloodLevelsDataGenerator;
 import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.outputs.BinaryFileOutputStrategy;
 import com.cardio_generator.outputs.ConsoleOutputStrategy;
 import com.cardio_generator.outputs.FileOutputStrategy;
 import com.cardio_generator.outputs.OutputStrategy;
@@ -33,9 +34,19 @@ import java.util.ArrayList;
 public class HealthDataSimulator {
 
     private static int patientCount = 50; // Default number of patients
+    private static String schedulerMode = "pool"; // "pool" or "tick"
+    private static boolean schedulerSelected = false;
+    private static String executorMode = "platform"; // "platform" or "virtual"
+    private static boolean statsEnabled = false;
+    private static long segmentMinutes = 0; // 0 = one unsegmented binary file
+    private static String binaryDirectory; // set by --output binfile:<dir>, opened once all flags are read
+    private static final long STATS_INTERVAL_SECONDS = 10;
     private static ScheduledExecutorService scheduler;
+    private static SchedulingStats stats;
     private static OutputStrategy outputStrategy = new ConsoleOutputStrategy(); // Default output strategy
-    private static final Random random = new Random();
+    private static int ecgSampleRate = ECGDataGenerator.DEFAULT_SAMPLE_RATE_HZ; // > 1 emits waveform blocks
+    private static long seed = new Random().nextLong(); // replaced by --seed to repeat a run
+    private static Random random; // start offsets and patient order, seeded once the flags are read
 
     /**
      * Program entry-point.
@@ -46,13 +57,31 @@ public class HealthDataSimulator {
     public static void main(String[] args) throws IOException {
 
         parseArguments(args);
-
-        scheduler = Executors.newScheduledThreadPool(patientCount * 4);
+        random = new Random(seed);
+        // Buffered outputs (e.g. file) write their pending lines when the JVM is stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(outputStrategy::close, "output-close"));
 
         List<Integer> patientIds = initializePatientIds(patientCount);
-        Collections.shuffle(patientIds); // Randomize the order of patient IDs
+        Collections.shuffle(patientIds, random); // Randomize the order of patient IDs
 
-        scheduleTasksForPatients(patientIds);
+        if (executorMode.equals("virtual")) {
+            stats = new SchedulingStats("virtual");
+            VirtualThreadScheduler virtualScheduler = scheduleVirtualThreadsForPatients(patientIds);
+            // The thread bean only sees platform threads, so live patient threads are reported separately
+            stats.startReporting(STATS_INTERVAL_SECONDS, virtualScheduler::liveThreadCount);
+            virtualScheduler.awaitTermination();
+        } else {
+            stats = new SchedulingStats(schedulerMode);
+            if (schedulerMode.equals("tick")) {
+                scheduleTicksForPatients(patientIds);
+            } else {
+                scheduler = Executors.newScheduledThreadPool(patientCount * 4);
+                scheduleTasksForPatients(patientIds);
+            }
+            if (statsEnabled) {
+                stats.startReporting(STATS_INTERVAL_SECONDS, () -> 0);
+            }
+        }
     }
 
     /**
@@ -78,9 +107,63 @@ public class HealthDataSimulator {
                         }
                     }
                     break;
+                case "--scheduler":
+                    if (i + 1 < args.length) {
+                        String mode = args[++i];
+                        if (mode.equals("pool") || mode.equals("tick")) {
+                            schedulerMode = mode;
+                            schedulerSelected = true;
+                        } else {
+                            System.err.println("Unknown scheduler '" + mode + "'. Using default (pool).");
+                        }
+                    }
+                    break;
+                case "--executor":
+                    if (i + 1 < args.length) {
+                        String mode = args[++i];
+                        if (mode.equals("platform") || mode.equals("virtual")) {
+                            executorMode = mode;
+                        } else {
+                            System.err.println("Unknown executor '" + mode + "'. Using default (platform).");
+                        }
+                    }
+                    break;
+                case "--stats":
+                    statsEnabled = true;
+                    break;
+                case "--ecg-rate":
+                    if (i + 1 < args.length) {
+                        String rate = args[++i];
+                        if (rate.matches("\\d{1,4}")
+                                && ECGDataGenerator.isSupportedSampleRate(Integer.parseInt(rate))) {
+                            ecgSampleRate = Integer.parseInt(rate);
+                        } else {
+                            System.err.println("Error: Unsupported ECG sample rate. Using one value per second.");
+                        }
+                    }
+                    break;
+                case "--seed":
+                    if (i + 1 < args.length) {
+                        try {
+                            seed = Long.parseLong(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid seed. Using a random seed.");
+                        }
+                    }
+                    break;
+                case "--segment-minutes":
+                    if (i + 1 < args.length) {
+                        try {
+                            segmentMinutes = Long.parseLong(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid segment length. Writing a single binary file.");
+                        }
+                    }
+                    break;
                 case "--output":
                     if (i + 1 < args.length) {
                         String outputArg = args[++i];
+                        binaryDirectory = null; // the last --output wins
                         if (outputArg.equals("console")) {
                             outputStrategy = new ConsoleOutputStrategy();
                         } else if (outputArg.startsWith("file:")) {
@@ -90,11 +173,25 @@ public class HealthDataSimulator {
                                 Files.createDirectories(outputPath);
                             }
                             outputStrategy = new FileOutputStrategy(baseDirectory);
+                        } else if (outputArg.startsWith("binfile:")) {
+                            String baseDirectory = outputArg.substring(8);
+                            Path outputPath = Paths.get(baseDirectory);
+                            if (!Files.exists(outputPath)) {
+                                Files.createDirectories(outputPath);
+                            }
+                            binaryDirectory = baseDirectory;
                         } else if (outputArg.startsWith("websocket:")) {
                             try {
-                                int port = Integer.parseInt(outputArg.substring(10));
-                                // Initialize your WebSocket output strategy here
-                                outputStrategy = new WebSocketOutputStrategy(port);
+                                // websocket:<port> sends text frames, websocket:<port>:binary binary frames
+                                String[] parts = outputArg.substring(10).split(":");
+                                int port = Integer.parseInt(parts[0]);
+                                WebSocketOutputStrategy.FrameFormat format = parts.length > 1
+                                        && parts[1].equals("binary")
+                                        ? WebSocketOutputStrategy.FrameFormat.BINARY
+                                        : WebSocketOutputStrategy.FrameFormat.TEXT;
+                                outputStrategy = new WebSocketOutputStrategy(port,
+                                        WebSocketOutputStrategy.DEFAULT_FLUSH_INTERVAL_MILLIS,
+                                        WebSocketOutputStrategy.DEFAULT_MAX_BATCH_RECORDS, format);
                                 System.out.println("WebSocket output will be on port: " + port);
                             } catch (NumberFormatException e) {
                                 System.err.println(
@@ -120,6 +217,17 @@ public class HealthDataSimulator {
                     System.exit(1);
             }
         }
+        if (schedulerSelected && executorMode.equals("virtual")) {
+            System.err.println("Error: --scheduler applies to platform threads only;"
+                    + " --executor virtual schedules one thread per patient.");
+            printHelp();
+            System.exit(1);
+        }
+        if (binaryDirectory != null) {
+            outputStrategy = new BinaryFileOutputStrategy(binaryDirectory,
+                    FileOutputStrategy.DEFAULT_FLUSH_INTERVAL_MILLIS, FileOutputStrategy.SyncPolicy.ON_CLOSE,
+                    TimeUnit.MINUTES.toMillis(Math.max(0, segmentMinutes)), 0);
+        }
     }
 
     private static void printHelp() {
@@ -131,8 +239,19 @@ public class HealthDataSimulator {
         System.out.println("  --output <type>          Define the output method. Options are:");
         System.out.println("                             'console' for console output,");
         System.out.println("                             'file:<directory>' for file output,");
-        System.out.println("                             'websocket:<port>' for WebSocket output,");
+        System.out.println("                             'binfile:<directory>' for compact binary file output,");
+        System.out.println("                             'websocket:<port>' for WebSocket output");
+        System.out.println("                             (append ':binary' for binary frames),");
         System.out.println("                             'tcp:<port>' for TCP socket output.");
+        System.out.println("  --segment-minutes <n>    Roll binfile output into indexed segments of n minutes each.");
+        System.out.println("  --ecg-rate <hz>          Emit ECG as a waveform of hz samples per second, e.g. 250.");
+        System.out.println("  --seed <n>               Seed the generators to repeat the values of an earlier run.");
+        System.out.println("  --scheduler <mode>       'pool' (default) for one timer task per patient and generator,");
+        System.out.println("                             'tick' for one shared clock sweeping the patients due.");
+        System.out.println("  --executor <mode>        'platform' (default), or 'virtual' for one virtual thread per");
+        System.out.println("                             patient; cannot be combined with --scheduler.");
+        System.out.println("  --stats                  Print thread count and scheduling lateness every 10 seconds.");
+        System.out.println("                             Always on with --executor virtual.");
         System.out.println("Example:");
         System.out.println("  java HealthDataSimulator --patient-count 100 --output websocket:8080");
         System.out.println(
@@ -153,11 +272,12 @@ public class HealthDataSimulator {
      * @param patientIds shuffled list of IDs
      */
     private static void scheduleTasksForPatients(List<Integer> patientIds) {
-        ECGDataGenerator ecgDataGenerator = new ECGDataGenerator(patientCount);
-        BloodSaturationDataGenerator bloodSaturationDataGenerator = new BloodSaturationDataGenerator(patientCount);
-        BloodPressureDataGenerator bloodPressureDataGenerator = new BloodPressureDataGenerator(patientCount);
-        BloodLevelsDataGenerator bloodLevelsDataGenerator = new BloodLevelsDataGenerator(patientCount);
-        AlertGenerator alertGenerator = new AlertGenerator(patientCount);
+        ECGDataGenerator ecgDataGenerator = new ECGDataGenerator(patientCount, seed, ecgSampleRate);
+        BloodSaturationDataGenerator bloodSaturationDataGenerator =
+                new BloodSaturationDataGenerator(patientCount, seed);
+        BloodPressureDataGenerator bloodPressureDataGenerator = new BloodPressureDataGenerator(patientCount, seed);
+        BloodLevelsDataGenerator bloodLevelsDataGenerator = new BloodLevelsDataGenerator(patientCount, seed);
+        AlertGenerator alertGenerator = new AlertGenerator(patientCount, seed);
 
         for (int patientId : patientIds) {
             scheduleTask(() -> ecgDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.SECONDS);
@@ -168,6 +288,52 @@ public class HealthDataSimulator {
         }
     }
 
+    /**
+     * Register every generator once on a {@link TickScheduler}; each period is a
+     * single tick that sweeps the patients due in it.
+     *
+     * @param patientIds shuffled list of IDs
+     */
+    private static void scheduleTicksForPatients(List<Integer> patientIds) {
+        TickScheduler tickScheduler = new TickScheduler(Runtime.getRuntime().availableProcessors(), random, stats);
+
+        tickScheduler.schedule(new ECGDataGenerator(patientCount, seed, ecgSampleRate), outputStrategy, patientIds,
+                1, TimeUnit.SECONDS);
+        tickScheduler.schedule(new BloodSaturationDataGenerator(patientCount, seed), outputStrategy, patientIds,
+                1, TimeUnit.SECONDS);
+        tickScheduler.schedule(new BloodPressureDataGenerator(patientCount, seed), outputStrategy, patientIds,
+                1, TimeUnit.MINUTES);
+        tickScheduler.schedule(new BloodLevelsDataGenerator(patientCount, seed), outputStrategy, patientIds,
+                2, TimeUnit.MINUTES);
+        tickScheduler.schedule(new AlertGenerator(patientCount, seed), outputStrategy, patientIds,
+                20, TimeUnit.SECONDS);
+
+        tickScheduler.start();
+    }
+
+    /**
+     * Start one virtual thread per patient that runs all five generators.
+     *
+     * @param patientIds shuffled list of IDs
+     * @return the started scheduler
+     */
+    private static VirtualThreadScheduler scheduleVirtualThreadsForPatients(List<Integer> patientIds) {
+        VirtualThreadScheduler virtualScheduler = new VirtualThreadScheduler(random, stats);
+
+        virtualScheduler.schedule(new ECGDataGenerator(patientCount, seed, ecgSampleRate), outputStrategy,
+                1, TimeUnit.SECONDS);
+        virtualScheduler.schedule(new BloodSaturationDataGenerator(patientCount, seed), outputStrategy,
+                1, TimeUnit.SECONDS);
+        virtualScheduler.schedule(new BloodPressureDataGenerator(patientCount, seed), outputStrategy,
+                1, TimeUnit.MINUTES);
+        virtualScheduler.schedule(new BloodLevelsDataGenerator(patientCount, seed), outputStrategy,
+                2, TimeUnit.MINUTES);
+        virtualScheduler.schedule(new AlertGenerator(patientCount, seed), outputStrategy, 20, TimeUnit.SECONDS);
+
+        virtualScheduler.start(patientIds);
+        return virtualScheduler;
+    }
+
      /**
      * Convenience wrapper around {@link ScheduledExecutorService#scheduleAtFixedRate}.
      *
@@ -176,6 +342,9 @@ public class HealthDataSimulator {
      * @param unit   time unit for {@code period}
      */
     private static void scheduleTask(Runnable task, long period, TimeUnit timeUnit) {
-        scheduler.scheduleAtFixedRate(task, random.nextInt(5), period, timeUnit);
+        long initialDelay = random.nextInt(5);
+        Runnable timedTask = stats.timed(task, System.nanoTime() + timeUnit.toNanos(initialDelay),
+                timeUnit.toNanos(period));
+        scheduler.scheduleAtFixedRate(timedTask, initialDelay, period, timeUnit);
     }
 }
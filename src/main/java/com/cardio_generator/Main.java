@@ -1,6 +1,7 @@
 package com.cardio_generator;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import com.data_management.DataStorage;
 
@@ -11,11 +12,15 @@ public class Main {
      * <pre>
      *   java -jar cardio_generator.jar              → HealthDataSimulator
      *   java -jar cardio_generator.jar DataStorage  → DataStorage
+     *   java -jar cardio_generator.jar DataStorage ./output  → DataStorage, reading ./output
+     *   java -jar cardio_generator.jar GeneratorBenchmark    → GeneratorBenchmark
      * </pre>
      */
-    public static void main(String[] args) throws IOException{
+    public static void main(String[] args) throws IOException, InterruptedException {
         if (args.length > 0 && "DataStorage".equalsIgnoreCase(args[0])) {
-            DataStorage.main(new String[0]);
+            DataStorage.main(Arrays.copyOfRange(args, 1, args.length));
+        } else if (args.length > 0 && "GeneratorBenchmark".equalsIgnoreCase(args[0])) {
+            GeneratorBenchmark.main(Arrays.copyOfRange(args, 1, args.length));
         } else {
             HealthDataSimulator.main(new String[0]);
         }
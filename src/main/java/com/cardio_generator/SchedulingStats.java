@@ -0,0 +1,100 @@
+package com.cardio_generator;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Collects scheduling lateness (how long after its due time a generator run
+ * actually started) and periodically prints it together with the thread count,
+ * so the scheduler modes can be compared under the same load.
+ *
+ * Thread-safe: all counters are striped adders.
+ */
+public class SchedulingStats {
+
+    private final String mode;
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder totalLatenessNanos = new LongAdder();
+    private final LongAccumulator maxLatenessNanos = new LongAccumulator(Long::max, 0);
+    private final LongAdder skipped = new LongAdder();
+    private final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "scheduling-stats");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param mode scheduler mode name printed with every report
+     */
+    public SchedulingStats(String mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Records one run that started {@code latenessNanos} after it was due.
+     *
+     * @param latenessNanos start delay; negative values (early wake-ups) count as zero
+     */
+    public void record(long latenessNanos) {
+        long lateness = Math.max(0, latenessNanos);
+        runs.increment();
+        totalLatenessNanos.add(lateness);
+        maxLatenessNanos.accumulate(lateness);
+    }
+
+    /** Records one run that was skipped because the previous run for the same patients was still going. */
+    public void recordSkipped() {
+        skipped.increment();
+    }
+
+    /**
+     * Wraps a fixed-rate task so that every run records its lateness against
+     * the schedule {@code firstRunNanos + n * periodNanos}.
+     *
+     * @param task          the task to wrap
+     * @param firstRunNanos {@link System#nanoTime()} at which the first run is due
+     * @param periodNanos   period between two runs
+     * @return a runnable that must not be run concurrently with itself
+     */
+    public Runnable timed(Runnable task, long firstRunNanos, long periodNanos) {
+        return new Runnable() {
+            private long nextDue = firstRunNanos;
+
+            @Override
+            public void run() {
+                record(System.nanoTime() - nextDue);
+                nextDue += periodNanos;
+                task.run();
+            }
+        };
+    }
+
+    /**
+     * Prints a report to {@code System.err} every {@code intervalSeconds}.
+     * Counters are reset after each report, so every line covers one interval.
+     *
+     * @param intervalSeconds   seconds between two reports
+     * @param extraThreadCount  threads not visible to the JVM thread bean, e.g. live virtual threads
+     */
+    public void startReporting(long intervalSeconds, LongSupplier extraThreadCount) {
+        reporter.scheduleAtFixedRate(() -> report(extraThreadCount.getAsLong()),
+                intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void report(long extraThreads) {
+        long count = runs.sumThenReset();
+        long total = totalLatenessNanos.sumThenReset();
+        long max = maxLatenessNanos.getThenReset();
+        long skippedRuns = skipped.sumThenReset();
+        double averageMillis = count == 0 ? 0 : total / (double) count / 1_000_000;
+        System.err.printf("[%s] platform threads: %d, virtual threads: %d, runs: %d, skipped: %d,"
+                        + " avg lateness: %.3f ms, max lateness: %.3f ms%n",
+                mode, ManagementFactory.getThreadMXBean().getThreadCount(), extraThreads, count, skippedRuns,
+                averageMillis, max / 1_000_000.0);
+    }
+}
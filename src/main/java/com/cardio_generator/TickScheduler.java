@@ -0,0 +1,193 @@
+package com.cardio_generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
+
+/**
+ * Drives every generator from one shared clock instead of registering one
+ * {@link ScheduledExecutorService#scheduleAtFixedRate} task per patient.
+ *
+ * Each generator is registered once together with its period. Its patients are
+ * spread uniformly over phase buckets (one bucket per tick of the period), so
+ * every tick only sweeps the bucket that is due and a 1 minute generator does
+ * a sixtieth of its work per tick. A sweep is cut into slices that run on a
+ * fixed worker pool sized to the number of cores. Each slice is generated into
+ * the worker's own {@link SampleBatch} and handed to the output in one call.
+ *
+ * A generator keeps per-patient state that must only be used by one thread at
+ * a time. If the workers fall so far behind that a bucket comes due again
+ * while its previous sweep is still running, that sweep is skipped and
+ * counted instead of generating the same patients on two workers at once.
+ */
+public class TickScheduler {
+
+    /** Resolution of the shared clock; every period is a whole number of ticks. */
+    private static final long TICK_MILLIS = 1000;
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+    /** Smallest slice handed to a worker, so tiny buckets are not fanned out. */
+    private static final int MIN_SLICE_SIZE = 64;
+    /** Largest slice, so the batch of a waveform generator stays in cache. */
+    private static final int MAX_SLICE_SIZE = 256;
+
+    private final ScheduledExecutorService clock = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService workers;
+    private final int parallelism;
+    private final Random random;
+    private final SchedulingStats stats;
+    private final List<TickGroup> groups = new ArrayList<>();
+    private final ThreadLocal<SampleBatch> batches = ThreadLocal.withInitial(SampleBatch::new);
+    private final LongAdder skippedSweeps = new LongAdder();
+    private long tick;
+    private long startNanos;
+
+    /**
+     * @param parallelism number of worker threads that share a sweep
+     * @param random      source of the per-patient phases
+     * @param stats       receives the lateness of every slice and the skipped sweeps
+     */
+    public TickScheduler(int parallelism, Random random, SchedulingStats stats) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.random = random;
+        this.stats = stats;
+        this.workers = Executors.newFixedThreadPool(parallelism);
+    }
+
+    /**
+     * Registers a generator for the given patients. Must be called before {@link #start()}.
+     *
+     * @param generator      generator to run for every patient
+     * @param outputStrategy output target handed to the generator
+     * @param patientIds     patients to generate data for
+     * @param period         period between two runs for the same patient
+     * @param unit           time unit of {@code period}
+     */
+    public void schedule(PatientDataGenerator generator, OutputStrategy outputStrategy,
+                         List<Integer> patientIds, long period, TimeUnit unit) {
+        int periodTicks = (int) Math.max(1, unit.toMillis(period) / TICK_MILLIS);
+
+        List<List<Integer>> phases = new ArrayList<>(periodTicks);
+        for (int i = 0; i < periodTicks; i++) {
+            phases.add(new ArrayList<>());
+        }
+        for (int patientId : patientIds) {
+            phases.get(random.nextInt(periodTicks)).add(patientId);
+        }
+
+        int[][] buckets = new int[periodTicks][];
+        for (int i = 0; i < periodTicks; i++) {
+            buckets[i] = phases.get(i).stream().mapToInt(Integer::intValue).sorted().toArray();
+        }
+        groups.add(new TickGroup(generator, outputStrategy, buckets));
+    }
+
+    /**
+     * Starts the shared clock; the first tick fires immediately. Lateness is
+     * recorded when a worker starts a slice, against the time its tick was
+     * due, so time spent queued behind other sweeps counts as well.
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+        clock.scheduleAtFixedRate(this::tick, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param groupIndex position of the generator in registration order
+     * @return number of patients due on each tick of the generator's period
+     */
+    public int[] getBucketSizes(int groupIndex) {
+        int[][] buckets = groups.get(groupIndex).buckets;
+        int[] sizes = new int[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            sizes[i] = buckets[i].length;
+        }
+        return sizes;
+    }
+
+    /** @return sweeps skipped because the previous sweep of the same patients had not finished */
+    public long getSkippedSweeps() {
+        return skippedSweeps.sum();
+    }
+
+    /** Stops the clock and lets already submitted sweeps finish. */
+    public void shutdown() {
+        clock.shutdown();
+        workers.shutdown();
+    }
+
+    private void tick() {
+        long current = tick++;
+        long dueNanos = startNanos + current * TICK_NANOS;
+        for (TickGroup group : groups) {
+            int bucket = (int) (current % group.buckets.length);
+            if (group.buckets[bucket].length > 0) {
+                sweep(group, bucket, dueNanos);
+            }
+        }
+    }
+
+    /**
+     * Splits one due bucket into contiguous slices and hands them to the
+     * workers, unless the bucket's previous sweep is still running. Only the
+     * clock thread starts sweeps, so checking and setting the in-flight count
+     * cannot race; workers only count it down.
+     */
+    private void sweep(TickGroup group, int bucket, long dueNanos) {
+        int[] due = group.buckets[bucket];
+        AtomicInteger inFlight = group.inFlight[bucket];
+        if (inFlight.get() > 0) {
+            skippedSweeps.increment();
+            stats.recordSkipped();
+            return;
+        }
+        int sliceSize = Math.min(MAX_SLICE_SIZE,
+                Math.max(MIN_SLICE_SIZE, (due.length + parallelism - 1) / parallelism));
+        inFlight.set((due.length + sliceSize - 1) / sliceSize);
+        for (int from = 0; from < due.length; from += sliceSize) {
+            int start = from;
+            int end = Math.min(due.length, from + sliceSize);
+            workers.execute(() -> {
+                try {
+                    stats.record(System.nanoTime() - dueNanos);
+                    SampleBatch batch = batches.get();
+                    batch.clear();
+                    group.generator.generate(due, start, end, batch);
+                    group.outputStrategy.output(batch);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    /** One registered generator and its patients grouped by phase. */
+    private static final class TickGroup {
+        final PatientDataGenerator generator;
+        final OutputStrategy outputStrategy;
+        final int[][] buckets; // buckets[t % period] = patients due on tick t
+        final AtomicInteger[] inFlight; // unfinished slices of each bucket's last sweep
+
+        TickGroup(PatientDataGenerator generator, OutputStrategy outputStrategy, int[][] buckets) {
+            this.generator = generator;
+            this.outputStrategy = outputStrategy;
+            this.buckets = buckets;
+            this.inFlight = new AtomicInteger[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                inFlight[i] = new AtomicInteger();
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.cardio_generator;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+
+/**
+ * Runs one virtual thread per patient. Each thread loops over the registered
+ * generators, sleeps until the next one is due and runs it, so blocking output
+ * strategies only park a virtual thread and no platform pool has to be sized
+ * to the patient count.
+ */
+public class VirtualThreadScheduler {
+
+    /** Start offsets are drawn from {@code [0, MAX_START_OFFSET)} in the period's unit. */
+    private static final int MAX_START_OFFSET = 5;
+
+    private final Random random;
+    private final SchedulingStats stats;
+    private final List<Registration> registrations = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicLong liveThreads = new AtomicLong();
+
+    /**
+     * @param random source of the per-patient start offsets
+     * @param stats  receives the lateness of every generator run
+     */
+    public VirtualThreadScheduler(Random random, SchedulingStats stats) {
+        this.random = random;
+        this.stats = stats;
+    }
+
+    /**
+     * Registers a generator that every patient thread runs. Must be called before {@link #start(List)}.
+     *
+     * @param generator      generator to run
+     * @param outputStrategy output target handed to the generator
+     * @param period         period between two runs for the same patient
+     * @param unit           time unit of {@code period} and of the start offset
+     */
+    public void schedule(PatientDataGenerator generator, OutputStrategy outputStrategy, long period, TimeUnit unit) {
+        registrations.add(new Registration(generator, outputStrategy, unit.toNanos(period), unit));
+    }
+
+    /**
+     * Starts one virtual thread per patient.
+     *
+     * @param patientIds patients to generate data for
+     */
+    public void start(List<Integer> patientIds) {
+        long now = System.nanoTime();
+        for (int patientId : patientIds) {
+            long[] nextDue = new long[registrations.size()];
+            for (int i = 0; i < nextDue.length; i++) {
+                nextDue[i] = now + registrations.get(i).unit.toNanos(random.nextInt(MAX_START_OFFSET));
+            }
+            threads.add(Thread.ofVirtual()
+                    .name("patient-" + patientId)
+                    .start(() -> runPatient(patientId, nextDue)));
+        }
+    }
+
+    /** Interrupts every patient thread. */
+    public void shutdown() {
+        threads.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Blocks until every patient thread has finished. Virtual threads are daemon
+     * threads, so the caller must wait here to keep the JVM alive.
+     */
+    public void awaitTermination() {
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** @return number of patient threads that are still running */
+    public long liveThreadCount() {
+        return liveThreads.get();
+    }
+
+    private void runPatient(int patientId, long[] nextDue) {
+        liveThreads.incrementAndGet();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long earliest = Long.MAX_VALUE;
+                for (long due : nextDue) {
+                    earliest = Math.min(earliest, due);
+                }
+                long wait = earliest - System.nanoTime();
+                if (wait > 0) {
+                    Thread.sleep(Duration.ofNanos(wait));
+                }
+
+                long now = System.nanoTime();
+                for (int i = 0; i < nextDue.length; i++) {
+                    if (nextDue[i] <= now) {
+                        Registration registration = registrations.get(i);
+                        stats.record(now - nextDue[i]);
+                        nextDue[i] += registration.periodNanos;
+                        registration.generator.generate(patientId, registration.outputStrategy);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            liveThreads.decrementAndGet();
+        }
+    }
+
+    /** One registered generator with its period. */
+    private static final class Registration {
+        final PatientDataGenerator generator;
+        final OutputStrategy outputStrategy;
+        final long periodNanos;
+        final TimeUnit unit;
+
+        Registration(PatientDataGenerator generator, OutputStrategy outputStrategy, long periodNanos, TimeUnit unit) {
+            this.generator = generator;
+            this.outputStrategy = outputStrategy;
+            this.periodNanos = periodNanos;
+            this.unit = unit;
+        }
+    }
+}
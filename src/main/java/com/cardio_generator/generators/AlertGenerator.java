@@ -1,8 +1,10 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
+import com.cardio_generator.outputs.Label;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
 
 /**
  * Simulates random alert / resolve events for every patient.
@@ -15,8 +17,7 @@ import com.cardio_generator.outputs.OutputStrategy;
 
 public class AlertGenerator implements PatientDataGenerator {
 
-    // Changed constant name to UPPER_CASE to follow Google style
-    public static final Random RANDOM_GENERATOR = new Random();
+    private final SplittableRandom[] randoms; // one stream per patient, index 0 unused
 
     // Changed array name to lowerCamelCase to follow Google style
     private boolean[] alertStates; // false = resolved, true = pressed
@@ -26,29 +27,52 @@ public class AlertGenerator implements PatientDataGenerator {
     private static final double LAMBDA = 0.1; // Average number of alerts per time unit
 
     public AlertGenerator(int patientCount) {
+        this(patientCount, PatientRandoms.randomSeed());
+    }
+
+    /**
+     * @param patientCount highest patient ID that will ever be generated
+     * @param seed         seed of the run; the same seed generates the same alerts
+     */
+    public AlertGenerator(int patientCount, long seed) {
+        this.randoms = PatientRandoms.create(seed, AlertGenerator.class, patientCount);
         // Added 'this.' for clarity; array sized (patientCount + 1) to allow 1‑based IDs
         this.alertStates = new boolean[patientCount + 1];
     }
 
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
+        generate(patientId, System.currentTimeMillis(), outputStrategy);
+    }
+
+    /** Generates every patient of the slice with one reading of the clock. */
+    @Override
+    public void generate(int[] patientIds, int from, int to, SampleBatch batch) {
+        long timestamp = System.currentTimeMillis();
+        for (int i = from; i < to; i++) {
+            generate(patientIds[i], timestamp, batch);
+        }
+    }
+
+    private void generate(int patientId, long timestamp, OutputStrategy outputStrategy) {
         try {
+            SplittableRandom random = randoms[patientId];
             if (alertStates[patientId]) {
                 // Patient already in alert state – attempt resolution
-                if (RANDOM_GENERATOR.nextDouble() < RESOLUTION_PROBABILITY) {
+                if (random.nextDouble() < RESOLUTION_PROBABILITY) {
                     alertStates[patientId] = false;
                     // Output the alert
-                    outputStrategy.output(patientId, System.currentTimeMillis(), "Alert", "resolved");
+                    outputStrategy.output(patientId, timestamp, Label.ALERT, 0);
                 }
             } else {
                 // Changed variable name to lowerCamelCase (was 'p')
                 double probabilityOfAlert = -Math.expm1(-LAMBDA); // Probability of at least one alert in the period
-                boolean alertTriggered = RANDOM_GENERATOR.nextDouble() < probabilityOfAlert;
+                boolean alertTriggered = random.nextDouble() < probabilityOfAlert;
 
                 if (alertTriggered) {
                     alertStates[patientId] = true;
                     // Output the alert
-                    outputStrategy.output(patientId, System.currentTimeMillis(), "Alert", "triggered");
+                    outputStrategy.output(patientId, timestamp, Label.ALERT, 1);
                 }
             }
         } catch (Exception exception) { // Changed variable name from 'e' ➔ 'exception' for clarity
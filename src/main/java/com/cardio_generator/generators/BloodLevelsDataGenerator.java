@@ -1,16 +1,27 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
+import com.cardio_generator.outputs.Label;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
 
 public class BloodLevelsDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final SplittableRandom[] randoms; // one stream per patient, index 0 unused
     private final double[] baselineCholesterol;
     private final double[] baselineWhiteCells;
     private final double[] baselineRedCells;
 
     public BloodLevelsDataGenerator(int patientCount) {
+        this(patientCount, PatientRandoms.randomSeed());
+    }
+
+    /**
+     * @param patientCount highest patient ID that will ever be generated
+     * @param seed         seed of the run; the same seed generates the same values
+     */
+    public BloodLevelsDataGenerator(int patientCount, long seed) {
+        randoms = PatientRandoms.create(seed, BloodLevelsDataGenerator.class, patientCount);
         // Initialize arrays to store baseline values for each patient
         baselineCholesterol = new double[patientCount + 1];
         baselineWhiteCells = new double[patientCount + 1];
@@ -18,25 +29,38 @@ public class BloodLevelsDataGenerator implements PatientDataGenerator {
 
         // Generate baseline values for each patient
         for (int i = 1; i <= patientCount; i++) {
-            baselineCholesterol[i] = 150 + random.nextDouble() * 50; // Initial random baseline
-            baselineWhiteCells[i] = 4 + random.nextDouble() * 6; // Initial random baseline
-            baselineRedCells[i] = 4.5 + random.nextDouble() * 1.5; // Initial random baseline
+            baselineCholesterol[i] = 150 + randoms[i].nextDouble() * 50; // Initial random baseline
+            baselineWhiteCells[i] = 4 + randoms[i].nextDouble() * 6; // Initial random baseline
+            baselineRedCells[i] = 4.5 + randoms[i].nextDouble() * 1.5; // Initial random baseline
         }
     }
 
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
+        generate(patientId, System.currentTimeMillis(), outputStrategy);
+    }
+
+    /** Generates every patient of the slice with one reading of the clock. */
+    @Override
+    public void generate(int[] patientIds, int from, int to, SampleBatch batch) {
+        long timestamp = System.currentTimeMillis();
+        for (int i = from; i < to; i++) {
+            generate(patientIds[i], timestamp, batch);
+        }
+    }
+
+    private void generate(int patientId, long timestamp, OutputStrategy outputStrategy) {
         try {
+            SplittableRandom random = randoms[patientId];
             // Generate values around the baseline for realism
             double cholesterol = baselineCholesterol[patientId] + (random.nextDouble() - 0.5) * 10; // Small variation
             double whiteCells = baselineWhiteCells[patientId] + (random.nextDouble() - 0.5) * 1; // Small variation
             double redCells = baselineRedCells[patientId] + (random.nextDouble() - 0.5) * 0.2; // Small variation
 
             // Output the generated values
-            outputStrategy.output(patientId, System.currentTimeMillis(), "Cholesterol", Double.toString(cholesterol));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "WhiteBloodCells",
-                    Double.toString(whiteCells));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "RedBloodCells", Double.toString(redCells));
+            outputStrategy.output(patientId, timestamp, Label.CHOLESTEROL, cholesterol);
+            outputStrategy.output(patientId, timestamp, Label.WHITE_BLOOD_CELLS, whiteCells);
+            outputStrategy.output(patientId, timestamp, Label.RED_BLOOD_CELLS, redCells);
         } catch (Exception e) {
             System.err.println("An error occurred while generating blood levels data for patient " + patientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
@@ -1,8 +1,10 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
+import com.cardio_generator.outputs.Label;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
 
 /**
  * Generates realistic SpO(2) (blood-oxygen saturation) values for each patient.
@@ -14,17 +16,25 @@ import com.cardio_generator.outputs.OutputStrategy;
  */
 
 public class BloodSaturationDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final SplittableRandom[] randoms; // one stream per patient, index 0 unused
     // Last emitted saturation level for every patient (index 0 unused).
     private int[] lastSaturationValues;
 
-    // @param patientCount highest patient ID that will ever be generated
     public BloodSaturationDataGenerator(int patientCount) {
+        this(patientCount, PatientRandoms.randomSeed());
+    }
+
+    /**
+     * @param patientCount highest patient ID that will ever be generated
+     * @param seed         seed of the run; the same seed generates the same values
+     */
+    public BloodSaturationDataGenerator(int patientCount, long seed) {
+        randoms = PatientRandoms.create(seed, BloodSaturationDataGenerator.class, patientCount);
         lastSaturationValues = new int[patientCount + 1];
 
         // Initialize with baseline saturation values for each patient
         for (int i = 1; i <= patientCount; i++) {
-            lastSaturationValues[i] = 95 + random.nextInt(6); // Initializes with a value between 95 and 100
+            lastSaturationValues[i] = 95 + randoms[i].nextInt(6); // Initializes with a value between 95 and 100
         }
     }
 
@@ -36,7 +46,21 @@ public class BloodSaturationDataGenerator implements PatientDataGenerator {
      */
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
+        generate(patientId, System.currentTimeMillis(), outputStrategy);
+    }
+
+    /** Generates every patient of the slice with one reading of the clock. */
+    @Override
+    public void generate(int[] patientIds, int from, int to, SampleBatch batch) {
+        long timestamp = System.currentTimeMillis();
+        for (int i = from; i < to; i++) {
+            generate(patientIds[i], timestamp, batch);
+        }
+    }
+
+    private void generate(int patientId, long timestamp, OutputStrategy outputStrategy) {
         try {
+            SplittableRandom random = randoms[patientId];
             // Simulate blood saturation values
             int variation = random.nextInt(3) - 1; // -1, 0, or 1 to simulate small fluctuations
             int newSaturationValue = lastSaturationValues[patientId] + variation;
@@ -44,8 +68,7 @@ public class BloodSaturationDataGenerator implements PatientDataGenerator {
             // Ensure the saturation stays within a realistic and healthy range
             newSaturationValue = Math.min(Math.max(newSaturationValue, 90), 100);
             lastSaturationValues[patientId] = newSaturationValue;
-            outputStrategy.output(patientId, System.currentTimeMillis(), "Saturation",
-                    Double.toString(newSaturationValue) + "%");
+            outputStrategy.output(patientId, timestamp, Label.SATURATION, newSaturationValue);
         } catch (Exception e) {
             System.err.println("An error occurred while generating blood saturation data for patient " + patientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
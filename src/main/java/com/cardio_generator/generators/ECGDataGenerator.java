@@ -1,39 +1,141 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
+import com.cardio_generator.outputs.Label;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
 
+/**
+ * Generates ECG data for each patient in one of two modes.
+ *
+ * At the default sample rate of 1 Hz every call emits one value from a few
+ * sinusoids. At a waveform rate such as 250 or 500 Hz every call emits one
+ * second of samples as a single block, read from a precomputed PQRST beat
+ * template ({@link EcgBeatTemplate}). Each patient has a resting heart rate
+ * that drifts slowly, and every beat varies around it by a few percent, so
+ * the beats of one patient are never exactly the same length. The block ends
+ * at the call's timestamp, so the generator must run once per second.
+ */
 public class ECGDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    /** One value per call from the sinusoid model. */
+    public static final int DEFAULT_SAMPLE_RATE_HZ = 1;
+    /** Lowest waveform rate; a beat must span more than one sample. */
+    public static final int MIN_WAVEFORM_RATE_HZ = 50;
+
+    private static final double MIN_HEART_RATE = 50; // bpm
+    private static final double MAX_HEART_RATE = 110;
+    private static final double HEART_RATE_DRIFT = 0.5; // bpm per beat, standard deviation
+    private static final double BEAT_VARIABILITY = 0.03; // of the heart rate, standard deviation
+    private static final double NOISE_MILLIVOLTS = 0.02;
+
+    private final SplittableRandom[] randoms; // one stream per patient, index 0 unused
     private double[] lastEcgValues;
     private static final double PI = Math.PI;
 
+    // Waveform mode: one sample every intervalMillis, samplesPerBlock per call
+    private final int samplesPerBlock;
+    private final long intervalMillis;
+    private final double[] heartRates; // resting heart rate of every patient in bpm
+    private final double[] beatPhases; // position in the current beat, [0, 1)
+    private final double[] beatSteps; // phase advanced per sample in the current beat
+    private final ThreadLocal<double[]> blocks;
+
     public ECGDataGenerator(int patientCount) {
+        this(patientCount, PatientRandoms.randomSeed());
+    }
+
+    /**
+     * @param patientCount highest patient ID that will ever be generated
+     * @param seed         seed of the run; the same seed generates the same values
+     */
+    public ECGDataGenerator(int patientCount, long seed) {
+        this(patientCount, seed, DEFAULT_SAMPLE_RATE_HZ);
+    }
+
+    /**
+     * @param patientCount highest patient ID that will ever be generated
+     * @param seed         seed of the run; the same seed generates the same values
+     * @param sampleRateHz {@value #DEFAULT_SAMPLE_RATE_HZ} for one value per call, or a waveform
+     *                     rate of at least {@value #MIN_WAVEFORM_RATE_HZ} that divides 1000
+     * @throws IllegalArgumentException if the sample rate is neither
+     */
+    public ECGDataGenerator(int patientCount, long seed, int sampleRateHz) {
+        if (!isSupportedSampleRate(sampleRateHz)) {
+            throw new IllegalArgumentException("Unsupported ECG sample rate: " + sampleRateHz);
+        }
+        randoms = PatientRandoms.create(seed, ECGDataGenerator.class, patientCount);
         lastEcgValues = new double[patientCount + 1];
         // Initialize the last ECG value for each patient
         for (int i = 1; i <= patientCount; i++) {
             lastEcgValues[i] = 0; // Initial ECG value can be set to 0
         }
+
+        samplesPerBlock = sampleRateHz;
+        intervalMillis = 1000 / sampleRateHz;
+        int waveformPatients = sampleRateHz == DEFAULT_SAMPLE_RATE_HZ ? 0 : patientCount + 1;
+        heartRates = new double[waveformPatients];
+        beatPhases = new double[waveformPatients];
+        beatSteps = new double[waveformPatients];
+        blocks = ThreadLocal.withInitial(() -> new double[samplesPerBlock]);
+        for (int i = 1; i < waveformPatients; i++) {
+            heartRates[i] = 60 + randoms[i].nextDouble() * 20; // resting rate between 60 and 80 bpm
+            beatPhases[i] = randoms[i].nextDouble(); // patients are not in step
+            beatSteps[i] = nextBeatStep(randoms[i], i);
+        }
+    }
+
+    /**
+     * @return whether {@code sampleRateHz} is {@value #DEFAULT_SAMPLE_RATE_HZ} or a waveform
+     *         rate of at least {@value #MIN_WAVEFORM_RATE_HZ} that divides 1000
+     */
+    public static boolean isSupportedSampleRate(int sampleRateHz) {
+        return sampleRateHz == DEFAULT_SAMPLE_RATE_HZ
+                || sampleRateHz >= MIN_WAVEFORM_RATE_HZ && 1000 % sampleRateHz == 0;
+    }
+
+    /** @return samples per second: {@value #DEFAULT_SAMPLE_RATE_HZ} or the waveform rate */
+    public int getSampleRateHz() {
+        return samplesPerBlock;
     }
 
     @Override
     public void generate(int patientId, OutputStrategy outputStrategy) {
+        generate(patientId, System.currentTimeMillis(), outputStrategy);
+    }
+
+    /** Generates every patient of the slice with one reading of the clock. */
+    @Override
+    public void generate(int[] patientIds, int from, int to, SampleBatch batch) {
+        long timestamp = System.currentTimeMillis();
+        for (int i = from; i < to; i++) {
+            generate(patientIds[i], timestamp, batch);
+        }
+    }
+
+    private void generate(int patientId, long timestamp, OutputStrategy outputStrategy) {
         // TODO Check how realistic this data is and make it more realistic if necessary
         try {
-            double ecgValue = simulateEcgWaveform(patientId, lastEcgValues[patientId]);
-            outputStrategy.output(patientId, System.currentTimeMillis(), "ECG", Double.toString(ecgValue));
-            lastEcgValues[patientId] = ecgValue;
+            if (samplesPerBlock == DEFAULT_SAMPLE_RATE_HZ) {
+                double ecgValue = simulateEcgWaveform(randoms[patientId], timestamp, lastEcgValues[patientId]);
+                outputStrategy.output(patientId, timestamp, Label.ECG, ecgValue);
+                lastEcgValues[patientId] = ecgValue;
+            } else {
+                double[] block = blocks.get();
+                fillBlock(patientId, block);
+                long first = timestamp - intervalMillis * (samplesPerBlock - 1);
+                outputStrategy.output(patientId, first, intervalMillis, Label.ECG, block, 0, samplesPerBlock);
+            }
         } catch (Exception e) {
             System.err.println("An error occurred while generating ECG data for patient " + patientId);
             e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
         }
     }
 
-    private double simulateEcgWaveform(int patientId, double lastEcgValue) {
+    private double simulateEcgWaveform(SplittableRandom random, long timestamp, double lastEcgValue) {
         // Simplified ECG waveform generation based on sinusoids
         double hr = 60.0 + random.nextDouble() * 20.0; // Simulate heart rate variability between 60 and 80 bpm
-        double t = System.currentTimeMillis() / 1000.0; // Use system time to simulate continuous time
+        double t = timestamp / 1000.0; // Use the sample time to simulate continuous time
         double ecgFrequency = hr / 60.0; // Convert heart rate to Hz
 
         // Simulate different components of the ECG signal
@@ -43,4 +145,30 @@ public class ECGDataGenerator implements PatientDataGenerator {
 
         return pWave + qrsComplex + tWave + random.nextDouble() * 0.05; // Add small noise
     }
+
+    /** Writes the patient's next second of waveform into {@code block}. */
+    private void fillBlock(int patientId, double[] block) {
+        SplittableRandom random = randoms[patientId];
+        double phase = beatPhases[patientId];
+        double step = beatSteps[patientId];
+        for (int i = 0; i < samplesPerBlock; i++) {
+            block[i] = EcgBeatTemplate.valueAt(phase) + (random.nextDouble() - 0.5) * NOISE_MILLIVOLTS;
+            phase += step;
+            if (phase >= 1) {
+                phase -= 1;
+                step = nextBeatStep(random, patientId);
+            }
+        }
+        beatPhases[patientId] = phase;
+        beatSteps[patientId] = step;
+    }
+
+    /** Lets the resting rate drift and draws the length of the next beat around it. */
+    private double nextBeatStep(SplittableRandom random, int patientId) {
+        double restingRate = heartRates[patientId] + random.nextGaussian() * HEART_RATE_DRIFT;
+        restingRate = Math.min(Math.max(restingRate, MIN_HEART_RATE), MAX_HEART_RATE);
+        heartRates[patientId] = restingRate;
+        double beatRate = restingRate * (1 + random.nextGaussian() * BEAT_VARIABILITY);
+        return beatRate / 60.0 / samplesPerBlock; // beats per sample
+    }
 }
@@ -0,0 +1,53 @@
+package com.cardio_generator.generators;
+
+/**
+ * One PQRST heartbeat, precomputed as a lookup table over the beat's phase,
+ * so a waveform sample costs an interpolated table read instead of trig calls.
+ *
+ * The beat is the sum of five Gaussian waves (P, Q, R, S and T), each placed
+ * at a fraction of the beat with a width and an amplitude in millivolts. The
+ * waves are positioned for a resting beat; a faster or slower heart stretches
+ * the whole beat.
+ */
+final class EcgBeatTemplate {
+
+    /** Table entries per beat; the table holds one more that repeats the first. */
+    static final int SIZE = 1024;
+
+    // {phase of the peak, width (standard deviation as a fraction of the beat), amplitude in mV}
+    private static final double[][] WAVES = {
+        {0.20, 0.025, 0.15}, // P: atrial depolarisation
+        {0.37, 0.010, -0.15}, // Q
+        {0.40, 0.012, 1.20}, // R
+        {0.43, 0.012, -0.25}, // S
+        {0.70, 0.050, 0.35} // T: ventricular repolarisation
+    };
+
+    private static final double[] TABLE = new double[SIZE + 1];
+
+    static {
+        for (int i = 0; i <= SIZE; i++) {
+            double phase = (double) i / SIZE;
+            double value = 0;
+            for (double[] wave : WAVES) {
+                double distance = (phase - wave[0]) / wave[1];
+                value += wave[2] * Math.exp(-0.5 * distance * distance);
+            }
+            TABLE[i] = value;
+        }
+    }
+
+    private EcgBeatTemplate() {
+    }
+
+    /**
+     * @param phase position in the beat, {@code [0, 1)}
+     * @return the waveform at that position in millivolts, linearly interpolated
+     */
+    static double valueAt(double phase) {
+        double position = phase * SIZE;
+        int index = (int) position;
+        double fraction = position - index;
+        return TABLE[index] + (TABLE[index + 1] - TABLE[index]) * fraction;
+    }
+}
@@ -1,6 +1,7 @@
 package com.cardio_generator.generators;
 
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
 
 /**
  * Common contract for every data-generator in the simulator.
@@ -8,8 +9,8 @@ import com.cardio_generator.outputs.OutputStrategy;
  * {@link com.cardio_generator.outputs.OutputStrategy OutputStrategy}
  * each time {@link #generate(int, OutputStrategy)} is called.
  *
- * This interface remains intentionally lean:
- * only one method, no side-effects mandated.
+ * This interface remains intentionally lean: one method per patient, and a
+ * batch variant that schedulers use to generate a tick for many patients.
  */
 public interface PatientDataGenerator {
     /**
@@ -19,4 +20,20 @@ public interface PatientDataGenerator {
      * @param outputStrategy callback that persists, prints, or streams the data
      */
     void generate(int patientId, OutputStrategy outputStrategy);
+
+    /**
+     * Generate one tick of data for several patients into a batch. By default
+     * calls {@link #generate(int, OutputStrategy)} per patient with the batch
+     * as output; generators override it to read the clock once per tick.
+     *
+     * @param patientIds the patients; {@code patientIds[from]} to {@code patientIds[to - 1]} are generated
+     * @param from       first index, inclusive
+     * @param to         last index, exclusive
+     * @param batch      receives the samples
+     */
+    default void generate(int[] patientIds, int from, int to, SampleBatch batch) {
+        for (int i = from; i < to; i++) {
+            generate(patientIds[i], batch);
+        }
+    }
 }
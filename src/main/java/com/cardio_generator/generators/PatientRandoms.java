@@ -0,0 +1,39 @@
+package com.cardio_generator.generators;
+
+import java.util.SplittableRandom;
+
+/**
+ * Creates one random stream per patient, so generators running on many
+ * threads never share a seed and a run can be repeated from its seed.
+ *
+ * The streams are split off a root seeded from the run seed and the
+ * generator's name, in patient order: patient {@code n} of a generator gets
+ * the same values for the same seed whatever the patient count, the
+ * scheduler or the number of threads. A stream must only be used by the
+ * thread generating its patient.
+ */
+final class PatientRandoms {
+
+    private PatientRandoms() {
+    }
+
+    /**
+     * @param seed         seed of the whole run
+     * @param generator    generator the streams belong to; each gets its own streams
+     * @param patientCount highest patient ID
+     * @return streams indexed by patient ID (index 0 unused)
+     */
+    static SplittableRandom[] create(long seed, Class<?> generator, int patientCount) {
+        SplittableRandom root = new SplittableRandom(seed ^ generator.getSimpleName().hashCode());
+        SplittableRandom[] randoms = new SplittableRandom[patientCount + 1];
+        for (int i = 0; i <= patientCount; i++) {
+            randoms[i] = root.split();
+        }
+        return randoms;
+    }
+
+    /** @return a seed for runs that need not be repeated */
+    static long randomSeed() {
+        return new SplittableRandom().nextLong();
+    }
+}
@@ -1,50 +1,210 @@
 package com.cardio_generator.outputs;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Writes each measurement type to its own text file under a base directory.
  *
- * Thread-safe: a {@link ConcurrentHashMap} is used so that multiple generator
- * threads can log simultaneously.
+ * Thread-safe: generator threads only enqueue samples on a lock-free
+ * {@link SampleQueue}. One writer thread drains it, formats the lines into a
+ * large buffer per label and writes each buffer to a channel that stays open
+ * until {@link #close()}. Buffers are written when full and at least every
+ * flush interval; whether the file is also forced to disk is set by the
+ * {@link SyncPolicy}.
+ *
+ * Lines are only guaranteed to be on disk after {@link #close()}, which writes
+ * every sample accepted before it.
  */
-public class FileOutputStrategy implements OutputStrategy {
+public final class FileOutputStrategy extends QueuedOutputStrategy {
+
+    /** When written buffers are forced to the storage device. */
+    public enum SyncPolicy {
+        /** Never force; the OS writes the page cache back on its own schedule. */
+        NEVER,
+        /** Force after every interval flush and on close. */
+        ON_FLUSH,
+        /** Force once on close. */
+        ON_CLOSE
+    }
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte[] PATIENT_ID = "Patient ID: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP = ", Timestamp: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    /** Upper bound of a line without the label part and the data. */
+    private static final int FIXED_LINE_BYTES = PATIENT_ID.length + 11 + TIMESTAMP.length + 20 + LINE_SEPARATOR.length;
 
     // Changed field name to lowerCamelCase and marked final (immutable after construction)
     private final String baseDirectory;
 
-    // Changed name to lowerCamelCase, made private & final to obey encapsulation rules.
-    private final ConcurrentHashMap<String, Path> fileMap = new ConcurrentHashMap<>();
+    // Only touched by the writer thread
+    private final Map<String, LabelFile> files = new HashMap<>();
+    private final LabelFile[] filesByLabel = new LabelFile[Label.values().length];
+    private final byte[] scratch = new byte[TextEncoder.MAX_VALUE_BYTES];
 
+    /**
+     * Writes with a {@value #DEFAULT_FLUSH_INTERVAL_MILLIS} ms flush interval
+     * and forces the files to disk on close.
+     *
+     * @param baseDirectory directory that receives one {@code <label>.txt} per label
+     */
     public FileOutputStrategy(String baseDirectory) {
+        this(baseDirectory, DEFAULT_FLUSH_INTERVAL_MILLIS, SyncPolicy.ON_CLOSE);
+    }
 
+    /**
+     * @param baseDirectory       directory that receives one {@code <label>.txt} per label
+     * @param flushIntervalMillis longest time a line stays in a buffer
+     * @param syncPolicy          when the files are forced to disk
+     */
+    public FileOutputStrategy(String baseDirectory, long flushIntervalMillis, SyncPolicy syncPolicy) {
+        super("file-output-writer", flushIntervalMillis, syncPolicy);
         this.baseDirectory = baseDirectory;
+        startWriter();
+    }
+
+    /** Formats one line into the label's buffer. */
+    @Override
+    void append(int patientId, long timestamp, String label, String data) {
+        LabelFile file = files.computeIfAbsent(label, LabelFile::new);
+        ByteBuffer buffer = file.buffer;
+        int maxLength = FIXED_LINE_BYTES + file.labelPart.length + data.length() * 3;
+        if (maxLength > buffer.remaining()) {
+            file.flush(false);
+            if (maxLength > buffer.capacity()) {
+                // oversized line: write it on its own
+                String line = String.format("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n",
+                        patientId, timestamp, label, data);
+                file.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+                return;
+            }
+        }
+        putPrefix(buffer, patientId, timestamp, file);
+        putString(buffer, data);
+        buffer.put(LINE_SEPARATOR);
     }
 
+    /** Encodes the value straight into the label's buffer. */
     @Override
-    public void output(int patientId, long timestamp, String label, String data) {
-        try {
-            // Google style: method calls indented + ensure the directory exists
-            Files.createDirectories(Path.of(baseDirectory));
-        } catch (IOException ioException) { // Renamed variable from 'e' to 'ioException' for clarity
-            System.err.println("Error creating base directory: " + ioException.getMessage());
-            return;
-        }
-        // Set the filePath variable
-        // Set filePath to lowerCamelCase
-        Path filePath = fileMap.computeIfAbsent(label, l -> Path.of(baseDirectory, l + ".txt"));
-
-        // Try‑with‑resources: automatically closes the writer
-        try (PrintWriter writer = new PrintWriter(
-                Files.newBufferedWriter(filePath, StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
-            writer.printf("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n", patientId, timestamp, label, data);
-        } catch (IOException ioException) { // Catch the specific checked exception.
-            System.err.println("Error writing to file " + filePath + ": " + ioException.getMessage());
-        }
-    }
-}
\ No newline at end of file
+    void append(int patientId, long timestamp, Label label, double value) {
+        LabelFile file = filesByLabel[label.ordinal()];
+        if (file == null) {
+            file = files.computeIfAbsent(label.getText(), LabelFile::new);
+            filesByLabel[label.ordinal()] = file;
+        }
+        ByteBuffer buffer = file.buffer;
+        if (FIXED_LINE_BYTES + file.labelPart.length + TextEncoder.MAX_VALUE_BYTES > buffer.remaining()) {
+            file.flush(false);
+        }
+        putPrefix(buffer, patientId, timestamp, file);
+        buffer.put(scratch, 0, TextEncoder.putValue(scratch, 0, label, value));
+        buffer.put(LINE_SEPARATOR);
+    }
+
+    /** Writes everything of a line up to the data. */
+    private void putPrefix(ByteBuffer buffer, int patientId, long timestamp, LabelFile file) {
+        buffer.put(PATIENT_ID);
+        buffer.put(scratch, 0, TextEncoder.putLong(scratch, 0, patientId));
+        buffer.put(TIMESTAMP);
+        buffer.put(scratch, 0, TextEncoder.putLong(scratch, 0, timestamp));
+        buffer.put(file.labelPart);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) >= 0x80) {
+                buffer.put(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    @Override
+    void flush(boolean force) {
+        for (LabelFile file : files.values()) {
+            file.flush(force);
+        }
+    }
+
+    @Override
+    void closeFiles() {
+        for (LabelFile file : files.values()) {
+            file.close();
+        }
+    }
+
+    /** Open channel and pending bytes of one label's file. */
+    private final class LabelFile {
+        final Path path;
+        final byte[] labelPart;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        FileChannel channel;
+        boolean failed;
+
+        LabelFile(String label) {
+            this.path = Path.of(baseDirectory, label + ".txt");
+            this.labelPart = (", Label: " + label + ", Data: ").getBytes(StandardCharsets.UTF_8);
+        }
+
+        void flush(boolean force) {
+            buffer.flip();
+            write(buffer);
+            buffer.clear();
+            if (force && channel != null && !failed) {
+                try {
+                    channel.force(false);
+                } catch (IOException ioException) {
+                    fail(ioException);
+                }
+            }
+        }
+
+        void write(ByteBuffer bytes) {
+            if (!bytes.hasRemaining() || failed) {
+                return;
+            }
+            try {
+                if (channel == null) {
+                    Files.createDirectories(Path.of(baseDirectory));
+                    channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.APPEND);
+                }
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            } catch (IOException ioException) {
+                fail(ioException);
+            }
+        }
+
+        /** Reports the error once and drops this label's lines from then on. */
+        void fail(IOException ioException) {
+            failed = true;
+            System.err.println("Error writing to file " + path + ": " + ioException.getMessage());
+        }
+
+        void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ioException) {
+                    fail(ioException);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.cardio_generator.outputs;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Samples collected for one WebSocket frame, in the text or binary layout
+ * described on {@link WebSocketOutputStrategy}.
+ */
+final class FrameBatch {
+
+    private static final int BINARY_RECORD_BYTES = 4 + 8 + 2 + 8;
+
+    private final WebSocketOutputStrategy.FrameFormat format;
+    private final int maxRecords;
+    private final StringBuilder text = new StringBuilder();
+    private final Map<String, Integer> labelIndexes = new HashMap<>();
+    private final List<byte[]> labels = new ArrayList<>();
+    /** Index of each {@link Label} in {@link #labels}, -1 if not in this frame yet. */
+    private final int[] labelIndexesByKind = new int[Label.values().length];
+    private final byte[] scratch = new byte[TextEncoder.MAX_VALUE_BYTES];
+    private final ByteBuffer records;
+    private int size;
+
+    FrameBatch(WebSocketOutputStrategy.FrameFormat format, int maxRecords) {
+        this.format = format;
+        this.maxRecords = maxRecords;
+        this.records = format == WebSocketOutputStrategy.FrameFormat.BINARY
+                ? ByteBuffer.allocate(maxRecords * BINARY_RECORD_BYTES)
+                : null;
+        Arrays.fill(labelIndexesByKind, -1);
+    }
+
+    /**
+     * Adds one sample; {@code value} is only used by binary frames.
+     */
+    void add(int patientId, long timestamp, String label, String data, double value) {
+        if (format == WebSocketOutputStrategy.FrameFormat.TEXT) {
+            putPrefix(patientId, timestamp).append(label).append(',').append(data);
+        } else {
+            putRecord(patientId, timestamp, labelIndex(label), value);
+        }
+        size++;
+    }
+
+    /** Adds one unformatted sample without allocating. */
+    void add(int patientId, long timestamp, Label label, double value) {
+        if (format == WebSocketOutputStrategy.FrameFormat.TEXT) {
+            putPrefix(patientId, timestamp).append(label.getText()).append(',');
+            int length = TextEncoder.putValue(scratch, 0, label, value);
+            for (int i = 0; i < length; i++) {
+                text.append((char) scratch[i]);
+            }
+        } else {
+            int labelIndex = labelIndexesByKind[label.ordinal()];
+            if (labelIndex < 0) {
+                labelIndex = labelIndex(label.getText());
+                labelIndexesByKind[label.ordinal()] = labelIndex;
+            }
+            putRecord(patientId, timestamp, labelIndex, value);
+        }
+        size++;
+    }
+
+    private StringBuilder putPrefix(int patientId, long timestamp) {
+        if (size > 0) {
+            text.append('\n');
+        }
+        return text.append(patientId).append(',').append(timestamp).append(',');
+    }
+
+    private int labelIndex(String label) {
+        Integer labelIndex = labelIndexes.get(label);
+        if (labelIndex == null) {
+            labelIndex = labels.size();
+            labelIndexes.put(label, labelIndex);
+            labels.add(label.getBytes(StandardCharsets.UTF_8));
+        }
+        return labelIndex;
+    }
+
+    private void putRecord(int patientId, long timestamp, int labelIndex, double value) {
+        records.putInt(patientId).putLong(timestamp).putShort((short) labelIndex).putDouble(value);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean isFull() {
+        return size == maxRecords;
+    }
+
+    /** @return the text payload, and starts a new batch */
+    String takeText() {
+        String payload = text.toString();
+        text.setLength(0);
+        size = 0;
+        return payload;
+    }
+
+    /** @return the binary payload, and starts a new batch */
+    byte[] takeBinary() {
+        int labelBytes = 0;
+        for (byte[] label : labels) {
+            labelBytes += 2 + label.length;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(2 + labelBytes + 4 + records.position());
+        frame.putShort((short) labels.size());
+        for (byte[] label : labels) {
+            frame.putShort((short) label.length).put(label);
+        }
+        frame.putInt(size);
+        frame.put(records.flip());
+        records.clear();
+        labelIndexes.clear();
+        labels.clear();
+        Arrays.fill(labelIndexesByKind, -1);
+        size = 0;
+        return frame.array();
+    }
+}
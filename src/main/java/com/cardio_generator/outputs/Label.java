@@ -0,0 +1,87 @@
+package com.cardio_generator.outputs;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The measurement labels the generators produce, for the primitive
+ * {@link OutputStrategy#output(int, long, Label, double)} path.
+ *
+ * Each label knows how its value reads as text: saturation carries a
+ * {@code %} suffix, alerts are {@code triggered} (1) or {@code resolved} (0)
+ * and everything else is a plain decimal number.
+ */
+public enum Label {
+    ECG("ECG", Format.NUMBER),
+    SATURATION("Saturation", Format.PERCENT),
+    SYSTOLIC_PRESSURE("SystolicPressure", Format.NUMBER),
+    DIASTOLIC_PRESSURE("DiastolicPressure", Format.NUMBER),
+    CHOLESTEROL("Cholesterol", Format.NUMBER),
+    WHITE_BLOOD_CELLS("WhiteBloodCells", Format.NUMBER),
+    RED_BLOOD_CELLS("RedBloodCells", Format.NUMBER),
+    ALERT("Alert", Format.ALERT_STATE);
+
+    /** How a value is written as text. */
+    enum Format {
+        NUMBER,
+        PERCENT,
+        /** 1 is {@code triggered}, anything else {@code resolved}. */
+        ALERT_STATE
+    }
+
+    private static final Label[] VALUES = values();
+
+    private final String text;
+    private final byte[] ascii;
+    private final Format format;
+
+    Label(String text, Format format) {
+        this.text = text;
+        this.ascii = text.getBytes(StandardCharsets.US_ASCII);
+        this.format = format;
+    }
+
+    /** @return the label as the String outputs write it, e.g. {@code "Saturation"} */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Formats a value the way the String path carries it; used by outputs that
+     * only implement {@link OutputStrategy#output(int, long, String, String)}.
+     *
+     * @return e.g. {@code "97.0%"} for saturation or {@code "triggered"} for an alert
+     */
+    public String format(double value) {
+        switch (format) {
+            case PERCENT:
+                return Double.toString(value) + "%";
+            case ALERT_STATE:
+                return value == 1 ? "triggered" : "resolved";
+            default:
+                return Double.toString(value);
+        }
+    }
+
+    /** @return the label with the given {@link #getText() text}, or {@code null} if there is none */
+    public static Label of(String text) {
+        for (Label label : VALUES) {
+            if (label.text.equals(text)) {
+                return label;
+            }
+        }
+        return null;
+    }
+
+    /** @return the label with the given ordinal */
+    static Label ofOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    byte[] ascii() {
+        return ascii;
+    }
+
+    Format valueFormat() {
+        return format;
+    }
+}
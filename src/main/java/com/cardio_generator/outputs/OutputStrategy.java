@@ -1,8 +1,18 @@
 package com.cardio_generator.outputs;
 
 /**
- * Every generator calls {@link #output(int, long, String, String)} exactly once
+ * Every generator calls {@link #output(int, long, Label, double)} exactly once
  * for each data point it produces.
+ *
+ * Outputs must implement the String method; by default the primitive method
+ * formats the value and delegates to it. Outputs on the hot path override the
+ * primitive method as well and encode the number themselves, so a sample
+ * costs no allocation from the generator to the file or socket.
+ *
+ * Schedulers that run a generator for many patients at once hand the samples
+ * over as one {@link SampleBatch}, and waveform generators emit a block of
+ * samples as one array; queued outputs override both to enqueue many samples
+ * with one claim.
  */
 public interface OutputStrategy {
      /**
@@ -14,4 +24,55 @@ public interface OutputStrategy {
      * @param data       value as string; formatting depends on generator
      */
     void output(int patientId, long timestamp, String label, String data);
+
+    /**
+     * Accepts a single data point without formatting it first.
+     *
+     * @param patientId  unique patient identifier (1-based)
+     * @param timestamp  epoch milliseconds when the measurement was taken
+     * @param label      the measurement label
+     * @param value      the measurement; for alerts 1 is triggered and 0 resolved
+     */
+    default void output(int patientId, long timestamp, Label label, double value) {
+        output(patientId, timestamp, label.getText(), label.format(value));
+    }
+
+    /**
+     * Accepts a block of evenly spaced samples of one patient and label, such as
+     * a second of ECG waveform. By default calls the primitive method per sample.
+     *
+     * @param patientId      unique patient identifier
+     * @param timestamp      epoch milliseconds of the first sample
+     * @param intervalMillis milliseconds from one sample to the next
+     * @param label          the measurement label
+     * @param values         the samples; {@code values[from]} to {@code values[from + count - 1]} are used
+     * @param from           index of the first sample
+     * @param count          number of samples
+     */
+    default void output(int patientId, long timestamp, long intervalMillis, Label label,
+                        double[] values, int from, int count) {
+        for (int i = 0; i < count; i++) {
+            output(patientId, timestamp + i * intervalMillis, label, values[from + i]);
+        }
+    }
+
+    /**
+     * Accepts every sample of a batch, in order. The batch may be cleared and
+     * reused once this returns. By default calls the primitive method per sample.
+     *
+     * @param batch the samples
+     */
+    default void output(SampleBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            output(batch.patientIdAt(i), batch.timestampAt(i), batch.labelAt(i), batch.valueAt(i));
+        }
+    }
+
+    /**
+     * Releases the output target once no more data points will be produced.
+     * Strategies that buffer must write everything accepted so far before
+     * returning. Does nothing by default.
+     */
+    default void close() {
+    }
 }
@@ -0,0 +1,120 @@
+package com.cardio_generator.outputs;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Base of the file strategies: generator threads enqueue samples on a
+ * lock-free {@link SampleQueue} and one writer thread drains it into the
+ * subclass, which buffers and writes. The writer calls {@link #flush(boolean)}
+ * at least every flush interval and, on {@link #close()}, once more with
+ * everything accepted before {@link #closeFiles()}.
+ *
+ * Every method except {@link #output} and {@link #close()} runs on the writer
+ * thread only, so subclasses need no synchronisation.
+ */
+abstract class QueuedOutputStrategy implements OutputStrategy {
+
+    static final int DEFAULT_QUEUE_CAPACITY = 1 << 16;
+
+    private static final int DRAIN_BATCH = 4096;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final long flushIntervalNanos;
+    private final FileOutputStrategy.SyncPolicy syncPolicy;
+    private final SampleQueue queue = new SampleQueue(DEFAULT_QUEUE_CAPACITY);
+    private final Thread writer;
+
+    QueuedOutputStrategy(String threadName, long flushIntervalMillis, FileOutputStrategy.SyncPolicy syncPolicy) {
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.syncPolicy = syncPolicy;
+        this.writer = new Thread(this::runWriter, threadName);
+        // close() drains the queue; the thread must not keep the JVM alive by itself
+        writer.setDaemon(true);
+    }
+
+    /** Starts the writer; subclasses, which must be final, call this last in their constructor. */
+    final void startWriter() {
+        writer.start();
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        queue.offer(patientId, timestamp, label, data);
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, Label label, double value) {
+        queue.offer(patientId, timestamp, label, value);
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, long intervalMillis, Label label,
+                       double[] values, int from, int count) {
+        queue.offer(patientId, timestamp, intervalMillis, label, values, from, count);
+    }
+
+    @Override
+    public void output(SampleBatch batch) {
+        queue.offer(batch);
+    }
+
+    /**
+     * Stops accepting samples, writes every sample accepted so far, forces the
+     * files unless the policy is {@link FileOutputStrategy.SyncPolicy#NEVER}
+     * and closes them. Samples offered after this call are dropped.
+     */
+    @Override
+    public void close() {
+        queue.close();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Buffers one sample. */
+    abstract void append(int patientId, long timestamp, String label, String data);
+
+    /** Buffers one unformatted sample. */
+    abstract void append(int patientId, long timestamp, Label label, double value);
+
+    /**
+     * Writes everything buffered.
+     *
+     * @param force whether the files must also be forced to the storage device
+     */
+    abstract void flush(boolean force);
+
+    /** Closes the files after the last flush. */
+    abstract void closeFiles();
+
+    private void runWriter() {
+        OutputStrategy append = new OutputStrategy() {
+            @Override
+            public void output(int patientId, long timestamp, String label, String data) {
+                append(patientId, timestamp, label, data);
+            }
+
+            @Override
+            public void output(int patientId, long timestamp, Label label, double value) {
+                append(patientId, timestamp, label, value);
+            }
+        };
+        long nextFlush = System.nanoTime() + flushIntervalNanos;
+        while (!queue.isDrained()) {
+            int drained = queue.drain(append, DRAIN_BATCH);
+            long now = System.nanoTime();
+            if (now - nextFlush >= 0) {
+                flush(syncPolicy == FileOutputStrategy.SyncPolicy.ON_FLUSH);
+                nextFlush = now + flushIntervalNanos;
+            }
+            if (drained == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        flush(syncPolicy != FileOutputStrategy.SyncPolicy.NEVER);
+        closeFiles();
+    }
+}
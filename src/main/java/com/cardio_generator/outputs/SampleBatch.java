@@ -0,0 +1,130 @@
+package com.cardio_generator.outputs;
+
+import java.util.Arrays;
+
+/**
+ * Growable block of samples in primitive columns, used to hand many samples
+ * to {@link OutputStrategy#output(SampleBatch)} at once. A batch can be
+ * {@link #clear() cleared} and refilled, so a generator needs no allocation
+ * per sample once the columns have grown to their working size.
+ *
+ * A batch is itself an {@link OutputStrategy} that collects what it is given,
+ * so any generator can fill one. Formatted samples must carry a known
+ * {@link Label} and a value {@link Label#format(double) formatted} the way
+ * that label formats it.
+ *
+ * Not thread-safe; a batch belongs to one producer until it is handed over.
+ */
+public final class SampleBatch implements OutputStrategy {
+    private int[] patientIds;
+    private long[] timestamps;
+    private Label[] labels;
+    private double[] values;
+    private int size;
+
+    public SampleBatch() {
+        this(1024);
+    }
+
+    /**
+     * @param initialCapacity samples the batch holds before it grows
+     */
+    public SampleBatch(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        patientIds = new int[capacity];
+        timestamps = new long[capacity];
+        labels = new Label[capacity];
+        values = new double[capacity];
+    }
+
+    /**
+     * Appends one sample.
+     *
+     * @param patientId unique patient identifier
+     * @param timestamp epoch milliseconds when the measurement was taken
+     * @param label     the measurement label
+     * @param value     the measurement; for alerts 1 is triggered and 0 resolved
+     */
+    public void add(int patientId, long timestamp, Label label, double value) {
+        ensureCapacity(size + 1);
+        patientIds[size] = patientId;
+        timestamps[size] = timestamp;
+        labels[size] = label;
+        values[size] = value;
+        size++;
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, Label label, double value) {
+        add(patientId, timestamp, label, value);
+    }
+
+    /** Appends the block with bulk copies instead of one {@link #add} per sample. */
+    @Override
+    public void output(int patientId, long timestamp, long intervalMillis, Label label,
+                       double[] blockValues, int from, int count) {
+        ensureCapacity(size + count);
+        int end = size + count;
+        Arrays.fill(patientIds, size, end, patientId);
+        Arrays.fill(labels, size, end, label);
+        System.arraycopy(blockValues, from, values, size, count);
+        for (int i = size; i < end; i++) {
+            timestamps[i] = timestamp;
+            timestamp += intervalMillis;
+        }
+        size = end;
+    }
+
+    /**
+     * Parses a formatted sample and appends it.
+     *
+     * @throws IllegalArgumentException if the label is not a {@link Label} or the data is not a number
+     */
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        Label known = Label.of(label);
+        if (known == null) {
+            throw new IllegalArgumentException("Unknown label: " + label);
+        }
+        double value = BinaryFileOutputStrategy.parseValue(data);
+        if (Double.isNaN(value) && !data.equals("NaN")) {
+            throw new IllegalArgumentException("Not a number: " + data);
+        }
+        add(patientId, timestamp, known, value);
+    }
+
+    /** Empties the batch but keeps its columns for reuse. */
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int patientIdAt(int index) {
+        return patientIds[index];
+    }
+
+    public long timestampAt(int index) {
+        return timestamps[index];
+    }
+
+    public Label labelAt(int index) {
+        return labels[index];
+    }
+
+    public double valueAt(int index) {
+        return values[index];
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > patientIds.length) {
+            int capacity = Math.max(required, size + (size >> 1) + 1);
+            patientIds = Arrays.copyOf(patientIds, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            labels = Arrays.copyOf(labels, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+}
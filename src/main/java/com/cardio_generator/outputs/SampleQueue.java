@@ -0,0 +1,288 @@
+package com.cardio_generator.outputs;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer, single-consumer queue of data points, used to hand
+ * samples from the generator threads to one writer thread without locks.
+ *
+ * Slots are preallocated as parallel columns. A producer claims a sequence
+ * number with one atomic increment, fills the slot and publishes it by storing
+ * the sequence number into the slot's marker. The consumer reads slots in
+ * sequence order and only moves past a slot once it is published. When the
+ * queue is full, {@link #offer} waits for the consumer and {@link #tryOffer}
+ * drops. A sample is either formatted (label and data as Strings) or
+ * unformatted (a {@link Label} and a double); {@link #drain} hands each to the
+ * matching {@code output} method.
+ *
+ * {@link #close()} stops new claims atomically with the claim counter, so every
+ * sample that {@link #offer} accepted is still drained.
+ */
+final class SampleQueue {
+
+    private static final long CLOSED = 1L << 62;
+    private static final int SPINS_BEFORE_PARK = 100;
+    private static final long FULL_PARK_NANOS = 10_000;
+    private static final int MAX_CLAIM = 256;
+
+    private final int mask;
+    /** Most slots one batch claim takes; at most the capacity. */
+    private final int maxClaim;
+    private final int[] patientIds;
+    private final long[] timestamps;
+    private final String[] labels;
+    private final String[] data;
+    /** Label of an unformatted sample, {@code null} for a formatted one. */
+    private final Label[] kinds;
+    private final double[] numbers;
+    private final AtomicLongArray published;
+
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private volatile long end = Long.MAX_VALUE;
+
+    /**
+     * @param capacity number of slots; rounded up to a power of two
+     */
+    SampleQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.maxClaim = Math.min(size, MAX_CLAIM);
+        this.patientIds = new int[size];
+        this.timestamps = new long[size];
+        this.labels = new String[size];
+        this.data = new String[size];
+        this.kinds = new Label[size];
+        this.numbers = new double[size];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Enqueues one sample, waiting while the queue is full.
+     *
+     * @return {@code false} if the queue was closed and the sample was dropped
+     */
+    boolean offer(int patientId, long timestamp, String label, String value) {
+        long sequence = claim();
+        if (sequence < 0) {
+            return false;
+        }
+        publish(sequence, patientId, timestamp, label, value, null, 0);
+        return true;
+    }
+
+    /**
+     * Enqueues one unformatted sample, waiting while the queue is full.
+     *
+     * @return {@code false} if the queue was closed and the sample was dropped
+     */
+    boolean offer(int patientId, long timestamp, Label label, double value) {
+        long sequence = claim();
+        if (sequence < 0) {
+            return false;
+        }
+        publish(sequence, patientId, timestamp, null, null, label, value);
+        return true;
+    }
+
+    /**
+     * Enqueues one sample unless the queue is full or closed; never waits.
+     *
+     * @return {@code false} if the sample was dropped
+     */
+    boolean tryOffer(int patientId, long timestamp, String label, String value) {
+        long sequence = tryClaim();
+        if (sequence < 0) {
+            return false;
+        }
+        publish(sequence, patientId, timestamp, label, value, null, 0);
+        return true;
+    }
+
+    /**
+     * Enqueues one unformatted sample unless the queue is full or closed; never waits.
+     *
+     * @return {@code false} if the sample was dropped
+     */
+    boolean tryOffer(int patientId, long timestamp, Label label, double value) {
+        long sequence = tryClaim();
+        if (sequence < 0) {
+            return false;
+        }
+        publish(sequence, patientId, timestamp, null, null, label, value);
+        return true;
+    }
+
+    /**
+     * Enqueues every sample of a batch, in order, waiting while the queue is
+     * full. Slots are claimed many at a time, so producers contend once per
+     * claim instead of once per sample.
+     *
+     * @return samples accepted; fewer than the batch size only if the queue was closed
+     */
+    int offer(SampleBatch batch) {
+        int size = batch.size();
+        int accepted = 0;
+        while (accepted < size) {
+            int count = Math.min(size - accepted, maxClaim);
+            long first = tail.getAndAdd(count);
+            if ((first & CLOSED) != 0) {
+                return accepted;
+            }
+            awaitRoom(first + count - 1);
+            publish(first, batch, accepted, count);
+            accepted += count;
+        }
+        return accepted;
+    }
+
+    /**
+     * Enqueues a block of evenly spaced samples, in order, waiting while the
+     * queue is full; claims slots the same way as {@link #offer(SampleBatch)}.
+     *
+     * @return samples accepted; fewer than {@code count} only if the queue was closed
+     */
+    int offer(int patientId, long timestamp, long intervalMillis, Label label, double[] values, int from, int count) {
+        int accepted = 0;
+        while (accepted < count) {
+            int claimed = Math.min(count - accepted, maxClaim);
+            long first = tail.getAndAdd(claimed);
+            if ((first & CLOSED) != 0) {
+                return accepted;
+            }
+            awaitRoom(first + claimed - 1);
+            for (int i = 0; i < claimed; i++) {
+                int index = accepted + i;
+                publish(first + i, patientId, timestamp + index * intervalMillis, null, null,
+                        label, values[from + index]);
+            }
+            accepted += claimed;
+        }
+        return accepted;
+    }
+
+    /**
+     * Enqueues as many samples of a batch as fit, in order; never waits.
+     *
+     * @return samples accepted, starting with the first
+     */
+    int tryOffer(SampleBatch batch) {
+        int size = batch.size();
+        int accepted = 0;
+        while (accepted < size) {
+            long first = tail.get();
+            long free = mask + 1 - (first - head);
+            if ((first & CLOSED) != 0 || free <= 0) {
+                return accepted;
+            }
+            int count = (int) Math.min(size - accepted, Math.min(free, maxClaim));
+            if (tail.compareAndSet(first, first + count)) {
+                publish(first, batch, accepted, count);
+                accepted += count;
+            }
+        }
+        return accepted;
+    }
+
+    /** @return the claimed sequence number once its slot is free, or -1 if the queue is closed */
+    private long claim() {
+        long sequence = tail.getAndIncrement();
+        if ((sequence & CLOSED) != 0) {
+            return -1;
+        }
+        awaitRoom(sequence);
+        return sequence;
+    }
+
+    /** Waits until the consumer has freed the slot of {@code sequence}. */
+    private void awaitRoom(long sequence) {
+        int spins = 0;
+        while (sequence - head > mask) {
+            if (++spins < SPINS_BEFORE_PARK) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+        }
+    }
+
+    /** @return the claimed sequence number, or -1 if the queue is full or closed */
+    private long tryClaim() {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if ((sequence & CLOSED) != 0 || sequence - head > mask) {
+                return -1;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        return sequence;
+    }
+
+    private void publish(long first, SampleBatch batch, int from, int count) {
+        for (int i = 0; i < count; i++) {
+            publish(first + i, batch.patientIdAt(from + i), batch.timestampAt(from + i), null, null,
+                    batch.labelAt(from + i), batch.valueAt(from + i));
+        }
+    }
+
+    private void publish(long sequence, int patientId, long timestamp, String label, String value,
+                         Label kind, double number) {
+        int slot = (int) sequence & mask;
+        patientIds[slot] = patientId;
+        timestamps[slot] = timestamp;
+        labels[slot] = label;
+        data[slot] = value;
+        kinds[slot] = kind;
+        numbers[slot] = number;
+        published.setRelease(slot, sequence);
+    }
+
+    /**
+     * Hands up to {@code max} published samples, in order, to {@code sink}.
+     * Must only be called from the consumer thread.
+     *
+     * @return number of samples handed over
+     */
+    int drain(OutputStrategy sink, int max) {
+        long next = head;
+        int count = 0;
+        while (count < max) {
+            int slot = (int) next & mask;
+            if (published.getAcquire(slot) != next) {
+                break;
+            }
+            if (kinds[slot] != null) {
+                sink.output(patientIds[slot], timestamps[slot], kinds[slot], numbers[slot]);
+            } else {
+                sink.output(patientIds[slot], timestamps[slot], labels[slot], data[slot]);
+                // do not keep the strings reachable until the slot is reused
+                labels[slot] = null;
+                data[slot] = null;
+            }
+            next++;
+            count++;
+        }
+        if (count > 0) {
+            head = next;
+        }
+        return count;
+    }
+
+    /** Rejects every later {@link #offer}; samples accepted before remain drainable. */
+    void close() {
+        long previous = tail.getAndUpdate(t -> t | CLOSED);
+        if ((previous & CLOSED) == 0) {
+            end = previous;
+        }
+    }
+
+    /** @return {@code true} once the queue is closed and every accepted sample was drained */
+    boolean isDrained() {
+        return head >= end;
+    }
+}
@@ -0,0 +1,199 @@
+package com.cardio_generator.outputs;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sidecar index of one binary segment written by
+ * {@link BinaryFileOutputStrategy}: the segment's time range and patients,
+ * and for every block its file offset, length, time range and patients. A
+ * reader checks the index first and only reads the blocks that can hold the
+ * records it wants.
+ *
+ * <pre>
+ * index    := MAGIC(8 bytes) VERSION(int) blockCount(int) block*
+ * block    := offset(long) length(int) minTimestamp(long) maxTimestamp(long) patients
+ * patients := count(int; -1 = unknown) varint gaps between sorted patient IDs
+ * </pre>
+ *
+ * The segment's own range and patients are the union of its blocks'. Patient
+ * IDs are kept in bit sets, so only IDs from 0 up to
+ * {@value #INDEXED_PATIENTS} are indexed; a block holding any other ID may
+ * hold any patient.
+ */
+public final class SegmentIndex {
+
+    public static final byte[] MAGIC = "CARDIOIX".getBytes(StandardCharsets.US_ASCII);
+    public static final int VERSION = 1;
+    /** Patient IDs at or above this bound are not indexed, so a bit set never grows past it. */
+    public static final int INDEXED_PATIENTS = 1 << 20;
+
+    private final List<Block> blocks = new ArrayList<>();
+    private final BitSet patients = new BitSet();
+    private boolean anyPatient;
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+
+    /** @return the blocks in file order */
+    public List<Block> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    /** @return whether any block overlaps {@code [startTime, endTime]} */
+    public boolean overlaps(long startTime, long endTime) {
+        return minTimestamp <= endTime && maxTimestamp >= startTime;
+    }
+
+    /** @return whether the segment may hold records of the patient */
+    public boolean mayContain(int patientId) {
+        return anyPatient || (patientId >= 0 && patients.get(patientId));
+    }
+
+    void addBlock(long offset, int length, long blockMin, long blockMax, BitSet blockPatients, boolean unknown) {
+        blocks.add(new Block(offset, length, blockMin, blockMax, (BitSet) blockPatients.clone(), unknown));
+        minTimestamp = Math.min(minTimestamp, blockMin);
+        maxTimestamp = Math.max(maxTimestamp, blockMax);
+        patients.or(blockPatients);
+        anyPatient |= unknown;
+    }
+
+    /**
+     * Writes the index to a temporary file and moves it into place, so a
+     * reader never sees half an index.
+     */
+    void write(Path path) throws IOException {
+        int size = MAGIC.length + 8;
+        for (Block block : blocks) {
+            size += 8 + 4 + 8 + 8 + 4 + 5 * block.patients.cardinality();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(MAGIC).putInt(VERSION).putInt(blocks.size());
+        for (Block block : blocks) {
+            buffer.putLong(block.offset).putInt(block.length)
+                    .putLong(block.minTimestamp).putLong(block.maxTimestamp);
+            if (block.anyPatient) {
+                buffer.putInt(-1);
+                continue;
+            }
+            buffer.putInt(block.patients.cardinality());
+            int previous = 0;
+            for (int id = block.patients.nextSetBit(0); id >= 0; id = block.patients.nextSetBit(id + 1)) {
+                putVarint(buffer, id - previous);
+                previous = id;
+            }
+        }
+        buffer.flip();
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temporary, Arrays.copyOf(buffer.array(), buffer.limit()));
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param path sidecar file written next to a segment
+     * @return the parsed index
+     * @throws IOException if the file cannot be read or is not an index
+     */
+    public static SegmentIndex read(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        byte[] magic = new byte[MAGIC.length];
+        try {
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || buffer.getInt() != VERSION) {
+                throw new IOException(path + " is not a version " + VERSION + " segment index");
+            }
+            SegmentIndex index = new SegmentIndex();
+            int blockCount = buffer.getInt();
+            for (int i = 0; i < blockCount; i++) {
+                long offset = buffer.getLong();
+                int length = buffer.getInt();
+                long blockMin = buffer.getLong();
+                long blockMax = buffer.getLong();
+                int count = buffer.getInt();
+                BitSet blockPatients = new BitSet();
+                boolean unindexed = count < 0;
+                int id = 0;
+                for (int p = 0; p < count; p++) {
+                    id += getVarint(buffer);
+                    if (id >= 0 && id < INDEXED_PATIENTS) {
+                        blockPatients.set(id);
+                    } else {
+                        unindexed = true; // not written by this version; do not let it size a bit set
+                    }
+                }
+                index.addBlock(offset, length, blockMin, blockMax, blockPatients, unindexed);
+            }
+            return index;
+        } catch (BufferUnderflowException e) {
+            throw new IOException(path + " is truncated", e);
+        }
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /** Location and contents summary of one block. */
+    public static final class Block {
+        private final long offset;
+        private final int length;
+        private final long minTimestamp;
+        private final long maxTimestamp;
+        private final BitSet patients;
+        private final boolean anyPatient;
+
+        Block(long offset, int length, long minTimestamp, long maxTimestamp, BitSet patients, boolean anyPatient) {
+            this.offset = offset;
+            this.length = length;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+            this.patients = patients;
+            this.anyPatient = anyPatient;
+        }
+
+        /** @return byte offset of the block header in the segment */
+        public long getOffset() {
+            return offset;
+        }
+
+        /** @return bytes of header, label dictionary and payload */
+        public int getLength() {
+            return length;
+        }
+
+        /** @return whether the block overlaps {@code [startTime, endTime]} */
+        public boolean overlaps(long startTime, long endTime) {
+            return minTimestamp <= endTime && maxTimestamp >= startTime;
+        }
+
+        /** @return whether the block may hold records of the patient */
+        public boolean mayContain(int patientId) {
+            return anyPatient || (patientId >= 0 && patients.get(patientId));
+        }
+    }
+}
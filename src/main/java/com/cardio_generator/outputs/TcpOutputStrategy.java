@@ -1,51 +1,135 @@
 package com.cardio_generator.outputs;
 
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.concurrent.Executors;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Streams newline-delimited CSV over a plain TCP socket to a "single" client.
+ * Streams newline-delimited CSV over plain TCP to any number of clients.
  *
- * Only the first client that connects is served; subsequent connections are ignored
- * until the current client disconnects.
+ * Generator threads never touch a socket: {@link #output} only offers the
+ * sample to a lock-free {@link SampleQueue} and drops it if the queue is full.
+ * One selector thread accepts clients and encodes every queued sample once,
+ * without allocating, into a ring of lines shared by all clients. Each client
+ * only keeps its position in that ring; lines are copied from the ring into a
+ * per-client write buffer, so each non-blocking write carries many lines. A
+ * client that falls so far behind that the ring overwrites lines it has not
+ * sent yet is handled by its {@link OverloadPolicy}; other clients are not
+ * affected, and the lines it loses are counted against it alone.
  */
-public class TcpOutputStrategy implements OutputStrategy {
+public final class TcpOutputStrategy implements OutputStrategy {
 
-    private ServerSocket serverSocket;
-    private Socket clientSocket;
-    private PrintWriter out;
+    /** What to do with a client that reads slower than data is produced. */
+    public enum OverloadPolicy {
+        /** Skip the lines the ring has overwritten and continue with the oldest it still holds. */
+        DROP_OLDEST,
+        /** Close the connection; the client may reconnect. */
+        DISCONNECT,
+        /**
+         * Send only every {@value TcpOutputStrategy#SAMPLE_RATE}th line while the
+         * client is more than half the ring behind; overwritten lines are skipped.
+         */
+        SAMPLE
+    }
+
+    public static final int DEFAULT_CLIENT_CAPACITY = 1 << 16;
+    static final int SAMPLE_RATE = 4;
+
+    private static final int QUEUE_CAPACITY = 1 << 16;
+    private static final int DRAIN_BATCH = 1024;
+    /** Also the longest line; longer lines are dropped. */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    /** Ring bytes reserved per buffered line. */
+    private static final int AVERAGE_LINE_BYTES = 64;
+    private static final int MIN_RING_BYTES = 1 << 20;
+    /** Longest time a line waits in the queue before the selector thread picks it up. */
+    private static final long SELECT_TIMEOUT_MILLIS = 5;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
 
+    private final int clientCapacity;
+    private final OverloadPolicy overloadPolicy;
+    private final SampleQueue queue = new SampleQueue(QUEUE_CAPACITY);
+    private final LongAdder dropped = new LongAdder();
+    private ServerSocketChannel serverChannel;
+    private Selector selector;
+    private Thread selectorThread;
+    private volatile boolean running;
+    private volatile int clientCount;
+    /** Connected clients by remote address, for their drop counts. */
+    private final Map<SocketAddress, Client> clientsByAddress = new ConcurrentHashMap<>();
+
+    // Only touched by the selector thread
+    private final List<Client> clients = new ArrayList<>();
+    /** Encoded lines; line {@code n} starts at {@code lineStarts[n % clientCapacity] % ring.length}. */
+    private final byte[] ring;
+    private final long[] lineStarts;
+    private final int[] lineLengths;
+    private final byte[] line = new byte[WRITE_BUFFER_SIZE];
+    /** Lines and bytes appended to the ring so far. */
+    private long lineCount;
+    private long ringEnd;
+    private long flushedLineCount;
+    private long flushedRingEnd;
     /**
-     * Opens a server socket and waits for one client.
+     * Opens a server socket that accepts any number of clients, each of which
+     * may fall {@value #DEFAULT_CLIENT_CAPACITY} lines behind before it loses
+     * the oldest lines.
      *
-     * @param port TCP port to listen on
+     * @param port TCP port to listen on; 0 picks a free port
      * @throws IllegalArgumentException if {@code port} is not between 0 and 65535
      */
     public TcpOutputStrategy(int port) {
+        this(port, DEFAULT_CLIENT_CAPACITY, OverloadPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * @param port           TCP port to listen on; 0 picks a free port
+     * @param clientCapacity lines a client may fall behind before its overload policy applies
+     * @param overloadPolicy what to do when a client's buffer is full
+     * @throws IllegalArgumentException if {@code port} is not between 0 and 65535
+     */
+    public TcpOutputStrategy(int port, int clientCapacity, OverloadPolicy overloadPolicy) {
+        if (clientCapacity < 1) {
+            throw new IllegalArgumentException("clientCapacity must be positive: " + clientCapacity);
+        }
+        this.clientCapacity = clientCapacity;
+        this.overloadPolicy = overloadPolicy;
+        this.ring = new byte[(int) Math.min(Integer.MAX_VALUE - 8,
+                Math.max(MIN_RING_BYTES, (long) clientCapacity * AVERAGE_LINE_BYTES))];
+        this.lineStarts = new long[clientCapacity];
+        this.lineLengths = new int[clientCapacity];
         try {
-            serverSocket = new ServerSocket(port);
-            System.out.println("TCP Server started on port " + port);
-
-            // Accept clients in a new thread to not block the main thread
-            Executors.newSingleThreadExecutor().submit(() -> {
-                try {
-                    clientSocket = serverSocket.accept();
-                    out = new PrintWriter(clientSocket.getOutputStream(), true);
-                    System.out.println("Client connected: " + clientSocket.getInetAddress());
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            });
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            System.out.println("TCP Server started on port " + getPort());
+
+            running = true;
+            selectorThread = new Thread(this::runSelector, "tcp-output-selector");
+            selectorThread.setDaemon(true);
+            selectorThread.start();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Sends one CSV line to the connected client, if present.
+     * Queues one CSV line for every connected client. Returns immediately;
+     * the line is dropped if no client is connected or the queue is full.
      *
      * @param patientId unique patient ID
      * @param timestamp epoch milliseconds
@@ -54,9 +138,334 @@ public class TcpOutputStrategy implements OutputStrategy {
      */
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        if (out != null) {
-            String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-            out.println(message);
+        if (clientCount > 0 && !queue.tryOffer(patientId, timestamp, label, data)) {
+            dropped.increment();
+        }
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, Label label, double value) {
+        if (clientCount > 0 && !queue.tryOffer(patientId, timestamp, label, value)) {
+            dropped.increment();
+        }
+    }
+
+    /** Queues as much of the batch as fits with one claim per run of free slots; the rest is dropped. */
+    @Override
+    public void output(SampleBatch batch) {
+        if (clientCount > 0) {
+            dropped.add(batch.size() - queue.tryOffer(batch));
+        }
+    }
+
+    /** Stops the selector thread and closes every connection and the server socket. */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** @return the port the server listens on, or -1 if it could not be opened */
+    public int getPort() {
+        return serverChannel != null && serverChannel.socket().isBound() ? serverChannel.socket().getLocalPort() : -1;
+    }
+
+    /** @return number of connected clients */
+    public int getClientCount() {
+        return clientCount;
+    }
+
+    /** @return lines dropped so far by the shared queue, for being too long, or per client by its overload policy */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @param clientAddress remote address of a client, as the client sees its local address
+     * @return lines that client has lost so far, or 0 if no such client is connected
+     */
+    public long getDroppedCount(SocketAddress clientAddress) {
+        Client client = clientsByAddress.get(clientAddress);
+        return client == null ? 0 : client.dropped;
+    }
+
+    private void runSelector() {
+        OutputStrategy broadcast = new OutputStrategy() {
+            @Override
+            public void output(int patientId, long timestamp, String label, String data) {
+                broadcast(patientId, timestamp, label, data);
+            }
+
+            @Override
+            public void output(int patientId, long timestamp, Label label, double value) {
+                broadcast(patientId, timestamp, label, value);
+            }
+        };
+        try {
+            while (running) {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Client client = (Client) key.attachment();
+                        if (key.isReadable()) {
+                            client.discardInput();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            client.flush();
+                        }
+                    }
+                }
+                // flush between batches so a burst does not overrun clients that keep up
+                int drained;
+                do {
+                    drained = queue.drain(broadcast, DRAIN_BATCH);
+                    flushClients();
+                } while (drained == DRAIN_BATCH);
+                clients.removeIf(client -> !client.channel.isOpen());
+                clientCount = clients.size();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            for (Client client : clients) {
+                client.close();
+            }
+            clientCount = 0;
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Client client = new Client(channel);
+            client.key = channel.register(selector, SelectionKey.OP_READ, client);
+            clients.add(client);
+            clientsByAddress.put(client.address, client);
+            clientCount = clients.size();
+            System.out.println("Client connected: " + channel.socket().getInetAddress());
+        }
+    }
+
+    /** Encodes one sample once into the ring. */
+    private void broadcast(int patientId, long timestamp, String label, String data) {
+        int position = putPrefix(patientId, timestamp);
+        position = putString(position, label);
+        if (position >= 0) {
+            line[position++] = ',';
+            position = putString(position, data);
+        }
+        if (position < 0 || position + LINE_SEPARATOR.length > line.length) {
+            for (int i = 0; i < clients.size(); i++) {
+                clients.get(i).drop(1);
+            }
+            return;
+        }
+        append(TextEncoder.putAscii(line, position, LINE_SEPARATOR));
+    }
+
+    /** Encodes one unformatted sample once into the ring. */
+    private void broadcast(int patientId, long timestamp, Label label, double value) {
+        int position = TextEncoder.putAscii(line, putPrefix(patientId, timestamp), label.ascii());
+        line[position++] = ',';
+        position = TextEncoder.putValue(line, position, label, value);
+        append(TextEncoder.putAscii(line, position, LINE_SEPARATOR));
+    }
+
+    /** Writes {@code patientId,timestamp,} to the start of {@link #line}. */
+    private int putPrefix(int patientId, long timestamp) {
+        int position = TextEncoder.putLong(line, 0, patientId);
+        line[position++] = ',';
+        position = TextEncoder.putLong(line, position, timestamp);
+        line[position++] = ',';
+        return position;
+    }
+
+    /** @return position after {@code value} as UTF-8, or -1 if it does not fit */
+    private int putString(int position, String value) {
+        int length = value.length();
+        if (position < 0 || position + length > line.length) {
+            return -1;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                return position + utf8.length > line.length ? -1 : TextEncoder.putAscii(line, position, utf8);
+            }
+            line[position + i] = (byte) c;
+        }
+        return position + length;
+    }
+
+    /** Copies the encoded line into the ring, flushing early when the ring fills faster than batches end. */
+    private void append(int length) {
+        int slot = (int) (lineCount % clientCapacity);
+        lineStarts[slot] = ringEnd;
+        lineLengths[slot] = length;
+        int offset = (int) (ringEnd % ring.length);
+        int first = Math.min(length, ring.length - offset);
+        System.arraycopy(line, 0, ring, offset, first);
+        System.arraycopy(line, first, ring, 0, length - first);
+        ringEnd += length;
+        lineCount++;
+        if (lineCount - flushedLineCount >= clientCapacity / 4 || ringEnd - flushedRingEnd >= ring.length / 4) {
+            flushClients();
+        }
+    }
+
+    private void flushClients() {
+        for (int i = 0; i < clients.size(); i++) {
+            Client client = clients.get(i);
+            client.catchUp();
+            client.flush();
+        }
+        flushedLineCount = lineCount;
+        flushedRingEnd = ringEnd;
+    }
+
+    /** One connection with its position in the ring. */
+    private final class Client {
+        final SocketChannel channel;
+        final SocketAddress address;
+        final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        final ByteBuffer readBuffer = ByteBuffer.allocate(256);
+        SelectionKey key;
+        /** First line not copied into the write buffer yet. */
+        long nextLine = lineCount;
+        long sampleCounter;
+        /** Lines this client lost; only written by the selector thread. */
+        volatile long dropped;
+
+        Client(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.address = channel.getRemoteAddress();
+            writeBuffer.flip(); // empty, in read mode
+        }
+
+        void drop(long lines) {
+            dropped += lines;
+            TcpOutputStrategy.this.dropped.add(lines);
+        }
+
+        /** Applies the overload policy if the ring has overwritten lines this client has not sent. */
+        void catchUp() {
+            long behind = lineCount - nextLine;
+            if (behind == 0 || !channel.isOpen() || (behind <= clientCapacity && isInRing(nextLine))) {
+                return;
+            }
+            if (overloadPolicy == OverloadPolicy.DISCONNECT) {
+                System.out.println("Client too slow, disconnecting: " + channel.socket().getInetAddress());
+                drop(behind);
+                close();
+                return;
+            }
+            long oldest = Math.max(nextLine, lineCount - clientCapacity);
+            while (!isInRing(oldest)) {
+                oldest++;
+            }
+            drop(oldest - nextLine);
+            nextLine = oldest;
+        }
+
+        /** Writes as much as the socket takes without blocking. */
+        void flush() {
+            try {
+                while (channel.isOpen()) {
+                    if (!writeBuffer.hasRemaining()) {
+                        if (nextLine == lineCount) {
+                            break;
+                        }
+                        fill();
+                    }
+                    if (channel.write(writeBuffer) == 0) {
+                        break; // socket buffer full
+                    }
+                }
+                if (channel.isOpen()) {
+                    boolean pending = writeBuffer.hasRemaining() || nextLine < lineCount;
+                    key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        /** Copies whole lines from the ring into the empty write buffer. */
+        private void fill() {
+            catchUp();
+            writeBuffer.clear();
+            while (nextLine < lineCount) {
+                if (overloadPolicy == OverloadPolicy.SAMPLE && lineCount - nextLine > clientCapacity / 2
+                        && sampleCounter++ % SAMPLE_RATE != 0) {
+                    drop(1);
+                    nextLine++;
+                    continue;
+                }
+                int slot = (int) (nextLine % clientCapacity);
+                int length = lineLengths[slot];
+                if (length > writeBuffer.remaining()) {
+                    break;
+                }
+                int offset = (int) (lineStarts[slot] % ring.length);
+                int first = Math.min(length, ring.length - offset);
+                writeBuffer.put(ring, offset, first).put(ring, 0, length - first);
+                nextLine++;
+            }
+            writeBuffer.flip();
+        }
+
+        /** @return whether none of the line's bytes have been overwritten; the line must be in the index */
+        private boolean isInRing(long lineNumber) {
+            return lineStarts[(int) (lineNumber % clientCapacity)] >= ringEnd - ring.length;
+        }
+
+        /** Reads and ignores whatever the client sends; end of stream closes it. */
+        void discardInput() {
+            try {
+                readBuffer.clear();
+                if (channel.read(readBuffer) < 0) {
+                    close();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            if (channel.isOpen()) {
+                System.out.println("Client disconnected: " + channel.socket().getInetAddress());
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // nothing left to release
+            }
+            clientsByAddress.remove(address, this);
+            nextLine = lineCount;
         }
     }
 }
@@ -0,0 +1,254 @@
+package com.cardio_generator.outputs;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes numbers and labelled values as ASCII straight into a byte array, so
+ * the text outputs need no String per sample.
+ *
+ * Doubles are written as plain decimals ({@code 1.0E7} becomes
+ * {@code 10000000.0}) with the same digits as {@link Double#toString}: the
+ * shortest that read back as exactly the same double. They are found with
+ * Raffaello Giulietti's Schubfach algorithm, which {@link Double#toString}
+ * uses since JDK 19, on a table of 126-bit powers of ten computed once.
+ * Values below {@value #MIN_PLAIN} or from {@value #MAX_PLAIN} up, infinities
+ * and NaN fall back to {@link Double#toString}, which allocates; the
+ * generators produce none of them.
+ */
+final class TextEncoder {
+
+    /** Longest output of {@link #putValue}: sign, 17 digits, point, 5 leading zeros and a suffix. */
+    static final int MAX_VALUE_BYTES = 32;
+    /** Longest output of {@link #putLong}. */
+    static final int MAX_LONG_BYTES = 20;
+
+    static final double MIN_PLAIN = 1e-6;
+    static final double MAX_PLAIN = 1e15;
+
+    private static final byte[] TRIGGERED = ascii("triggered");
+    private static final byte[] RESOLVED = ascii("resolved");
+
+    private static final int SIGNIFICANT_DIGITS = 17;
+    private static final long[] LONG_POWERS_OF_TEN = new long[SIGNIFICANT_DIGITS + 2];
+
+    // Schubfach: a finite positive double is c * 2^q with c < 2^53; its decimal exponent k is in [K_MIN, K_MAX]
+    private static final int Q_MIN = -1074;
+    private static final long C_MIN = 1L << 52;
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+    private static final long MASK_63 = Long.MAX_VALUE;
+    /** For each k, 10^-k as {@code g = g1 * 2^63 + g0} with {@code 2^125 < g <= 2^126}, rounded up. */
+    private static final long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+
+    static {
+        LONG_POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < LONG_POWERS_OF_TEN.length; i++) {
+            LONG_POWERS_OF_TEN[i] = LONG_POWERS_OF_TEN[i - 1] * 10;
+        }
+        BigInteger mask = BigInteger.valueOf(MASK_63);
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            // 10^-k = beta * 2^r with 2^125 <= beta < 2^126
+            int r = flog2pow10(-k) - 125;
+            BigInteger beta = k <= 0
+                    ? BigInteger.TEN.pow(-k).shiftLeft(-r) // a negative shift rounds down
+                    : BigInteger.ONE.shiftLeft(-r).divide(BigInteger.TEN.pow(k));
+            BigInteger g = beta.add(BigInteger.ONE);
+            G[2 * (k - K_MIN)] = g.shiftRight(63).longValueExact();
+            G[2 * (k - K_MIN) + 1] = g.and(mask).longValueExact();
+        }
+    }
+
+    private TextEncoder() {
+    }
+
+    /** @return position after the decimal digits of {@code value} written at {@code position} */
+    static int putLong(byte[] dst, int position, long value) {
+        // digits are produced from the negative value so Long.MIN_VALUE needs no special case
+        long negative = value < 0 ? value : -value;
+        int length = 1;
+        for (long rest = negative / 10; rest != 0; rest /= 10) {
+            length++;
+        }
+        if (value < 0) {
+            dst[position++] = '-';
+        }
+        int end = position + length;
+        for (int i = end - 1; i >= position; i--) {
+            dst[i] = (byte) ('0' - negative % 10);
+            negative /= 10;
+        }
+        return end;
+    }
+
+    /** @return position after {@code value} written as a plain decimal at {@code position} */
+    static int putDouble(byte[] dst, int position, double value) {
+        if (value == 0) {
+            if (Double.doubleToRawLongBits(value) != 0) {
+                dst[position++] = '-';
+            }
+            return putFraction(dst, putLong(dst, position, 0), 0, 1);
+        }
+        double magnitude = Math.abs(value);
+        if (!(magnitude >= MIN_PLAIN && magnitude < MAX_PLAIN)) {
+            return putAscii(dst, position, ascii(Double.toString(value)));
+        }
+        if (value < 0) {
+            dst[position++] = '-';
+        }
+        if (magnitude == Math.rint(magnitude)) {
+            return putFraction(dst, putLong(dst, position, (long) magnitude), 0, 1);
+        }
+
+        return putShortest(dst, position, magnitude);
+    }
+
+    /**
+     * Writes the shortest decimal that reads back as {@code magnitude}, a
+     * normal, positive double; this is {@code DoubleToDecimal.toDecimal} of
+     * the JDK, writing plain digits instead of a String.
+     */
+    private static int putShortest(byte[] dst, int position, double magnitude) {
+        long bits = Double.doubleToRawLongBits(magnitude);
+        int q = (int) (bits >>> 52) - 1075;
+        long c = C_MIN | (bits & (C_MIN - 1));
+
+        // the rounding interval of c * 2^q, in quarter units: [cbl, cbr], open if c is odd
+        int out = (int) c & 1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != C_MIN || q == Q_MIN) {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            // at a power of two the interval below is half as wide
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+        long g1 = G[2 * (k - K_MIN)];
+        long g0 = G[2 * (k - K_MIN) + 1];
+        long vb = roundOdd(g1, g0, cb << h);
+        long vbl = roundOdd(g1, g0, cbl << h);
+        long vbr = roundOdd(g1, g0, cbr << h);
+
+        // one digit fewer, if a multiple of ten lies in the interval
+        long s = vb >> 2;
+        if (s >= 100) {
+            long sp10 = s / 10 * 10;
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return putDecimal(dst, position, upin ? sp10 : tp10, k);
+            }
+        }
+        // otherwise s or s + 1, whichever is in the interval, or the closer one
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return putDecimal(dst, position, uin ? s : t, k);
+        }
+        long cmp = vb - (s + t << 1);
+        return putDecimal(dst, position, cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k);
+    }
+
+    /** @return {@code g * cp / 2^127}, rounded to odd */
+    private static long roundOdd(long g1, long g0, long cp) {
+        long x1 = Math.multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = Math.multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    /** Writes {@code f * 10^e} as a plain decimal with at least one fraction digit. */
+    private static int putDecimal(byte[] dst, int position, long f, int e) {
+        while (f % 10 == 0) {
+            f /= 10;
+            e++;
+        }
+        if (e >= 0) {
+            position = putLong(dst, position, f);
+            for (int i = 0; i < e; i++) {
+                dst[position++] = '0';
+            }
+            return putFraction(dst, position, 0, 1);
+        }
+        int length = 1;
+        while (length < LONG_POWERS_OF_TEN.length && f >= LONG_POWERS_OF_TEN[length]) {
+            length++;
+        }
+        int integerDigits = length + e;
+        if (integerDigits <= 0) {
+            // 0.000ddd: the zero-padded fraction holds every digit
+            return putFraction(dst, putLong(dst, position, 0), f, -e);
+        }
+        // one pass from the last digit, with the point after integerDigits of them
+        int point = position + integerDigits;
+        int end = position + length + 1;
+        for (int i = end - 1; i > point; i--) {
+            dst[i] = (byte) ('0' + f % 10);
+            f /= 10;
+        }
+        dst[point] = '.';
+        for (int i = point - 1; i >= position; i--) {
+            dst[i] = (byte) ('0' + f % 10);
+            f /= 10;
+        }
+        return end;
+    }
+
+    /** @return floor(e * log10(2)) */
+    private static int flog10pow2(int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    /** @return floor(e * log10(2) + log10(3/4)) */
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) (e * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+
+    /** @return floor(e * log2(10)) */
+    private static int flog2pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+
+    /** @return position after {@code value} written the way {@code label} reads as text */
+    static int putValue(byte[] dst, int position, Label label, double value) {
+        switch (label.valueFormat()) {
+            case ALERT_STATE:
+                return putAscii(dst, position, value == 1 ? TRIGGERED : RESOLVED);
+            case PERCENT:
+                position = putDouble(dst, position, value);
+                dst[position] = '%';
+                return position + 1;
+            default:
+                return putDouble(dst, position, value);
+        }
+    }
+
+    static int putAscii(byte[] dst, int position, byte[] ascii) {
+        System.arraycopy(ascii, 0, dst, position, ascii.length);
+        return position + ascii.length;
+    }
+
+    /** Writes the point and {@code fraction} zero-padded to {@code digits} digits. */
+    private static int putFraction(byte[] dst, int position, long fraction, int digits) {
+        dst[position++] = '.';
+        int end = position + digits;
+        for (int i = end - 1; i >= position; i--) {
+            dst[i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        return end;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,150 @@
+package com.cardio_generator.outputs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Routes samples to the subscribers interested in their patient and label.
+ *
+ * A subscription names a set of patient IDs and a set of labels, either of
+ * which may be {@code null} for "any". It is stored under every topic it
+ * covers: {@code (patient, label)} pairs, {@code (patient, *)},
+ * {@code (*, label)} or {@code (*, *)}. A sample looks up exactly those four
+ * topics, so routing costs O(matching subscribers) however many subscribers
+ * watch other topics, and a subscriber is found at most once per sample.
+ *
+ * Not thread-safe; the owner serialises all calls.
+ *
+ * @param <T> subscriber type, compared by identity
+ */
+public final class TopicIndex<T> {
+
+    private final Map<String, Map<Integer, List<T>>> byLabelAndPatient = new HashMap<>();
+    private final Map<Integer, List<T>> byPatient = new HashMap<>();
+    private final Map<String, List<T>> byLabel = new HashMap<>();
+    private final List<T> everything = new ArrayList<>();
+    private final Map<T, Subscription> subscriptions = new IdentityHashMap<>();
+
+    /**
+     * Adds or replaces the subscription of {@code subscriber}.
+     *
+     * @param subscriber the subscriber
+     * @param patientIds patients to receive, or {@code null} for every patient
+     * @param labels     labels to receive, or {@code null} for every label
+     */
+    public void subscribe(T subscriber, Set<Integer> patientIds, Set<String> labels) {
+        unsubscribe(subscriber);
+        patientIds = patientIds == null ? null : Set.copyOf(patientIds);
+        labels = labels == null ? null : Set.copyOf(labels);
+        Subscription subscription = new Subscription(patientIds, labels);
+        subscriptions.put(subscriber, subscription);
+        if (patientIds == null && labels == null) {
+            everything.add(subscriber);
+        } else if (labels == null) {
+            for (Integer patientId : patientIds) {
+                byPatient.computeIfAbsent(patientId, id -> new ArrayList<>()).add(subscriber);
+            }
+        } else if (patientIds == null) {
+            for (String label : labels) {
+                byLabel.computeIfAbsent(label, l -> new ArrayList<>()).add(subscriber);
+            }
+        } else {
+            for (String label : labels) {
+                Map<Integer, List<T>> patients = byLabelAndPatient.computeIfAbsent(label, l -> new HashMap<>());
+                for (Integer patientId : patientIds) {
+                    patients.computeIfAbsent(patientId, id -> new ArrayList<>()).add(subscriber);
+                }
+            }
+        }
+    }
+
+    /** Removes every topic of {@code subscriber}; does nothing if it has none. */
+    public void unsubscribe(T subscriber) {
+        Subscription subscription = subscriptions.remove(subscriber);
+        if (subscription == null) {
+            return;
+        }
+        Set<Integer> patientIds = subscription.patientIds;
+        Set<String> labels = subscription.labels;
+        if (patientIds == null && labels == null) {
+            removeFrom(everything, subscriber);
+        } else if (labels == null) {
+            for (Integer patientId : patientIds) {
+                removeFrom(byPatient, patientId, subscriber);
+            }
+        } else if (patientIds == null) {
+            for (String label : labels) {
+                removeFrom(byLabel, label, subscriber);
+            }
+        } else {
+            for (String label : labels) {
+                Map<Integer, List<T>> patients = byLabelAndPatient.get(label);
+                for (Integer patientId : patientIds) {
+                    removeFrom(patients, patientId, subscriber);
+                }
+                if (patients.isEmpty()) {
+                    byLabelAndPatient.remove(label);
+                }
+            }
+        }
+    }
+
+    /** Hands every subscriber of the sample's topics to {@code sink}, each once. */
+    public void route(int patientId, String label, Consumer<? super T> sink) {
+        Map<Integer, List<T>> patients = byLabelAndPatient.get(label);
+        if (patients != null) {
+            deliver(patients.get(patientId), sink);
+        }
+        if (!byPatient.isEmpty()) {
+            deliver(byPatient.get(patientId), sink);
+        }
+        deliver(byLabel.get(label), sink);
+        deliver(everything, sink);
+    }
+
+    /** @return number of subscribers */
+    public int size() {
+        return subscriptions.size();
+    }
+
+    private void deliver(List<T> subscribers, Consumer<? super T> sink) {
+        if (subscribers != null) {
+            for (int i = 0; i < subscribers.size(); i++) {
+                sink.accept(subscribers.get(i));
+            }
+        }
+    }
+
+    private static <K, T> void removeFrom(Map<K, List<T>> topics, K key, T subscriber) {
+        List<T> subscribers = topics.get(key);
+        removeFrom(subscribers, subscriber);
+        if (subscribers.isEmpty()) {
+            topics.remove(key);
+        }
+    }
+
+    private static <T> void removeFrom(List<T> subscribers, T subscriber) {
+        for (int i = 0; i < subscribers.size(); i++) {
+            if (subscribers.get(i) == subscriber) {
+                subscribers.remove(i);
+                return;
+            }
+        }
+    }
+
+    /** The sets one subscriber was registered with, needed to unregister it. */
+    private static final class Subscription {
+        final Set<Integer> patientIds;
+        final Set<String> labels;
+
+        Subscription(Set<Integer> patientIds, Set<String> labels) {
+            this.patientIds = patientIds;
+            this.labels = labels;
+        }
+    }
+}
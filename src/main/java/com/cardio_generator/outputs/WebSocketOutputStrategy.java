@@ -4,45 +4,413 @@ import org.java_websocket.WebSocket;
 import org.java_websocket.server.WebSocketServer;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
+/**
+ * Broadcasts samples to connected WebSocket clients in batches, filtered by
+ * each client's subscription.
+ *
+ * {@link #output} only offers the sample to a lock-free {@link SampleQueue}
+ * (dropping it when the queue is full or nobody is connected). A flusher
+ * thread collects samples into frames and sends a frame when it holds
+ * {@code maxBatchRecords} samples or the flush interval has passed, so a
+ * client receives one frame per flush instead of one per sample.
+ *
+ * A new client receives everything. It can narrow that down by sending
+ * <pre>
+ *   subscribe patients=1,2 labels=ECG,Saturation
+ * </pre>
+ * where either part may be left out to mean "any", {@code subscribe} alone
+ * restores everything and {@code unsubscribe} stops all data. Clients that
+ * receive everything share one frame that is encoded once and written to
+ * each of them. Filtered clients are kept in a {@link TopicIndex} and get
+ * frames of their own, so a sample costs work only for the clients that
+ * watch it.
+ *
+ * A {@link FrameFormat#TEXT} frame holds one {@code patientId,timestamp,label,data}
+ * line per sample, separated by {@code '\n'}. A {@link FrameFormat#BINARY}
+ * frame is big-endian:
+ * <pre>
+ * frame  := labelCount(short) (labelBytes(short) UTF-8 label)* recordCount(int) record*
+ * record := patientId(int) timestamp(long) labelIndex(short) value(double)
+ * </pre>
+ * Binary values follow the rules of {@link BinaryFileOutputStrategy}: a
+ * trailing {@code %} is dropped, {@code triggered} is 1, {@code resolved} is 0
+ * and samples whose data is not a number are dropped.
+ */
 public class WebSocketOutputStrategy implements OutputStrategy {
 
-    private WebSocketServer server;
+    /** Payload type of the frames. */
+    public enum FrameFormat {
+        TEXT,
+        BINARY
+    }
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 20;
+    public static final int DEFAULT_MAX_BATCH_RECORDS = 1024;
+
+    private static final int QUEUE_CAPACITY = 1 << 16;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final SimpleWebSocketServer server;
+    private final long flushIntervalNanos;
+    private final int maxBatchRecords;
+    private final FrameFormat format;
+    private final SampleQueue queue = new SampleQueue(QUEUE_CAPACITY);
+    /** Subscription changes from the server thread, applied by the flusher. */
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+    private final Thread flusher;
+    private volatile boolean running = true;
+    private volatile int subscriberCount;
+
+    // Only touched by the flusher thread
+    private final List<WebSocket> everyone = new ArrayList<>();
+    private final FrameBatch shared;
+    private final Map<WebSocket, Subscriber> filtered = new HashMap<>();
+    private final TopicIndex<Subscriber> topics = new TopicIndex<>();
+    private final Consumer<Subscriber> deliver = this::deliver;
+    private int samplePatientId;
+    private long sampleTimestamp;
+    private Label sampleKind;
+    private String sampleLabel;
+    private String sampleData;
+    private double sampleValue;
 
+    /**
+     * Starts a server that sends text frames every
+     * {@value #DEFAULT_FLUSH_INTERVAL_MILLIS} ms or {@value #DEFAULT_MAX_BATCH_RECORDS} samples.
+     *
+     * @param port TCP port to listen on
+     */
     public WebSocketOutputStrategy(int port) {
-        server = new SimpleWebSocketServer(new InetSocketAddress(port));
+        this(port, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_MAX_BATCH_RECORDS, FrameFormat.TEXT);
+    }
+
+    /**
+     * @param port                TCP port to listen on
+     * @param flushIntervalMillis longest time a sample waits for its frame
+     * @param maxBatchRecords     samples after which a frame is sent early
+     * @param format              payload type of the frames
+     */
+    public WebSocketOutputStrategy(int port, long flushIntervalMillis, int maxBatchRecords, FrameFormat format) {
+        if (maxBatchRecords < 1) {
+            throw new IllegalArgumentException("maxBatchRecords must be positive: " + maxBatchRecords);
+        }
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.maxBatchRecords = maxBatchRecords;
+        this.format = format;
+        this.shared = new FrameBatch(format, maxBatchRecords);
+        server = new SimpleWebSocketServer(new InetSocketAddress(port), commands, this);
         System.out.println("WebSocket server created on port: " + port + ", listening for connections...");
         server.start();
+        flusher = new Thread(this::runFlusher, "websocket-flush");
+        flusher.setDaemon(true);
+        flusher.start();
     }
 
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-        // Broadcast the message to all connected clients
-        for (WebSocket conn : server.getConnections()) {
-            conn.send(message);
+        if (server.openConnections.get() > 0 && !queue.tryOffer(patientId, timestamp, label, data)) {
+            dropped.increment();
+        }
+    }
+
+    @Override
+    public void output(int patientId, long timestamp, Label label, double value) {
+        if (server.openConnections.get() > 0 && !queue.tryOffer(patientId, timestamp, label, value)) {
+            dropped.increment();
+        }
+    }
+
+    /** Queues as much of the batch as fits with one claim per run of free slots; the rest is dropped. */
+    @Override
+    public void output(SampleBatch batch) {
+        if (server.openConnections.get() > 0) {
+            dropped.add(batch.size() - queue.tryOffer(batch));
+        }
+    }
+
+    /** Sends what is batched, stops the flusher and the server. */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        queue.close();
+        running = false;
+        try {
+            flusher.join();
+            server.stop(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** @return samples dropped because the queue was full or not a number in binary frames */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /** @return frames sent so far; a shared frame counts once */
+    public long getFrameCount() {
+        return frames.sum();
+    }
+
+    /** @return the port the server listens on, or -1 until it has started */
+    public int getPort() {
+        return server.started ? server.getPort() : -1;
+    }
+
+    /** @return connections whose subscription filters what they receive, once the flusher has applied it */
+    public int getSubscriberCount() {
+        return subscriberCount;
+    }
+
+    private void runFlusher() {
+        OutputStrategy route = new OutputStrategy() {
+            @Override
+            public void output(int patientId, long timestamp, String label, String data) {
+                route(patientId, timestamp, label, data);
+            }
+
+            @Override
+            public void output(int patientId, long timestamp, Label label, double value) {
+                route(patientId, timestamp, label, value);
+            }
+        };
+        long nextFlush = System.nanoTime() + flushIntervalNanos;
+        while (running || !queue.isDrained()) {
+            Runnable command;
+            while ((command = commands.poll()) != null) {
+                command.run();
+            }
+            int drained = queue.drain(route, maxBatchRecords);
+            long now = System.nanoTime();
+            if (now - nextFlush >= 0) {
+                flushAll();
+                nextFlush = now + flushIntervalNanos;
+            }
+            if (drained == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        flushAll();
+    }
+
+    /** Adds one sample to the shared frame and to the frame of every matching subscriber. */
+    private void route(int patientId, long timestamp, String label, String data) {
+        double value = 0;
+        if (format == FrameFormat.BINARY) {
+            value = BinaryFileOutputStrategy.parseValue(data);
+            if (Double.isNaN(value) && !data.equals("NaN")) {
+                dropped.increment();
+                return;
+            }
+        }
+        if (!everyone.isEmpty()) {
+            shared.add(patientId, timestamp, label, data, value);
+            if (shared.isFull()) {
+                sendShared();
+            }
+        }
+        if (topics.size() > 0) {
+            samplePatientId = patientId;
+            sampleTimestamp = timestamp;
+            sampleKind = null;
+            sampleLabel = label;
+            sampleData = data;
+            sampleValue = value;
+            topics.route(patientId, label, deliver);
+        }
+    }
+
+    /** Adds one unformatted sample to the shared frame and to the frame of every matching subscriber. */
+    private void route(int patientId, long timestamp, Label label, double value) {
+        if (!everyone.isEmpty()) {
+            shared.add(patientId, timestamp, label, value);
+            if (shared.isFull()) {
+                sendShared();
+            }
+        }
+        if (topics.size() > 0) {
+            samplePatientId = patientId;
+            sampleTimestamp = timestamp;
+            sampleKind = label;
+            sampleValue = value;
+            topics.route(patientId, label.getText(), deliver);
+        }
+    }
+
+    private void deliver(Subscriber subscriber) {
+        if (sampleKind != null) {
+            subscriber.batch.add(samplePatientId, sampleTimestamp, sampleKind, sampleValue);
+        } else {
+            subscriber.batch.add(samplePatientId, sampleTimestamp, sampleLabel, sampleData, sampleValue);
+        }
+        if (subscriber.batch.isFull()) {
+            subscriber.send();
+        }
+    }
+
+    private void flushAll() {
+        if (!shared.isEmpty()) {
+            sendShared();
+        }
+        for (Subscriber subscriber : filtered.values()) {
+            if (!subscriber.batch.isEmpty()) {
+                subscriber.send();
+            }
+        }
+    }
+
+    /** Encodes the shared frame once and writes it to every unfiltered connection. */
+    private void sendShared() {
+        if (format == FrameFormat.TEXT) {
+            server.broadcast(shared.takeText(), everyone);
+        } else {
+            server.broadcast(shared.takeBinary(), everyone);
+        }
+        frames.increment();
+    }
+
+    /**
+     * Applies a subscription on the flusher thread.
+     *
+     * @param patientIds patients to receive, or {@code null} for every patient
+     * @param labels     labels to receive, or {@code null} for every label
+     * @param none       whether the connection receives nothing at all
+     */
+    private void subscribe(WebSocket conn, Set<Integer> patientIds, Set<String> labels, boolean none) {
+        remove(conn);
+        if (none) {
+            return;
+        }
+        if (patientIds == null && labels == null) {
+            everyone.add(conn);
+        } else {
+            Subscriber subscriber = new Subscriber(conn);
+            filtered.put(conn, subscriber);
+            topics.subscribe(subscriber, patientIds, labels);
+            subscriberCount = filtered.size();
+        }
+    }
+
+    private void remove(WebSocket conn) {
+        everyone.remove(conn);
+        Subscriber subscriber = filtered.remove(conn);
+        if (subscriber != null) {
+            topics.unsubscribe(subscriber);
+            subscriberCount = filtered.size();
+        }
+    }
+
+    /** A filtered connection with its own frame. */
+    private final class Subscriber {
+        final WebSocket conn;
+        final FrameBatch batch = new FrameBatch(format, maxBatchRecords);
+
+        Subscriber(WebSocket conn) {
+            this.conn = conn;
+        }
+
+        void send() {
+            if (format == FrameFormat.TEXT) {
+                String payload = batch.takeText();
+                if (conn.isOpen()) {
+                    conn.send(payload);
+                }
+            } else {
+                byte[] payload = batch.takeBinary();
+                if (conn.isOpen()) {
+                    conn.send(payload);
+                }
+            }
+            frames.increment();
         }
     }
 
     private static class SimpleWebSocketServer extends WebSocketServer {
 
-        public SimpleWebSocketServer(InetSocketAddress address) {
+        // output() checks this instead of copying the connection list per sample
+        final AtomicInteger openConnections = new AtomicInteger();
+        volatile boolean started;
+        private final Queue<Runnable> commands;
+        private final WebSocketOutputStrategy strategy;
+
+        public SimpleWebSocketServer(InetSocketAddress address, Queue<Runnable> commands,
+                                     WebSocketOutputStrategy strategy) {
             super(address);
+            this.commands = commands;
+            this.strategy = strategy;
         }
 
         @Override
         public void onOpen(WebSocket conn, org.java_websocket.handshake.ClientHandshake handshake) {
+            commands.add(() -> strategy.subscribe(conn, null, null, false));
+            openConnections.incrementAndGet();
             System.out.println("New connection: " + conn.getRemoteSocketAddress());
         }
 
         @Override
         public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+            openConnections.decrementAndGet();
+            commands.add(() -> strategy.remove(conn));
             System.out.println("Closed connection: " + conn.getRemoteSocketAddress());
         }
 
+        /**
+         * Handles {@code subscribe [patients=<id>,...] [labels=<label>,...]}
+         * and {@code unsubscribe}; anything else is answered with an error.
+         */
         @Override
         public void onMessage(WebSocket conn, String message) {
-            // Not used in this context
+            String[] words = message.trim().split("\\s+");
+            if (words.length == 1 && words[0].equals("unsubscribe")) {
+                commands.add(() -> strategy.subscribe(conn, null, null, true));
+                return;
+            }
+            if (!words[0].equals("subscribe")) {
+                conn.send("error: expected 'subscribe' or 'unsubscribe'");
+                return;
+            }
+            Set<Integer> patientIds = null;
+            Set<String> labels = null;
+            for (int i = 1; i < words.length; i++) {
+                String word = words[i];
+                if (word.startsWith("patients=")) {
+                    patientIds = new HashSet<>();
+                    for (String id : word.substring(9).split(",")) {
+                        try {
+                            patientIds.add(Integer.parseInt(id));
+                        } catch (NumberFormatException e) {
+                            conn.send("error: invalid patient ID '" + id + "'");
+                            return;
+                        }
+                    }
+                } else if (word.startsWith("labels=")) {
+                    labels = new HashSet<>(List.of(word.substring(7).split(",")));
+                } else {
+                    conn.send("error: unknown filter '" + word + "'");
+                    return;
+                }
+            }
+            Set<Integer> subscribedPatients = patientIds;
+            Set<String> subscribedLabels = labels;
+            commands.add(() -> strategy.subscribe(conn, subscribedPatients, subscribedLabels, false));
         }
 
         @Override
@@ -52,6 +420,7 @@ public class WebSocketOutputStrategy implements OutputStrategy {
 
         @Override
         public void onStart() {
+            started = true;
             System.out.println("Server started successfully");
         }
     }
@@ -0,0 +1,298 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses newline-delimited ASCII records straight from the bytes of a
+ * {@link ByteBuffer} into a {@link RecordBatch}, without building a String
+ * per field. Subclasses describe the line layout in {@link #parseLine()} with
+ * the helpers here; a line that does not match is skipped and counted.
+ *
+ * Numbers are accumulated digit by digit. Labels are matched against the
+ * bytes of the labels seen before, so a String is decoded only the first
+ * time a label appears. Values accept a trailing {@code %}, and the alert
+ * states {@code triggered} and {@code resolved} map to 1 and 0.
+ *
+ * A value whose digits fit a double's 53-bit mantissa and whose decimal
+ * exponent is within +-22 takes one exact multiplication or division, which
+ * rounds correctly. Anything else, such as the 17-digit values
+ * {@link Double#toString} writes for most random doubles, is handed to
+ * {@link Double#parseDouble}, so every value reads back exactly as written.
+ */
+abstract class AsciiLineParser {
+
+    private static final byte[] TRIGGERED = ascii("triggered");
+    private static final byte[] RESOLVED = ascii("resolved");
+
+    /** Digits accumulated into the long mantissa; 18 never overflow. */
+    private static final int MAX_SIGNIFICANT_DIGITS = 18;
+    /** Largest mantissa a double holds exactly, plus one. */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    /** Largest power of ten a double holds exactly. */
+    private static final int MAX_EXACT_EXPONENT = 22;
+
+    /** Exact powers of ten; every one of them is representable as a double. */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** Distinct labels remembered; the generators use far fewer. */
+    private static final int LABEL_CACHE_SIZE = 32;
+
+    final RecordBatch batch;
+    long skipped;
+
+    ByteBuffer buffer;
+    int position;
+    int lineEnd;
+
+    private final byte[][] labels = new byte[LABEL_CACHE_SIZE][];
+    private final int[] labelIds = new int[LABEL_CACHE_SIZE];
+    private int labelCount;
+    private int lastLabel;
+
+    AsciiLineParser(RecordBatch batch) {
+        this.batch = batch;
+    }
+
+    /**
+     * Parses every complete line in {@code [from, to)} of {@code buffer}.
+     *
+     * @param endOfInput whether a last line without a newline is complete too
+     * @return offset just past the last line parsed; bytes from there on
+     *         belong to a line that is still incomplete
+     */
+    int parseLines(ByteBuffer buffer, int from, int to, boolean endOfInput) {
+        this.buffer = buffer;
+        int lineStart = from;
+        while (lineStart < to) {
+            int newline = indexOf((byte) '\n', lineStart, to);
+            if (newline < 0 && !endOfInput) {
+                break;
+            }
+            int end = newline < 0 ? to : newline;
+            if (end > lineStart && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+            if (end > lineStart) {
+                position = lineStart;
+                lineEnd = end;
+                if (!parseLine()) {
+                    skipped++;
+                }
+            }
+            lineStart = newline < 0 ? to : newline + 1;
+        }
+        return lineStart;
+    }
+
+    /**
+     * Parses the line in {@code [position, lineEnd)} and adds it to the batch.
+     *
+     * @return {@code false} if the line does not match the format
+     */
+    abstract boolean parseLine();
+
+    /**
+     * Parses the value from {@code position} to the end of the line.
+     *
+     * @return the value, or {@code NaN} if the field is not a number or alert state
+     */
+    double parseValue() {
+        if (lineEnd - position == TRIGGERED.length && matches(TRIGGERED, position, lineEnd)) {
+            return 1;
+        }
+        if (lineEnd - position == RESOLVED.length && matches(RESOLVED, position, lineEnd)) {
+            return 0;
+        }
+        return parseDouble();
+    }
+
+    /** Resolves the label bytes to a record type ID, decoding a String only for a new label. */
+    int labelId(int start, int end) {
+        if (sameLabel(lastLabel, start, end)) {
+            return labelIds[lastLabel];
+        }
+        for (int i = 0; i < labelCount; i++) {
+            if (sameLabel(i, start, end)) {
+                lastLabel = i;
+                return labelIds[i];
+            }
+        }
+        byte[] label = new byte[end - start];
+        buffer.get(start, label);
+        // a full cache starts over; only a stream with many distinct labels gets here
+        int slot = labelCount < LABEL_CACHE_SIZE ? labelCount++ : (lastLabel + 1) % LABEL_CACHE_SIZE;
+        labels[slot] = label;
+        labelIds[slot] = RecordTypes.idOf(new String(label, StandardCharsets.UTF_8));
+        lastLabel = slot;
+        return labelIds[slot];
+    }
+
+    private boolean sameLabel(int slot, int start, int end) {
+        byte[] label = labels[slot];
+        if (label == null || label.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < label.length; i++) {
+            if (buffer.get(start + i) != label[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean expect(byte[] literal) {
+        if (!matches(literal, position, lineEnd)) {
+            return false;
+        }
+        position += literal.length;
+        return true;
+    }
+
+    boolean expect(byte b) {
+        if (position >= lineEnd || buffer.get(position) != b) {
+            return false;
+        }
+        position++;
+        return true;
+    }
+
+    boolean matches(byte[] literal, int at, int end) {
+        if (end - at < literal.length) {
+            return false;
+        }
+        for (int i = 0; i < literal.length; i++) {
+            if (buffer.get(at + i) != literal[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return the unsigned decimal at {@code position}, or -1 if there is none or it overflows */
+    long parseLong() {
+        long result = 0;
+        int start = position;
+        while (position < lineEnd) {
+            int digit = buffer.get(position) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            if (result > (Long.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+            result = result * 10 + digit;
+            position++;
+        }
+        return position == start ? -1 : result;
+    }
+
+    /**
+     * Parses {@code [-]digits[.digits][(e|E)[+-]digits][%]} up to the end of the line.
+     *
+     * @return the value, or {@code NaN} if the field is not a number
+     */
+    double parseDouble() {
+        int start = position;
+        boolean negative = false;
+        if (position < lineEnd && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+            negative = buffer.get(position) == '-';
+            position++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean fraction = false;
+        boolean truncated = false;
+        for (; position < lineEnd; position++) {
+            byte b = buffer.get(position);
+            if (b == '.' && !fraction) {
+                fraction = true;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            digits++;
+            if (significantDigits < MAX_SIGNIFICANT_DIGITS) {
+                if (mantissa != 0 || digit != 0) {
+                    significantDigits++;
+                }
+                mantissa = mantissa * 10 + digit;
+                if (fraction) {
+                    exponent--;
+                }
+            } else {
+                truncated = true;
+            }
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        if (position < lineEnd && (buffer.get(position) | 0x20) == 'e') {
+            position++;
+            boolean negativeExponent = false;
+            if (position < lineEnd && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+                negativeExponent = buffer.get(position) == '-';
+                position++;
+            }
+            long explicit = parseLong();
+            if (explicit < 0) {
+                return Double.NaN;
+            }
+            // far beyond the double range either way; Double.parseDouble saturates to 0 or infinity
+            int bounded = (int) Math.min(explicit, 1000);
+            exponent += negativeExponent ? -bounded : bounded;
+        }
+        int end = position;
+        if (position < lineEnd && buffer.get(position) == '%') {
+            position++;
+        }
+        if (position != lineEnd) {
+            return Double.NaN;
+        }
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (truncated || mantissa >= MAX_EXACT_MANTISSA || Math.abs(exponent) > MAX_EXACT_EXPONENT) {
+            return parseExact(start, end);
+        }
+        // both operands are exact, so the one operation rounds correctly
+        double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    /** Parses {@code [start, end)}, already checked to be a number, with {@link Double#parseDouble}. */
+    private double parseExact(int start, int end) {
+        byte[] number = new byte[end - start];
+        buffer.get(start, number);
+        return Double.parseDouble(new String(number, StandardCharsets.US_ASCII));
+    }
+
+    int indexOf(byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int indexOf(byte[] literal, int from, int to) {
+        for (int i = from; i <= to - literal.length; i++) {
+            if (matches(literal, i, to)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static byte[] ascii(String literal) {
+        return literal.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,289 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.cardio_generator.outputs.BinaryFileOutputStrategy;
+import com.cardio_generator.outputs.SegmentIndex;
+
+/**
+ * Reads the binary files written by
+ * {@link com.cardio_generator.outputs.BinaryFileOutputStrategy} back into a
+ * {@link DataStorage}: the single {@code data.bin} and every rolled segment,
+ * in segment order. The format is described there.
+ *
+ * A file is memory-mapped and decoded block by block: each block's label
+ * dictionary is resolved to record type IDs once, its records are decoded
+ * into a {@link RecordBatch} and the batch is stored with
+ * {@link DataStorage#addBatch(RecordBatch)}. A block cut short at the end of
+ * a file (e.g. by a crash while writing) is ignored and counted.
+ *
+ * {@link #readRange} answers a time range, optionally for one patient, from
+ * the segments' {@link SegmentIndex} sidecars: segments and blocks outside
+ * the range or without the patient are never read. Only files without an
+ * index (the unsegmented file and a segment still being written) are scanned.
+ */
+public class BinaryFileDataReader implements DataReader {
+
+    /** Passed as patient ID to read every patient. */
+    private static final int ALL_PATIENTS = Integer.MIN_VALUE;
+
+    private final Path directory;
+    private final RecordBatch batch = new RecordBatch();
+    private long recordsRead;
+    private long truncatedBlocks;
+    private long bytesRead;
+    private IngestReport lastReport;
+
+    /**
+     * @param directory directory that a {@code BinaryFileOutputStrategy} wrote to
+     */
+    public BinaryFileDataReader(String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    /**
+     * Reads every block of every file into the storage.
+     *
+     * @param dataStorage the storage where data will be stored
+     * @throws IOException if a file cannot be read or is not in the binary format
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        read(dataStorage, ALL_PATIENTS, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads the records of every patient with a timestamp in {@code [startTime, endTime]}.
+     *
+     * @param dataStorage the storage where data will be stored
+     * @param startTime   start of the range, inclusive
+     * @param endTime     end of the range, inclusive
+     * @throws IOException if a file cannot be read or is not in the binary format
+     */
+    public void readRange(DataStorage dataStorage, long startTime, long endTime) throws IOException {
+        read(dataStorage, ALL_PATIENTS, startTime, endTime);
+    }
+
+    /**
+     * Reads the records of one patient with a timestamp in {@code [startTime, endTime]}.
+     *
+     * @param dataStorage the storage where data will be stored
+     * @param patientId   the patient to read
+     * @param startTime   start of the range, inclusive
+     * @param endTime     end of the range, inclusive
+     * @throws IOException if a file cannot be read or is not in the binary format
+     */
+    public void readRange(DataStorage dataStorage, int patientId, long startTime, long endTime) throws IOException {
+        read(dataStorage, patientId, startTime, endTime);
+    }
+
+    private void read(DataStorage dataStorage, int patientId, long startTime, long endTime) throws IOException {
+        long start = System.nanoTime();
+        long recordsBefore = recordsRead;
+        long bytesBefore = bytesRead;
+        List<Path> files = listDataFiles(directory);
+        if (files.isEmpty()) {
+            throw new NoSuchFileException(directory.resolve(BinaryFileOutputStrategy.FILE_NAME).toString());
+        }
+        Filter filter = new Filter(patientId, startTime, endTime);
+        for (Path file : files) {
+            Path indexFile = BinaryFileOutputStrategy.indexFor(file);
+            if (file.getFileName().toString().equals(BinaryFileOutputStrategy.FILE_NAME)
+                    || !Files.isRegularFile(indexFile)) {
+                scanFile(file, filter, dataStorage);
+            } else {
+                readIndexed(file, SegmentIndex.read(indexFile), filter, dataStorage);
+            }
+        }
+        lastReport = new IngestReport(bytesRead - bytesBefore, recordsRead - recordsBefore, 0,
+                System.nanoTime() - start);
+    }
+
+    /** @return records stored by all {@link #readData} and {@link #readRange} calls so far */
+    public long getRecordsRead() {
+        return recordsRead;
+    }
+
+    /** @return incomplete blocks found at the end of a file */
+    public long getTruncatedBlocks() {
+        return truncatedBlocks;
+    }
+
+    /** @return throughput of the last read, or {@code null} before the first */
+    public IngestReport getLastReport() {
+        return lastReport;
+    }
+
+    /** @return whether {@code directory} holds a file this reader can read */
+    public static boolean canRead(String directory) {
+        try {
+            return Files.isDirectory(Paths.get(directory)) && !listDataFiles(Paths.get(directory)).isEmpty();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** @return {@code data.bin}, if present, followed by the segments in order */
+    private static List<Path> listDataFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Path single = directory.resolve(BinaryFileOutputStrategy.FILE_NAME);
+        if (Files.isRegularFile(single)) {
+            files.add(single);
+        }
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                BinaryFileOutputStrategy.SEGMENT_PREFIX + "*" + BinaryFileOutputStrategy.SEGMENT_SUFFIX)) {
+            for (Path segment : stream) {
+                segments.add(segment);
+            }
+        }
+        // segment numbers are zero-padded, so name order is segment order
+        segments.sort(null);
+        files.addAll(segments);
+        return files;
+    }
+
+    /** Maps a whole file and decodes every block. */
+    private void scanFile(Path file, Filter filter, DataStorage dataStorage) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is larger than " + Integer.MAX_VALUE + " bytes");
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            readHeader(file, buffer);
+            while (buffer.hasRemaining()) {
+                if (!readBlock(buffer, filter, dataStorage)) {
+                    truncatedBlocks++;
+                    break;
+                }
+            }
+            bytesRead += size;
+        }
+    }
+
+    /** Reads only the blocks the index says can match. */
+    private void readIndexed(Path file, SegmentIndex index, Filter filter, DataStorage dataStorage)
+            throws IOException {
+        if (!index.overlaps(filter.startTime, filter.endTime)
+                || (filter.patientId != ALL_PATIENTS && !index.mayContain(filter.patientId))) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (SegmentIndex.Block block : index.getBlocks()) {
+                if (!block.overlaps(filter.startTime, filter.endTime)
+                        || (filter.patientId != ALL_PATIENTS && !block.mayContain(filter.patientId))) {
+                    continue;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(block.getLength());
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, block.getOffset() + buffer.position()) < 0) {
+                        throw new IOException(file + " is shorter than its index");
+                    }
+                }
+                buffer.flip();
+                bytesRead += block.getLength();
+                if (!readBlock(buffer, filter, dataStorage)) {
+                    throw new IOException(file + " does not match its index");
+                }
+            }
+        }
+    }
+
+    private static void readHeader(Path file, ByteBuffer buffer) throws IOException {
+        byte[] magic = new byte[BinaryFileOutputStrategy.MAGIC.length];
+        if (buffer.remaining() < magic.length + 4) {
+            throw new IOException(file + " is too short for a header");
+        }
+        buffer.get(magic);
+        int version = buffer.getInt();
+        if (!Arrays.equals(magic, BinaryFileOutputStrategy.MAGIC) || version != BinaryFileOutputStrategy.VERSION) {
+            throw new IOException(file + " is not a version " + BinaryFileOutputStrategy.VERSION + " data file");
+        }
+    }
+
+    /**
+     * Decodes one block starting at the buffer's position.
+     *
+     * @return {@code false} if the block runs past the end of the file
+     */
+    private boolean readBlock(ByteBuffer buffer, Filter filter, DataStorage dataStorage) {
+        int blockStart = buffer.position();
+        try {
+            int payloadBytes = buffer.getInt();
+            int recordCount = buffer.getInt();
+            long timestamp = buffer.getLong();
+            int[] typeIds = new int[buffer.getShort() & 0xFFFF];
+            for (int i = 0; i < typeIds.length; i++) {
+                byte[] label = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(label);
+                typeIds[i] = RecordTypes.idOf(new String(label, StandardCharsets.UTF_8));
+            }
+            if (buffer.remaining() < payloadBytes) {
+                buffer.position(blockStart);
+                return false;
+            }
+
+            batch.clear();
+            for (int i = 0; i < recordCount; i++) {
+                int patientId = (int) getVarint(buffer);
+                int typeId = typeIds[(int) getVarint(buffer)];
+                long zigzag = getVarint(buffer);
+                timestamp += (zigzag >>> 1) ^ -(zigzag & 1);
+                double value = buffer.getDouble();
+                if (filter.matches(patientId, timestamp)) {
+                    batch.add(patientId, value, typeId, timestamp);
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            buffer.position(blockStart);
+            return false;
+        }
+        dataStorage.addBatch(batch);
+        recordsRead += batch.size();
+        return true;
+    }
+
+    private static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /** Which records a read keeps. */
+    private static final class Filter {
+        final int patientId;
+        final long startTime;
+        final long endTime;
+
+        Filter(int patientId, long startTime, long endTime) {
+            this.patientId = patientId;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        boolean matches(int recordPatientId, long timestamp) {
+            return (patientId == ALL_PATIENTS || patientId == recordPatientId)
+                    && timestamp >= startTime && timestamp <= endTime;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, compressed run of samples sorted by timestamp, in the style of
+ * Facebook's Gorilla time-series store. Each sample is encoded relative to the
+ * previous one, in a single bit stream:
+ *
+ * <ul>
+ *   <li>the timestamp as the change of the gap between samples (delta of
+ *       delta): one bit when a signal keeps its rate, 9 to 16 bits for jitter
+ *       and 68 bits for anything else;</li>
+ *   <li>the value as the XOR of its bits with the previous value's: one bit
+ *       when the value repeats, and otherwise only the bits between the
+ *       XOR's leading and trailing zeros, reusing the previous sample's
+ *       window when they fit in it.</li>
+ * </ul>
+ *
+ * A regularly sampled, slowly varying vital sign takes a few bits per sample
+ * instead of 128. The encoding is lossless, including NaN payloads and
+ * negative zero. Samples are decoded one at a time with a {@link Reader}, so
+ * a query never has to expand a whole block.
+ */
+final class CompressedBlock {
+    private final long[] words;
+    private final int count;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+
+    private CompressedBlock(long[] words, int count, long firstTimestamp, long lastTimestamp) {
+        this.words = words;
+        this.count = count;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    /**
+     * @param timestamps column of timestamps, sorted ascending
+     * @param values     column of values
+     * @param from       index of the first sample to encode
+     * @param count      number of samples to encode, at least one
+     * @return the encoded block
+     */
+    static CompressedBlock encode(long[] timestamps, double[] values, int from, int count) {
+        BitWriter out = new BitWriter(count);
+        long timestamp = timestamps[from];
+        long bits = Double.doubleToRawLongBits(values[from]);
+        out.write(timestamp, 64);
+        out.write(bits, 64);
+        long delta = 0;
+        int leading = -1; // no XOR window yet
+        int trailing = 0;
+        for (int i = from + 1; i < from + count; i++) {
+            long nextDelta = timestamps[i] - timestamp;
+            writeDeltaOfDelta(out, nextDelta - delta);
+            delta = nextDelta;
+            timestamp = timestamps[i];
+
+            long nextBits = Double.doubleToRawLongBits(values[i]);
+            long xor = nextBits ^ bits;
+            bits = nextBits;
+            if (xor == 0) {
+                out.write(0, 1);
+                continue;
+            }
+            int nextLeading = Math.min(Long.numberOfLeadingZeros(xor), 31); // 5 bits
+            int nextTrailing = Long.numberOfTrailingZeros(xor);
+            if (leading >= 0 && nextLeading >= leading && nextTrailing >= trailing) {
+                out.write(0b10, 2);
+                out.write(xor >>> trailing, 64 - leading - trailing);
+            } else {
+                int significant = 64 - nextLeading - nextTrailing;
+                out.write(0b11, 2);
+                out.write(nextLeading, 5);
+                out.write(significant & 63, 6); // 64 is written as 0
+                out.write(xor >>> nextTrailing, significant);
+                leading = nextLeading;
+                trailing = nextTrailing;
+            }
+        }
+        return new CompressedBlock(out.toWords(), count, timestamps[from], timestamp);
+    }
+
+    private static void writeDeltaOfDelta(BitWriter out, long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            out.write(0, 1);
+        } else if (deltaOfDelta >= -64 && deltaOfDelta < 64) {
+            out.write(0b10, 2);
+            out.write(deltaOfDelta, 7);
+        } else if (deltaOfDelta >= -256 && deltaOfDelta < 256) {
+            out.write(0b110, 3);
+            out.write(deltaOfDelta, 9);
+        } else if (deltaOfDelta >= -2048 && deltaOfDelta < 2048) {
+            out.write(0b1110, 4);
+            out.write(deltaOfDelta, 12);
+        } else {
+            out.write(0b1111, 4);
+            out.write(deltaOfDelta, 64);
+        }
+    }
+
+    int count() {
+        return count;
+    }
+
+    long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /** @return bytes of encoded sample data */
+    long sizeInBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    /** @return a reader positioned before the first sample */
+    Reader reader() {
+        return new Reader();
+    }
+
+    /**
+     * Streaming decoder. Call {@link #next()} and, while it returns true, read
+     * the sample from {@link #timestamp} and {@link #value}.
+     */
+    final class Reader {
+        long timestamp;
+        double value;
+        private long position;
+        private int decoded;
+        private long delta;
+        private long bits;
+        private int leading;
+        private int trailing;
+
+        private Reader() {
+        }
+
+        boolean next() {
+            if (decoded == count) {
+                return false;
+            }
+            if (decoded++ == 0) {
+                timestamp = read(64);
+                bits = read(64);
+                value = Double.longBitsToDouble(bits);
+                return true;
+            }
+            delta += readDeltaOfDelta();
+            timestamp += delta;
+            if (read(1) == 1) {
+                long xor;
+                if (read(1) == 0) {
+                    xor = read(64 - leading - trailing) << trailing;
+                } else {
+                    leading = (int) read(5);
+                    int significant = (int) read(6);
+                    if (significant == 0) {
+                        significant = 64;
+                    }
+                    trailing = 64 - leading - significant;
+                    xor = read(significant) << trailing;
+                }
+                bits ^= xor;
+                value = Double.longBitsToDouble(bits);
+            }
+            return true;
+        }
+
+        private long readDeltaOfDelta() {
+            if (read(1) == 0) {
+                return 0;
+            }
+            if (read(1) == 0) {
+                return signed(read(7), 7);
+            }
+            if (read(1) == 0) {
+                return signed(read(9), 9);
+            }
+            return read(1) == 0 ? signed(read(12), 12) : read(64);
+        }
+
+        private long read(int length) {
+            if (length == 0) {
+                return 0;
+            }
+            int index = (int) (position >>> 6);
+            int free = 64 - (int) (position & 63);
+            long result;
+            if (length <= free) {
+                result = words[index] >>> (free - length);
+            } else {
+                int rest = length - free;
+                result = (words[index] << rest) | (words[index + 1] >>> (64 - rest));
+            }
+            position += length;
+            return length == 64 ? result : result & ((1L << length) - 1);
+        }
+    }
+
+    private static long signed(long value, int length) {
+        return (value << (64 - length)) >> (64 - length);
+    }
+
+    /** Appends bit fields, most significant bit first, to a growable array of words. */
+    private static final class BitWriter {
+        private long[] words;
+        private long position;
+
+        BitWriter(int sampleCount) {
+            // room for about 16 bits per sample before growing
+            this.words = new long[Math.max(4, sampleCount / 4)];
+        }
+
+        /** Writes the low {@code length} bits of {@code value}. */
+        void write(long value, int length) {
+            if (length == 0) {
+                return;
+            }
+            long field = length == 64 ? value : value & ((1L << length) - 1);
+            int index = (int) (position >>> 6);
+            int free = 64 - (int) (position & 63);
+            if (index + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            if (length <= free) {
+                words[index] |= field << (free - length);
+            } else {
+                int rest = length - free;
+                words[index] |= field >>> rest;
+                words[index + 1] |= field << (64 - rest);
+            }
+            position += length;
+        }
+
+        long[] toWords() {
+            return Arrays.copyOf(words, (int) ((position + 63) >>> 6));
+        }
+    }
+}
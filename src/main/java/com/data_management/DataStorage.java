@@ -1,9 +1,16 @@
 package com.data_management;
 
+import java.io.IOException;
+import java.net.URI;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import com.alerts.AlertGenerator;
 
 /**
@@ -11,16 +18,37 @@ import com.alerts.AlertGenerator;
  * system.
  * This class serves as a repository for all patient records, organized by
  * patient IDs.
+ *
+ * Thread-safe: any number of reader threads may ingest and query concurrently.
+ * Appends for different patients proceed in parallel; queries never block them.
  */
 public class DataStorage {
-    private Map<Integer, Patient> patientMap; // Stores patient objects indexed by their unique patient ID.
+    // A live feed runs indefinitely: keep an hour of 1 Hz samples raw and a day of one-minute averages.
+    // The raw hour already holds what 1 second rollups would, so rollups start at one minute.
+    private static final RetentionPolicy LIVE_FEED_RETENTION =
+            RetentionPolicy.unbounded().withDefault(3_600, 60, 1_440).withRollups(60_000);
+
+    private ConcurrentMap<Integer, Patient> patientMap; // Stores patient objects indexed by their unique patient ID.
+    private final List<PatientDataListener> listeners = new CopyOnWriteArrayList<>();
+    private final RetentionPolicy retention;
 
     /**
      * Constructs a new instance of DataStorage, initializing the underlying storage
-     * structure.
+     * structure. Every record is kept.
      */
     public DataStorage() {
-        this.patientMap = new HashMap<>();
+        this(RetentionPolicy.unbounded());
+    }
+
+    /**
+     * Constructs a DataStorage whose patients keep a bounded history, so a
+     * long-running storage has a predictable memory footprint per patient.
+     *
+     * @param retention how many samples of each record type every patient keeps
+     */
+    public DataStorage(RetentionPolicy retention) {
+        this.patientMap = new ConcurrentHashMap<>();
+        this.retention = retention;
     }
 
     /**
@@ -37,17 +65,100 @@ public class DataStorage {
      *                         milliseconds since the Unix epoch
      */
     public void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
+        addPatientData(patientId, measurementValue, RecordTypes.idOf(recordType), timestamp);
+    }
+
+    /**
+     * Adds patient data whose record type has already been resolved to an ID,
+     * e.g. by a {@link DataReader} that registers each label once.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric being recorded
+     * @param recordTypeId     ID from {@link RecordTypes}
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     */
+    public void addPatientData(int patientId, double measurementValue, int recordTypeId, long timestamp) {
         Patient patient = patientMap.get(patientId);
         if (patient == null) {
-            patient = new Patient(patientId);
-            patientMap.put(patientId, patient);
+            patient = patientMap.computeIfAbsent(patientId, this::newPatient);
         }
-        patient.addRecord(measurementValue, recordType, timestamp);
+        patient.addRecord(measurementValue, recordTypeId, timestamp);
+        for (PatientDataListener listener : listeners) {
+            listener.onRecord(patientId, recordTypeId, measurementValue, timestamp);
+        }
+    }
+
+    /**
+     * Adds every record of a batch. Records are grouped by patient, and each
+     * patient takes its lock once for its whole group instead of once per
+     * record. Listeners are notified afterwards, per patient in batch order.
+     *
+     * @param batch records to add; the batch is not modified and can be reused afterwards
+     */
+    public void addBatch(RecordBatch batch) {
+        int size = batch.size();
+        // sort by (patient, position in batch): groups patients, keeps their arrival order
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) batch.patientIdAt(i) << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] indices = new int[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = (int) keys[i];
+        }
+
+        int start = 0;
+        while (start < size) {
+            int patientId = batch.patientIdAt(indices[start]);
+            int end = start + 1;
+            while (end < size && batch.patientIdAt(indices[end]) == patientId) {
+                end++;
+            }
+            Patient patient = patientMap.get(patientId);
+            if (patient == null) {
+                patient = patientMap.computeIfAbsent(patientId, this::newPatient);
+            }
+            patient.addRecords(batch, indices, start, end);
+            for (PatientDataListener listener : listeners) {
+                for (int k = start; k < end; k++) {
+                    int index = indices[k];
+                    listener.onRecord(patientId, batch.recordTypeIdAt(index), batch.valueAt(index),
+                            batch.timestampAt(index));
+                }
+            }
+            start = end;
+        }
+    }
+
+    private Patient newPatient(int patientId) {
+        return new Patient(patientId, retention);
+    }
+
+    /**
+     * Registers a listener that receives every record stored from now on.
+     *
+     * @param listener the listener to notify
+     */
+    public void addListener(PatientDataListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stops notifying a listener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(PatientDataListener listener) {
+        listeners.remove(listener);
     }
 
     /**
      * Retrieves a list of PatientRecord objects for a specific patient, filtered by
      * a time range.
+     * The window is located by binary search, so short windows stay cheap no
+     * matter how long the patient's history is.
      *
      * @param patientId the unique identifier of the patient whose records are to be
      *                  retrieved
@@ -66,6 +177,50 @@ public class DataStorage {
         return new ArrayList<>(); // return an empty list if no patient is found
     }
 
+    /**
+     * Retrieves the newest records of one record type for a patient, without
+     * touching the rest of the history.
+     *
+     * @param patientId    the unique identifier of the patient
+     * @param recordTypeId ID from {@link RecordTypes}
+     * @param count        maximum number of records to return
+     * @return up to {@code count} records, oldest first
+     */
+    public List<PatientRecord> getLatestRecords(int patientId, int recordTypeId, int count) {
+        Patient patient = patientMap.get(patientId);
+        if (patient != null) {
+            return patient.getLatestRecords(recordTypeId, count);
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Summarises one record type of a patient over a time range, for queries
+     * such as a week of saturation where the raw samples would be far too
+     * many. Rollups are kept in 1 second, 1 minute and 1 hour buckets; the
+     * coarsest whose width does not exceed {@code resolutionMillis} is used,
+     * and the part of the range it no longer holds comes from coarser buckets.
+     * The seconds reach back an hour, the minutes a day and the hours 31 days,
+     * independently of how many samples are retained. The
+     * {@link RetentionPolicy} may start the rollups at a coarser tier, in which
+     * case that tier serves finer requests, or turn them off.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param recordType       the record type label, e.g. {@code "Saturation"}
+     * @param startTime        the start of the time range, in milliseconds since the Unix epoch
+     * @param endTime          the end of the time range, in milliseconds since the Unix epoch
+     * @param resolutionMillis widest bucket wanted, e.g. 60 000 for one point per minute
+     * @return the buckets overlapping the range, oldest first
+     */
+    public List<RollupBucket> getRollups(int patientId, String recordType, long startTime, long endTime,
+            long resolutionMillis) {
+        Patient patient = patientMap.get(patientId);
+        if (patient != null) {
+            return patient.getRollups(RecordTypes.idOf(recordType), startTime, endTime, resolutionMillis);
+        }
+        return new ArrayList<>();
+    }
+
     /**
      * Retrieves a collection of all patients stored in the data storage.
      *
@@ -80,16 +235,31 @@ public class DataStorage {
      * Initializes the system, reads data into storage, and continuously monitors
      * and evaluates patient data.
      * 
-     * @param args command line arguments
+     * @param args command line arguments; the first one, if present, is a
+     *             directory written by {@code FileOutputStrategy} or
+     *             {@code BinaryFileOutputStrategy}, or a live feed given as
+     *             {@code tcp:<host>:<port>} or {@code ws://<host>:<port>}
+     * @throws IOException if the directory cannot be read
      */
-    public static void main(String[] args) {
-        // DataReader is not defined in this scope, should be initialized appropriately.
-        // DataReader reader = new SomeDataReaderImplementation("path/to/data");
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && (args[0].startsWith("tcp:") || args[0].startsWith("ws://"))) {
+            follow(new DataStorage(LIVE_FEED_RETENTION), args[0]);
+            return;
+        }
         DataStorage storage = new DataStorage();
 
-        // Assuming the reader has been properly initialized and can read data into the
-        // storage
-        // reader.readData(storage);
+        // Read a directory written by FileOutputStrategy or BinaryFileOutputStrategy, if one is given
+        if (args.length > 0) {
+            if (BinaryFileDataReader.canRead(args[0])) {
+                BinaryFileDataReader reader = new BinaryFileDataReader(args[0]);
+                reader.readData(storage);
+                System.out.println(reader.getLastReport());
+            } else {
+                FileDataReader reader = new FileDataReader(args[0]);
+                reader.readData(storage);
+                System.out.println(reader.getLastReport());
+            }
+        }
 
         // Example of using DataStorage to retrieve and print records for a patient
         List<PatientRecord> records = storage.getRecords(1, 1700000000000L, 1800000000000L);
@@ -101,11 +271,37 @@ public class DataStorage {
         }
 
         // Initialize the AlertGenerator with the storage
-        AlertGenerator alertGenerator = new AlertGenerator(storage);
+        AlertGenerator alertGenerator = AlertGenerator.attach(storage);
 
-        // Evaluate all patients' data to check for conditions that may trigger alerts
-        for (Patient patient : storage.getAllPatients()) {
-            alertGenerator.evaluateData(patient);
+        // Evaluate all patients' data in parallel to check for conditions that may trigger alerts
+        System.out.println(alertGenerator.evaluateAll());
+    }
+
+    /**
+     * Streams a live feed into the storage with alerts evaluated as records
+     * arrive, keeping a bounded history per patient and printing throughput,
+     * lag and alerts every 10 seconds until the process is stopped.
+     */
+    private static void follow(DataStorage storage, String feed) throws IOException {
+        StreamingDataReader reader;
+        if (feed.startsWith("tcp:")) {
+            int colon = feed.lastIndexOf(':');
+            String host = colon > 4 ? feed.substring(4, colon) : "localhost";
+            reader = new TcpDataReader(host, Integer.parseInt(feed.substring(colon + 1)));
+        } else {
+            reader = new WebSocketDataReader(URI.create(feed));
         }
+        AlertGenerator alertGenerator = AlertGenerator.attach(storage);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ingest-report");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> System.out.println(reader.getReport()
+                + String.format(", lag %d ms (max %d ms), %d alerts", reader.getLagMillis(),
+                        reader.getMaxLagMillis(), alertGenerator.getAlerts().size())),
+                10, 10, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(reader::close, "ingest-close"));
+        reader.readData(storage);
     }
 }
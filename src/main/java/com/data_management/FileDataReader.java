@@ -0,0 +1,293 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the per-label {@code .txt} files written by
+ * {@link com.cardio_generator.outputs.FileOutputStrategy} back into a
+ * {@link DataStorage}. Every line has the form
+ * <pre>
+ *   Patient ID: 1, Timestamp: 1714376789050, Label: Saturation, Data: 97.0%
+ * </pre>
+ *
+ * Files are memory-mapped and parsed straight from the mapped bytes by an
+ * {@link AsciiLineParser}: numbers are accumulated digit by digit and labels
+ * are matched against the bytes of labels seen before, so no String is built
+ * per line. A trailing {@code %} is ignored, alert lines map {@code triggered}
+ * to 1 and {@code resolved} to 0, and lines that do not match the format are
+ * skipped and counted.
+ *
+ * Files are cut into line-aligned chunks that are parsed in parallel into
+ * {@link RecordBatch}es, one per chunk. The batches are handed to
+ * {@link DataStorage#addBatch(RecordBatch)} in file order, so records keep
+ * their order and the storage takes each patient's lock once per chunk. Only a
+ * few chunks per worker are parsed ahead of the merge, which bounds memory.
+ *
+ * Values read back exactly as {@link Double#parseDouble} would read them.
+ */
+public class FileDataReader implements DataReader {
+
+    /** Default size of a chunk; ECG files are cut into many, small label files stay whole. */
+    public static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+    /** Chunks parsed ahead of the merge, per worker. */
+    private static final int CHUNKS_AHEAD_PER_WORKER = 2;
+
+    private static final byte[] PATIENT_ID = AsciiLineParser.ascii("Patient ID: ");
+    private static final byte[] TIMESTAMP = AsciiLineParser.ascii(", Timestamp: ");
+    private static final byte[] LABEL = AsciiLineParser.ascii(", Label: ");
+    private static final byte[] DATA = AsciiLineParser.ascii(", Data: ");
+
+    private final Path directory;
+    private final int parallelism;
+    private final int chunkSize;
+    private long recordsRead;
+    private long linesSkipped;
+    private IngestReport lastReport;
+
+    /**
+     * Reads with one worker per core and {@link #DEFAULT_CHUNK_SIZE} chunks.
+     *
+     * @param directory directory that a {@code FileOutputStrategy} wrote to
+     */
+    public FileDataReader(String directory) {
+        this(directory, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param directory   directory that a {@code FileOutputStrategy} wrote to
+     * @param parallelism number of threads parsing chunks
+     * @param chunkSize   approximate bytes per chunk; chunks end on a line boundary
+     * @throws IllegalArgumentException if {@code parallelism} or {@code chunkSize} is not positive
+     */
+    public FileDataReader(String directory, int parallelism, int chunkSize) {
+        if (parallelism < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("parallelism and chunkSize must be positive");
+        }
+        this.directory = Paths.get(directory);
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Reads every {@code .txt} file in the directory into the storage.
+     *
+     * @param dataStorage the storage where data will be stored
+     * @throws IOException if the directory or a file cannot be read
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        long start = System.nanoTime();
+        long recordsBefore = recordsRead;
+        long skippedBefore = linesSkipped;
+        long bytes = 0;
+
+        List<Chunk> chunks = new ArrayList<>();
+        for (Path file : listDataFiles()) {
+            bytes += split(file, chunks);
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        try {
+            Deque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+            int next = 0;
+            int ahead = parallelism * CHUNKS_AHEAD_PER_WORKER;
+            while (next < chunks.size() || !inFlight.isEmpty()) {
+                while (next < chunks.size() && inFlight.size() < ahead) {
+                    Chunk chunk = chunks.get(next++);
+                    inFlight.add(workers.submit(() -> parse(chunk)));
+                }
+                ParsedChunk parsed = await(inFlight.poll());
+                dataStorage.addBatch(parsed.batch);
+                recordsRead += parsed.batch.size();
+                linesSkipped += parsed.linesSkipped;
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        lastReport = new IngestReport(bytes, recordsRead - recordsBefore, linesSkipped - skippedBefore,
+                System.nanoTime() - start);
+    }
+
+    /** @return records stored by all {@link #readData} calls so far */
+    public long getRecordsRead() {
+        return recordsRead;
+    }
+
+    /** @return lines that did not match the expected format and were skipped */
+    public long getLinesSkipped() {
+        return linesSkipped;
+    }
+
+    /** @return throughput of the last {@link #readData} call, or {@code null} before the first */
+    public IngestReport getLastReport() {
+        return lastReport;
+    }
+
+    private List<Path> listDataFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.txt")) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+
+    /**
+     * Cuts a file into chunks of about {@code chunkSize} bytes, each ending
+     * just after a newline (or at the end of the file).
+     *
+     * @return the file size
+     */
+    private long split(Path file, List<Chunk> chunks) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer probe = ByteBuffer.allocate(4096);
+            long start = 0;
+            while (start < size) {
+                long end = Math.min(size, start + chunkSize);
+                // move the boundary forward to the next line start
+                boolean aligned = end == size;
+                while (!aligned) {
+                    probe.clear();
+                    int read = channel.read(probe, end);
+                    if (read <= 0) {
+                        end = size;
+                        break;
+                    }
+                    for (int i = 0; i < read; i++) {
+                        if (probe.get(i) == '\n') {
+                            end += i + 1;
+                            aligned = true;
+                            break;
+                        }
+                    }
+                    if (!aligned) {
+                        end += read;
+                        aligned = end >= size;
+                    }
+                }
+                if (end - start > Integer.MAX_VALUE) {
+                    throw new IOException("Line longer than " + Integer.MAX_VALUE + " bytes in " + file);
+                }
+                chunks.add(new Chunk(file, start, end - start));
+                start = end;
+            }
+            return size;
+        }
+    }
+
+    /** Maps and parses one chunk; runs on a worker thread. */
+    private ParsedChunk parse(Chunk chunk) throws IOException {
+        try (FileChannel channel = FileChannel.open(chunk.file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.length);
+            LineParser parser = new LineParser(mapped, (int) chunk.length);
+            parser.parseAll();
+            return new ParsedChunk(parser.batch, parser.skipped);
+        }
+    }
+
+    private static ParsedChunk await(Future<ParsedChunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Parsing a chunk failed", e.getCause());
+        }
+    }
+
+    /** A line-aligned byte range of one file. */
+    private static final class Chunk {
+        final Path file;
+        final long start;
+        final long length;
+
+        Chunk(Path file, long start, long length) {
+            this.file = file;
+            this.start = start;
+            this.length = length;
+        }
+    }
+
+    /** Records parsed from one chunk, waiting to be merged. */
+    private static final class ParsedChunk {
+        final RecordBatch batch;
+        final long linesSkipped;
+
+        ParsedChunk(RecordBatch batch, long linesSkipped) {
+            this.batch = batch;
+            this.linesSkipped = linesSkipped;
+        }
+    }
+
+    /** Parses every line of one mapped chunk into a batch. */
+    private static final class LineParser extends AsciiLineParser {
+        private final MappedByteBuffer mapped;
+        private final int limit;
+
+        LineParser(MappedByteBuffer mapped, int limit) {
+            // a line is about 70 bytes; sizing up front avoids most regrowth
+            super(new RecordBatch(limit / 64 + 1));
+            this.mapped = mapped;
+            this.limit = limit;
+        }
+
+        void parseAll() {
+            parseLines(mapped, 0, limit, true);
+        }
+
+        @Override
+        boolean parseLine() {
+            if (!expect(PATIENT_ID)) {
+                return false;
+            }
+            long patientId = parseLong();
+            if (patientId < 0 || patientId > Integer.MAX_VALUE || !expect(TIMESTAMP)) {
+                return false;
+            }
+            long timestamp = parseLong();
+            if (timestamp < 0 || !expect(LABEL)) {
+                return false;
+            }
+            int labelStart = position;
+            int labelEnd = indexOf(DATA, labelStart, lineEnd);
+            if (labelEnd <= labelStart) {
+                return false;
+            }
+            int recordTypeId = labelId(labelStart, labelEnd);
+            position = labelEnd + DATA.length;
+
+            double value = parseValue();
+            if (Double.isNaN(value)) {
+                return false;
+            }
+            batch.add((int) patientId, value, recordTypeId, timestamp);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.data_management;
+
+/**
+ * Outcome of one bulk read into a {@link DataStorage}.
+ */
+public class IngestReport {
+    private final long bytes;
+    private final long records;
+    private final long linesSkipped;
+    private final long wallNanos;
+
+    public IngestReport(long bytes, long records, long linesSkipped, long wallNanos) {
+        this.bytes = bytes;
+        this.records = records;
+        this.linesSkipped = linesSkipped;
+        this.wallNanos = wallNanos;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    /** @return lines that did not match the expected format and were skipped */
+    public long getLinesSkipped() {
+        return linesSkipped;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public double getBytesPerSecond() {
+        return wallNanos == 0 ? 0 : bytes * 1_000_000_000.0 / wallNanos;
+    }
+
+    public double getRecordsPerSecond() {
+        return wallNanos == 0 ? 0 : records * 1_000_000_000.0 / wallNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("read %d records (%d skipped) from %.1f MB in %.3f s: %.1f MB/s, %.0f records/s",
+                records, linesSkipped, bytes / 1e6, wallNanos / 1e9, getBytesPerSecond() / 1e6,
+                getRecordsPerSecond());
+    }
+}
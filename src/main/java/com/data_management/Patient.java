@@ -1,27 +1,55 @@
 package com.data_management;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Represents a patient and manages their medical records.
  * This class stores patient-specific data, allowing for the addition and
  * retrieval
  * of medical records based on specified criteria.
+ *
+ * Samples are kept per record type in primitive columns, bounded or not as
+ * the patient's {@link RetentionPolicy} says; unbounded history is compressed
+ * in blocks as it grows. {@link PatientRecord} objects are only created when
+ * records are queried. Every sample also updates the
+ * record type's rollups (1 second, 1 minute and 1 hour unless the policy
+ * starts them coarser or turns them off), which answer long-range queries
+ * without touching the samples.
+ *
+ * Thread-safe: appends for one patient are serialised by a per-patient lock,
+ * so different patients never contend. Queries never take that lock.
  */
 public class Patient {
     private int patientId;
-    private List<PatientRecord> patientRecords;
+    private final RetentionPolicy retention;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // copy-on-write, indexed by RecordTypes ID; null for types this patient has no samples of
+    private volatile RecordSeries[] seriesByType = new RecordSeries[0];
+    // copy-on-write like seriesByType, and published before it
+    private volatile RollupSeries[] rollupsByType = new RollupSeries[0];
 
     /**
      * Constructs a new Patient with a specified ID.
-     * Initializes an empty list of patient records.
+     * Initializes an empty set of record columns that keep every sample.
      *
      * @param patientId the unique identifier for the patient
      */
     public Patient(int patientId) {
+        this(patientId, RetentionPolicy.unbounded());
+    }
+
+    /**
+     * Constructs a new Patient whose history is bounded by a retention policy.
+     *
+     * @param patientId the unique identifier for the patient
+     * @param retention how many samples of each record type to keep
+     */
+    public Patient(int patientId, RetentionPolicy retention) {
         this.patientId = patientId;
-        this.patientRecords = new ArrayList<>();
+        this.retention = retention;
     }
 
     public int getPatientId() {
@@ -39,8 +67,110 @@ public class Patient {
      *                         milliseconds since UNIX epoch
      */
     public void addRecord(double measurementValue, String recordType, long timestamp) {
-        PatientRecord record = new PatientRecord(this.patientId, measurementValue, recordType, timestamp);
-        this.patientRecords.add(record);
+        addRecord(measurementValue, RecordTypes.idOf(recordType), timestamp);
+    }
+
+    /**
+     * Adds a new record whose record type has already been resolved to an ID.
+     *
+     * @param measurementValue the measurement value to store in the record
+     * @param recordTypeId     ID from {@link RecordTypes}
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since UNIX epoch
+     */
+    public void addRecord(double measurementValue, int recordTypeId, long timestamp) {
+        writeLock.lock();
+        try {
+            seriesFor(recordTypeId).append(timestamp, measurementValue);
+            RollupSeries rollups = rollupsByType[recordTypeId];
+            if (rollups != null) {
+                rollups.add(timestamp, measurementValue);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds a slice of a batch under a single lock acquisition. Records that
+     * arrive in time order are appended; records older than what is already
+     * stored are collected per record type and merged in one pass at the end.
+     *
+     * @param batch   the batch holding the records
+     * @param indices batch indices of this patient's records, in arrival order
+     * @param from    first position in {@code indices}, inclusive
+     * @param to      last position in {@code indices}, exclusive
+     */
+    void addRecords(RecordBatch batch, int[] indices, int from, int to) {
+        writeLock.lock();
+        try {
+            RecordBatch late = null;
+            for (int k = from; k < to; k++) {
+                int index = indices[k];
+                int recordTypeId = batch.recordTypeIdAt(index);
+                RecordSeries series = seriesFor(recordTypeId);
+                long timestamp = batch.timestampAt(index);
+                // buckets are order-independent, so late records roll up right away
+                RollupSeries rollups = rollupsByType[recordTypeId];
+                if (rollups != null) {
+                    rollups.add(timestamp, batch.valueAt(index));
+                }
+                if (timestamp >= series.lastTimestamp()) {
+                    series.append(timestamp, batch.valueAt(index));
+                } else {
+                    if (late == null) {
+                        late = new RecordBatch(to - k);
+                    }
+                    late.add(patientId, batch.valueAt(index), recordTypeId, timestamp);
+                }
+            }
+            if (late != null) {
+                mergeLate(late);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** Merges late records into their series, one pass per record type; caller holds {@code writeLock}. */
+    private void mergeLate(RecordBatch late) {
+        Integer[] order = new Integer[late.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        // stable: equal timestamps keep their arrival order
+        Arrays.sort(order, (a, b) -> late.recordTypeIdAt(a) != late.recordTypeIdAt(b)
+                ? Integer.compare(late.recordTypeIdAt(a), late.recordTypeIdAt(b))
+                : Long.compare(late.timestampAt(a), late.timestampAt(b)));
+        long[] timestamps = new long[order.length];
+        double[] values = new double[order.length];
+        int start = 0;
+        while (start < order.length) {
+            int recordTypeId = late.recordTypeIdAt(order[start]);
+            int end = start;
+            while (end < order.length && late.recordTypeIdAt(order[end]) == recordTypeId) {
+                timestamps[end - start] = late.timestampAt(order[end]);
+                values[end - start] = late.valueAt(order[end]);
+                end++;
+            }
+            seriesFor(recordTypeId).mergeSorted(timestamps, values, end - start);
+            start = end;
+        }
+    }
+
+    /** Looks up or creates the series and rollups of a record type; caller holds {@code writeLock}. */
+    private RecordSeries seriesFor(int recordTypeId) {
+        RecordSeries[] current = seriesByType;
+        if (recordTypeId < current.length && current[recordTypeId] != null) {
+            return current[recordTypeId];
+        }
+        RollupSeries[] rollups = Arrays.copyOf(rollupsByType, Math.max(rollupsByType.length, recordTypeId + 1));
+        rollups[recordTypeId] = retention.newRollups(recordTypeId);
+        rollupsByType = rollups;
+        RecordSeries[] grown = Arrays.copyOf(current, Math.max(current.length, recordTypeId + 1));
+        grown[recordTypeId] = retention.newSeries(recordTypeId);
+        seriesByType = grown;
+        return grown[recordTypeId];
     }
 
     /**
@@ -52,17 +182,99 @@ public class Patient {
      *                  epoch
      * @param endTime   the end of the time range, in milliseconds since UNIX epoch
      * @return a list of PatientRecord objects that fall within the specified time
-     *         range
+     *         range, ordered by timestamp
      */
     public List<PatientRecord> getRecords(long startTime, long endTime) {
-        // TODO Implement and test this method
+        RecordSeries[] entries = seriesByType;
+        int typeCount = entries.length;
+        SeriesSnapshot[] series = new SeriesSnapshot[typeCount];
+        int[] cursor = new int[typeCount];
+        int[] end = new int[typeCount];
+        int total = 0;
+
+        // binary-search the window in every series ...
+        for (int t = 0; t < typeCount; t++) {
+            if (entries[t] == null) {
+                continue; // cursor == end == 0: never picked below
+            }
+            series[t] = entries[t].window(startTime, endTime);
+            end[t] = series[t].size();
+            total += end[t];
+        }
+
+        // ... then merge the sorted runs; ties go to the lower record type ID
+        List<PatientRecord> result = new ArrayList<>(total);
+        for (int n = 0; n < total; n++) {
+            int next = -1;
+            for (int i = 0; i < typeCount; i++) {
+                if (cursor[i] < end[i] && (next < 0
+                        || series[i].timestampAt(cursor[i]) < series[next].timestampAt(cursor[next]))) {
+                    next = i;
+                }
+            }
+            int index = cursor[next]++;
+            result.add(new PatientRecord(patientId, series[next].valueAt(index), next,
+                    series[next].timestampAt(index)));
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the newest records of one record type.
+     *
+     * @param recordTypeId ID from {@link RecordTypes}
+     * @param count        maximum number of records to return
+     * @return up to {@code count} records, oldest first
+     */
+    public List<PatientRecord> getLatestRecords(int recordTypeId, int count) {
+        RecordSeries[] entries = seriesByType;
         List<PatientRecord> result = new ArrayList<>();
-    for (PatientRecord r : patientRecords) {
-        long ts = r.getTimestamp();
-        if (ts >= startTime && ts <= endTime) {
-            result.add(r);
+        if (recordTypeId < 0 || recordTypeId >= entries.length || entries[recordTypeId] == null) {
+            return result;
+        }
+        SeriesSnapshot series = entries[recordTypeId].latest(count);
+        for (int i = 0; i < series.size(); i++) {
+            result.add(new PatientRecord(patientId, series.valueAt(i), recordTypeId, series.timestampAt(i)));
         }
+        return result;
     }
-    return result;
+
+    /**
+     * Returns roughly how much heap this patient's samples and rollups take,
+     * e.g. to check how much history fits a memory budget.
+     *
+     * @return approximate bytes of sample and rollup data across all record types
+     */
+    public long getStoredBytes() {
+        long bytes = 0;
+        for (RecordSeries series : seriesByType) {
+            if (series != null) {
+                bytes += series.sizeInBytes();
+            }
+        }
+        for (RollupSeries rollups : rollupsByType) {
+            if (rollups != null) {
+                bytes += rollups.sizeInBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Summarises one record type over a time range in buckets of at most the
+     * requested width, without reading the individual samples.
+     *
+     * @param recordTypeId     ID from {@link RecordTypes}
+     * @param startTime        the start of the time range, in milliseconds since UNIX epoch
+     * @param endTime          the end of the time range, in milliseconds since UNIX epoch
+     * @param resolutionMillis widest bucket wanted; the finest buckets kept are used if none is narrow enough
+     * @return the buckets overlapping the range, oldest first, or none if the type keeps no rollups
+     */
+    public List<RollupBucket> getRollups(int recordTypeId, long startTime, long endTime, long resolutionMillis) {
+        RollupSeries[] entries = rollupsByType;
+        if (recordTypeId < 0 || recordTypeId >= entries.length || entries[recordTypeId] == null) {
+            return new ArrayList<>();
+        }
+        return entries[recordTypeId].query(startTime, endTime, resolutionMillis);
     }
 }
@@ -0,0 +1,20 @@
+package com.data_management;
+
+/**
+ * Callback that {@link DataStorage} invokes for every record it stores, right
+ * after the record has become visible to queries.
+ *
+ * Implementations are called on the ingesting thread and may be called
+ * concurrently for different patients, so they must be thread-safe and cheap.
+ */
+public interface PatientDataListener {
+    /**
+     * Receives one newly stored record.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param recordTypeId     ID from {@link RecordTypes}
+     * @param measurementValue the value of the health metric
+     * @param timestamp        the time of the measurement, in milliseconds since the Unix epoch
+     */
+    void onRecord(int patientId, int recordTypeId, double measurementValue, long timestamp);
+}
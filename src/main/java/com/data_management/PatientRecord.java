@@ -11,7 +11,7 @@ package com.data_management;
  */
 public class PatientRecord {
     private int patientId;
-    private String recordType; // Example: ECG, blood pressure, etc.
+    private int recordTypeId; // RecordTypes ID, example: ECG, blood pressure, etc.
     private double measurementValue; // Example: heart rate
     private long timestamp;
 
@@ -26,9 +26,22 @@ public class PatientRecord {
      *                         milliseconds since epoch
      */
     public PatientRecord(int patientId, double measurementValue, String recordType, long timestamp) {
+        this(patientId, measurementValue, RecordTypes.idOf(recordType), timestamp);
+    }
+
+    /**
+     * Constructs a new patient record whose type has already been resolved to an ID.
+     *
+     * @param patientId        the unique identifier for the patient
+     * @param measurementValue the numerical value of the recorded measurement
+     * @param recordTypeId     ID from {@link RecordTypes}
+     * @param timestamp        the time at which the measurement was recorded, in
+     *                         milliseconds since epoch
+     */
+    public PatientRecord(int patientId, double measurementValue, int recordTypeId, long timestamp) {
         this.patientId = patientId;
         this.measurementValue = measurementValue;
-        this.recordType = recordType;
+        this.recordTypeId = recordTypeId;
         this.timestamp = timestamp;
     }
 
@@ -65,6 +78,15 @@ public class PatientRecord {
      * @return the record type
      */
     public String getRecordType() {
-        return recordType;
+        return RecordTypes.label(recordTypeId);
+    }
+
+    /**
+     * Returns the {@link RecordTypes} ID of this record's type.
+     *
+     * @return the record type ID
+     */
+    public int getRecordTypeId() {
+        return recordTypeId;
     }
 }
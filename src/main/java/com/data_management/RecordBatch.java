@@ -0,0 +1,82 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Growable block of records in primitive columns, used to hand many records
+ * to {@link DataStorage#addBatch(RecordBatch)} at once. A batch can be
+ * {@link #clear() cleared} and refilled, so a reader needs no allocation per
+ * record once the columns have grown to their working size.
+ *
+ * Not thread-safe; a batch belongs to one producer until it is handed over.
+ */
+public class RecordBatch {
+    private int[] patientIds;
+    private long[] timestamps;
+    private int[] recordTypeIds;
+    private double[] values;
+    private int size;
+
+    public RecordBatch() {
+        this(1024);
+    }
+
+    /**
+     * @param initialCapacity records the batch holds before it grows
+     */
+    public RecordBatch(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        patientIds = new int[capacity];
+        timestamps = new long[capacity];
+        recordTypeIds = new int[capacity];
+        values = new double[capacity];
+    }
+
+    /**
+     * Appends one record.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric
+     * @param recordTypeId     ID from {@link RecordTypes}
+     * @param timestamp        milliseconds since the Unix epoch
+     */
+    public void add(int patientId, double measurementValue, int recordTypeId, long timestamp) {
+        if (size == patientIds.length) {
+            int capacity = size + (size >> 1) + 1;
+            patientIds = Arrays.copyOf(patientIds, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            recordTypeIds = Arrays.copyOf(recordTypeIds, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        patientIds[size] = patientId;
+        timestamps[size] = timestamp;
+        recordTypeIds[size] = recordTypeId;
+        values[size] = measurementValue;
+        size++;
+    }
+
+    /** Empties the batch but keeps its columns for reuse. */
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int patientIdAt(int index) {
+        return patientIds[index];
+    }
+
+    public long timestampAt(int index) {
+        return timestamps[index];
+    }
+
+    public int recordTypeIdAt(int index) {
+        return recordTypeIds[index];
+    }
+
+    public double valueAt(int index) {
+        return values[index];
+    }
+}
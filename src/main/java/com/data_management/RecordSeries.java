@@ -0,0 +1,47 @@
+package com.data_management;
+
+/**
+ * The samples of one record type of one patient, kept sorted by timestamp;
+ * samples with equal timestamps keep their arrival order.
+ *
+ * Thread-safety: one writer at a time (the owning {@link Patient} serialises
+ * appends), any number of readers that never block the writer.
+ */
+interface RecordSeries {
+
+    /**
+     * Adds one sample; a sample older than the newest one is merged into place.
+     *
+     * @param timestamp milliseconds since UNIX epoch
+     * @param value     the measurement value
+     */
+    void append(long timestamp, double value);
+
+    /** @return timestamp of the newest sample, or {@link Long#MIN_VALUE} if there is none */
+    long lastTimestamp();
+
+    /**
+     * Merges a run of late samples.
+     *
+     * @param lateTimestamps timestamps of the run, sorted ascending
+     * @param lateValues     values of the run
+     * @param count          number of samples in the run
+     */
+    void mergeSorted(long[] lateTimestamps, double[] lateValues, int count);
+
+    /**
+     * @param startTime lower bound, inclusive
+     * @param endTime   upper bound, inclusive
+     * @return a consistent view of the samples in the range, oldest first
+     */
+    SeriesSnapshot window(long startTime, long endTime);
+
+    /**
+     * @param count maximum number of samples
+     * @return a consistent view of the newest {@code count} samples, oldest first
+     */
+    SeriesSnapshot latest(int count);
+
+    /** @return approximate heap bytes held for the samples, not counting object headers */
+    long sizeInBytes();
+}
@@ -0,0 +1,118 @@
+package com.data_management;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry that maps record type labels ("ECG", "Saturation", ...) to small
+ * integer IDs. A label is registered once, at ingestion; storage and alert
+ * rules then work with the ID, so filtering by type is an integer compare and
+ * needs no string handling per record.
+ *
+ * IDs are dense and start at 0, so they can index arrays. The labels written
+ * by the simulator are pre-registered with fixed IDs.
+ *
+ * Thread-safe: lookups are lock-free, registration of a new label is synchronised.
+ */
+public final class RecordTypes {
+
+    /** Vital sign a record type measures, as far as the alert rules care. */
+    public enum Category {
+        SYSTOLIC_PRESSURE,
+        DIASTOLIC_PRESSURE,
+        SATURATION,
+        OTHER
+    }
+
+    private static final ConcurrentMap<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] labels = new String[0];
+    private static volatile Category[] categories = new Category[0];
+
+    public static final int ECG = idOf("ECG");
+    public static final int SATURATION = idOf("Saturation");
+    public static final int SYSTOLIC_PRESSURE = idOf("SystolicPressure");
+    public static final int DIASTOLIC_PRESSURE = idOf("DiastolicPressure");
+    public static final int CHOLESTEROL = idOf("Cholesterol");
+    public static final int WHITE_BLOOD_CELLS = idOf("WhiteBloodCells");
+    public static final int RED_BLOOD_CELLS = idOf("RedBloodCells");
+    public static final int ALERT = idOf("Alert");
+
+    private RecordTypes() {
+    }
+
+    /**
+     * Returns the ID of a label, registering it on first use.
+     *
+     * @param label record type label, case-sensitive
+     * @return the label's ID
+     */
+    public static int idOf(String label) {
+        Integer id = IDS.get(label);
+        return id != null ? id : register(label);
+    }
+
+    /**
+     * @param id a registered ID
+     * @return the label the ID was registered for
+     * @throws IllegalArgumentException if the ID was never registered
+     */
+    public static String label(int id) {
+        String[] current = labels;
+        if (id < 0 || id >= current.length) {
+            throw new IllegalArgumentException("Unknown record type id: " + id);
+        }
+        return current[id];
+    }
+
+    /**
+     * @param id a registered ID
+     * @return the vital sign category, decided once when the label was registered
+     * @throws IllegalArgumentException if the ID was never registered
+     */
+    public static Category category(int id) {
+        Category[] current = categories;
+        if (id < 0 || id >= current.length) {
+            throw new IllegalArgumentException("Unknown record type id: " + id);
+        }
+        return current[id];
+    }
+
+    /** @return number of registered labels; every ID is below this */
+    public static int count() {
+        return labels.length;
+    }
+
+    private static synchronized int register(String label) {
+        Integer existing = IDS.get(label);
+        if (existing != null) {
+            return existing;
+        }
+        int id = labels.length;
+        String[] grownLabels = Arrays.copyOf(labels, id + 1);
+        Category[] grownCategories = Arrays.copyOf(categories, id + 1);
+        grownLabels[id] = label;
+        grownCategories[id] = classify(label);
+        // publish the arrays before the ID becomes visible through the map
+        labels = grownLabels;
+        categories = grownCategories;
+        IDS.put(label, id);
+        return id;
+    }
+
+    /** Same matching the alert rules used on raw labels: any label naming the vital sign counts. */
+    private static Category classify(String label) {
+        String lower = label.toLowerCase(Locale.ROOT);
+        if (lower.contains("systolic")) {
+            return Category.SYSTOLIC_PRESSURE;
+        }
+        if (lower.contains("diastolic")) {
+            return Category.DIASTOLIC_PRESSURE;
+        }
+        if (lower.contains("spo") || lower.contains("saturation")) {
+            return Category.SATURATION;
+        }
+        return Category.OTHER;
+    }
+}
@@ -0,0 +1,282 @@
+package com.data_management;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Fixed-size storage for the samples of one record type of one patient, used
+ * when a {@link RetentionPolicy} bounds the record type's history. Both tiers
+ * are allocated in full up front, so the series never grows and its memory is
+ * known in advance.
+ *
+ * The newest samples are kept raw in a ring. When it is full, its oldest
+ * {@code downsampleFactor} samples are averaged into one sample of a second,
+ * downsampled ring, which drops its own oldest sample when full. Without a
+ * downsampled ring the oldest raw sample is dropped. A late sample is merged
+ * into the raw ring; one older than every raw sample is dropped.
+ *
+ * Thread-safety: one writer at a time (the owning {@link Patient} serialises
+ * appends), any number of readers. The rings are overwritten in place, so every
+ * change is made under the write lock of a {@link StampedLock} used as a
+ * sequence lock: a reader copies the samples it needs without locking and
+ * keeps the copy only if no write overlapped it. After a few overlapping
+ * attempts the reader takes the read lock, which holds the writer back for
+ * the length of one copy.
+ */
+final class RetainedTimeSeries implements RecordSeries {
+    private static final int OPTIMISTIC_ATTEMPTS = 4;
+
+    private final Ring raw;
+    private final Ring downsampled; // capacity 0 without downsampling
+    private final int downsampleFactor;
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * @param rawCapacity         raw samples kept
+     * @param downsampleFactor    raw samples averaged into one downsampled sample
+     * @param downsampledCapacity downsampled samples kept; 0 drops evicted raw samples
+     */
+    RetainedTimeSeries(int rawCapacity, int downsampleFactor, int downsampledCapacity) {
+        this.raw = new Ring(rawCapacity);
+        this.downsampled = new Ring(downsampledCapacity);
+        this.downsampleFactor = downsampleFactor;
+    }
+
+    @Override
+    public void append(long timestamp, double value) {
+        long stamp = lock.writeLock();
+        try {
+            insert(timestamp, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public long lastTimestamp() {
+        // only the writer calls this, and only the writer changes the rings
+        if (raw.end > raw.start) {
+            return raw.timestampAt(raw.end - 1);
+        }
+        return downsampled.end > downsampled.start ? downsampled.timestampAt(downsampled.end - 1) : Long.MIN_VALUE;
+    }
+
+    @Override
+    public void mergeSorted(long[] lateTimestamps, double[] lateValues, int count) {
+        long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < count; i++) {
+                insert(lateTimestamps[i], lateValues[i]);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public SeriesSnapshot window(long startTime, long endTime) {
+        return read(() -> copyWindow(startTime, endTime));
+    }
+
+    @Override
+    public SeriesSnapshot latest(int count) {
+        return read(() -> copyLatest(count));
+    }
+
+    @Override
+    public long sizeInBytes() {
+        return (long) (raw.capacity + downsampled.capacity) * RetentionPolicy.BYTES_PER_SAMPLE;
+    }
+
+    /** Adds one sample; caller holds the write lock. */
+    private void insert(long timestamp, double value) {
+        boolean late = raw.end > raw.start && timestamp < raw.timestampAt(raw.end - 1);
+        if (late && timestamp < raw.timestampAt(raw.start)) {
+            return; // older than the raw window: its period is downsampled or gone already
+        }
+        if (raw.end - raw.start == raw.capacity) {
+            evict();
+        }
+        if (late) {
+            raw.insert(timestamp, value);
+        } else {
+            raw.add(timestamp, value);
+        }
+    }
+
+    /** Makes room in the full raw ring; caller holds the write lock. */
+    private void evict() {
+        if (downsampled.capacity == 0) {
+            raw.start++;
+            return;
+        }
+        long first = raw.start;
+        int count = (int) Math.min(downsampleFactor, raw.end - first);
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += raw.valueAt(first + i);
+        }
+        downsampled.add(raw.timestampAt(first), sum / count);
+        raw.start += count;
+    }
+
+    /** Runs a copy as an optimistic read, falling back to the read lock. */
+    private SeriesSnapshot read(Supplier<SeriesSnapshot> copy) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                SeriesSnapshot snapshot = copy.get();
+                if (lock.validate(stamp)) {
+                    return snapshot;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        long stamp = lock.readLock();
+        try {
+            return copy.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Copies the samples in a time range. May run concurrently with the writer,
+     * so it must tolerate torn state without failing; the caller discards the
+     * result in that case.
+     */
+    private SeriesSnapshot copyWindow(long startTime, long endTime) {
+        long downsampledStart = downsampled.start;
+        long downsampledEnd = downsampled.validEnd(downsampledStart);
+        long rawStart = raw.start;
+        long rawEnd = raw.validEnd(rawStart);
+        long downsampledFrom = downsampled.indexAtOrAfter(startTime, downsampledStart, downsampledEnd);
+        long downsampledTo = downsampled.indexAfter(endTime, downsampledFrom, downsampledEnd);
+        long rawFrom = raw.indexAtOrAfter(startTime, rawStart, rawEnd);
+        long rawTo = raw.indexAfter(endTime, rawFrom, rawEnd);
+        return copy(downsampledFrom, (int) (downsampledTo - downsampledFrom), rawFrom, (int) (rawTo - rawFrom));
+    }
+
+    /** Copies the newest samples; tolerates torn state like {@link #copyWindow}. */
+    private SeriesSnapshot copyLatest(int count) {
+        long downsampledStart = downsampled.start;
+        long downsampledEnd = downsampled.validEnd(downsampledStart);
+        long rawStart = raw.start;
+        long rawEnd = raw.validEnd(rawStart);
+        int rawCount = (int) Math.min(Math.max(0, count), rawEnd - rawStart);
+        int downsampledCount = (int) Math.min(Math.max(0, count - rawCount), downsampledEnd - downsampledStart);
+        return copy(downsampledEnd - downsampledCount, downsampledCount, rawEnd - rawCount, rawCount);
+    }
+
+    private SeriesSnapshot copy(long downsampledFrom, int downsampledCount, long rawFrom, int rawCount) {
+        int total = downsampledCount + rawCount;
+        if (total == 0) {
+            return SeriesSnapshot.EMPTY;
+        }
+        long[] timestamps = new long[total];
+        double[] values = new double[total];
+        downsampled.copy(downsampledFrom, downsampledCount, timestamps, values, 0);
+        raw.copy(rawFrom, rawCount, timestamps, values, downsampledCount);
+        return new SeriesSnapshot(timestamps, values, 0, total);
+    }
+
+    /**
+     * Samples in a ring, addressed by sequence number: the sample appended
+     * n-th lives in slot {@code n % capacity} and the live samples are the
+     * sequence numbers {@code [start, end)}.
+     */
+    private static final class Ring {
+        final int capacity;
+        final long[] timestamps;
+        final double[] values;
+        long start;
+        long end;
+
+        Ring(int capacity) {
+            this.capacity = capacity;
+            this.timestamps = new long[capacity];
+            this.values = new double[capacity];
+        }
+
+        long timestampAt(long sequence) {
+            return timestamps[(int) (sequence % capacity)];
+        }
+
+        double valueAt(long sequence) {
+            return values[(int) (sequence % capacity)];
+        }
+
+        /** Appends after the newest sample, dropping the oldest when full. */
+        void add(long timestamp, double value) {
+            if (end - start == capacity) {
+                start++;
+            }
+            int slot = (int) (end % capacity);
+            timestamps[slot] = timestamp;
+            values[slot] = value;
+            end++;
+        }
+
+        /** Inserts after the samples with equal or older timestamps; the ring must not be full. */
+        void insert(long timestamp, double value) {
+            long position = indexAfter(timestamp, start, end);
+            for (long sequence = end; sequence > position; sequence--) {
+                int to = (int) (sequence % capacity);
+                int from = (int) ((sequence - 1) % capacity);
+                timestamps[to] = timestamps[from];
+                values[to] = values[from];
+            }
+            int slot = (int) (position % capacity);
+            timestamps[slot] = timestamp;
+            values[slot] = value;
+            end++;
+        }
+
+        /** @return {@code end}, clamped so that a torn read never spans more than the ring */
+        long validEnd(long readStart) {
+            long readEnd = end;
+            return readEnd < readStart || readEnd - readStart > capacity ? readStart : readEnd;
+        }
+
+        long indexAtOrAfter(long timestamp, long from, long to) {
+            long low = from;
+            long high = to;
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (timestampAt(mid) < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        long indexAfter(long timestamp, long from, long to) {
+            long low = from;
+            long high = to;
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (timestampAt(mid) <= timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /** Copies {@code count} samples from sequence {@code from} on, in at most two runs. */
+        void copy(long from, int count, long[] dstTimestamps, double[] dstValues, int position) {
+            if (count == 0) {
+                return;
+            }
+            int slot = (int) (from % capacity);
+            int first = Math.min(count, capacity - slot);
+            System.arraycopy(timestamps, slot, dstTimestamps, position, first);
+            System.arraycopy(values, slot, dstValues, position, first);
+            System.arraycopy(timestamps, 0, dstTimestamps, position + first, count - first);
+            System.arraycopy(values, 0, dstValues, position + first, count - first);
+        }
+    }
+}
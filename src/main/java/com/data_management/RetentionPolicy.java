@@ -0,0 +1,189 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * How much history a {@link DataStorage} keeps per patient and record type.
+ *
+ * By default every sample is kept. A bounded record type keeps its newest
+ * samples raw in a fixed-size ring, e.g. 600 samples for the last 10 minutes
+ * of a 1 Hz signal. Older samples are averaged in groups of
+ * {@code downsampleFactor} into a second fixed-size ring, or dropped if that
+ * ring has no room configured. Both rings are allocated when a patient's first
+ * sample of the type arrives, so {@link #maxBytes(String)} bounds the memory of
+ * each of a patient's series and the heap can be sized for N patients up front.
+ *
+ * Queries see the downsampled averages followed by the raw samples. Alert
+ * rules read the newest raw samples, so they keep working over any window
+ * that fits the raw ring.
+ *
+ * Every record type also keeps 1 second, 1 minute and 1 hour rollups unless
+ * the policy starts them at a coarser tier or turns them off, e.g. from 1
+ * minute for a signal sampled about once a second, whose 1 second buckets
+ * would take more memory than its samples. {@link #maxBytes(String)} includes
+ * the rollups.
+ *
+ * Immutable; the {@code with} methods return a new policy.
+ */
+public final class RetentionPolicy {
+
+    /** Memory of one sample in a bounded series: a timestamp and a value. */
+    static final int BYTES_PER_SAMPLE = Long.BYTES + Double.BYTES;
+
+    /** Finest rollup tier meaning that no rollups are kept. */
+    private static final int NO_ROLLUPS = RollupSeries.TIER_WIDTHS.length;
+    private static final RetentionPolicy UNBOUNDED = new RetentionPolicy(null, new Retention[0], 0, new int[0]);
+
+    private final Retention defaultRetention; // null = unbounded
+    private final Retention[] retentionByType; // indexed by RecordTypes ID; null = default
+    private final int defaultFinestTier; // index in RollupSeries.TIER_WIDTHS; NO_ROLLUPS = none
+    private final int[] finestTierByType; // indexed by RecordTypes ID; -1 = default
+
+    private RetentionPolicy(Retention defaultRetention, Retention[] retentionByType,
+                            int defaultFinestTier, int[] finestTierByType) {
+        this.defaultRetention = defaultRetention;
+        this.retentionByType = retentionByType;
+        this.defaultFinestTier = defaultFinestTier;
+        this.finestTierByType = finestTierByType;
+    }
+
+    /** @return a policy that keeps every sample of every record type */
+    public static RetentionPolicy unbounded() {
+        return UNBOUNDED;
+    }
+
+    /**
+     * Bounds every record type that has no retention of its own.
+     *
+     * @param rawSamples         newest samples kept as they arrived
+     * @param downsampleFactor   older samples averaged into one downsampled sample
+     * @param downsampledSamples downsampled samples kept; 0 drops older samples instead
+     * @return the new policy
+     * @throws IllegalArgumentException if a count is out of range
+     */
+    public RetentionPolicy withDefault(int rawSamples, int downsampleFactor, int downsampledSamples) {
+        return new RetentionPolicy(new Retention(rawSamples, downsampleFactor, downsampledSamples), retentionByType,
+                defaultFinestTier, finestTierByType);
+    }
+
+    /**
+     * Bounds one record type.
+     *
+     * @param recordType         the record type label, e.g. {@code "ECG"}
+     * @param rawSamples         newest samples kept as they arrived
+     * @param downsampleFactor   older samples averaged into one downsampled sample
+     * @param downsampledSamples downsampled samples kept; 0 drops older samples instead
+     * @return the new policy
+     * @throws IllegalArgumentException if a count is out of range
+     */
+    public RetentionPolicy with(String recordType, int rawSamples, int downsampleFactor, int downsampledSamples) {
+        int id = RecordTypes.idOf(recordType);
+        Retention[] grown = Arrays.copyOf(retentionByType, Math.max(retentionByType.length, id + 1));
+        grown[id] = new Retention(rawSamples, downsampleFactor, downsampledSamples);
+        return new RetentionPolicy(defaultRetention, grown, defaultFinestTier, finestTierByType);
+    }
+
+    /**
+     * Sets the finest rollups of every record type that has no rollup setting
+     * of its own; the coarser tiers are kept as well.
+     *
+     * @param finestMillis width of the finest buckets kept: 1 000, 60 000 or 3 600 000; 0 keeps no rollups
+     * @return the new policy
+     * @throws IllegalArgumentException if {@code finestMillis} is not a rollup width or 0
+     */
+    public RetentionPolicy withRollups(long finestMillis) {
+        return new RetentionPolicy(defaultRetention, retentionByType, tierOf(finestMillis), finestTierByType);
+    }
+
+    /**
+     * Sets the finest rollups of one record type; the coarser tiers are kept as well.
+     *
+     * @param recordType   the record type label, e.g. {@code "Cholesterol"}
+     * @param finestMillis width of the finest buckets kept: 1 000, 60 000 or 3 600 000; 0 keeps no rollups
+     * @return the new policy
+     * @throws IllegalArgumentException if {@code finestMillis} is not a rollup width or 0
+     */
+    public RetentionPolicy withRollups(String recordType, long finestMillis) {
+        int id = RecordTypes.idOf(recordType);
+        int tier = tierOf(finestMillis);
+        int length = finestTierByType.length;
+        int[] grown = Arrays.copyOf(finestTierByType, Math.max(length, id + 1));
+        Arrays.fill(grown, length, grown.length, -1);
+        grown[id] = tier;
+        return new RetentionPolicy(defaultRetention, retentionByType, defaultFinestTier, grown);
+    }
+
+    private static int tierOf(long finestMillis) {
+        if (finestMillis == 0) {
+            return NO_ROLLUPS;
+        }
+        for (int t = 0; t < RollupSeries.TIER_WIDTHS.length; t++) {
+            if (RollupSeries.TIER_WIDTHS[t] == finestMillis) {
+                return t;
+            }
+        }
+        throw new IllegalArgumentException("Not a rollup width: " + finestMillis
+                + " ms; use 0, " + Arrays.toString(RollupSeries.TIER_WIDTHS));
+    }
+
+    /**
+     * @param recordType the record type label
+     * @return most bytes one patient's samples and rollups of the type occupy, or -1 if the type is unbounded
+     */
+    public long maxBytes(String recordType) {
+        int id = RecordTypes.idOf(recordType);
+        Retention retention = retentionOf(id);
+        if (retention == null) {
+            return -1;
+        }
+        return (long) (retention.rawSamples + retention.downsampledSamples) * BYTES_PER_SAMPLE
+                + RollupSeries.maxBytes(finestTierOf(id));
+    }
+
+    /** @return a new, empty series for one patient's samples of the record type */
+    RecordSeries newSeries(int recordTypeId) {
+        Retention retention = retentionOf(recordTypeId);
+        if (retention == null) {
+            return new TimeSeries();
+        }
+        return new RetainedTimeSeries(retention.rawSamples, retention.downsampleFactor,
+                retention.downsampledSamples);
+    }
+
+    /** @return new, empty rollups for one patient's samples of the record type, or null if it keeps none */
+    RollupSeries newRollups(int recordTypeId) {
+        int finestTier = finestTierOf(recordTypeId);
+        return finestTier == NO_ROLLUPS ? null : new RollupSeries(finestTier);
+    }
+
+    private int finestTierOf(int recordTypeId) {
+        if (recordTypeId < finestTierByType.length && finestTierByType[recordTypeId] >= 0) {
+            return finestTierByType[recordTypeId];
+        }
+        return defaultFinestTier;
+    }
+
+    private Retention retentionOf(int recordTypeId) {
+        if (recordTypeId < retentionByType.length && retentionByType[recordTypeId] != null) {
+            return retentionByType[recordTypeId];
+        }
+        return defaultRetention;
+    }
+
+    /** Ring sizes of one bounded record type. */
+    private static final class Retention {
+        final int rawSamples;
+        final int downsampleFactor;
+        final int downsampledSamples;
+
+        Retention(int rawSamples, int downsampleFactor, int downsampledSamples) {
+            if (rawSamples < 1 || downsampledSamples < 0 || downsampleFactor < 1 || downsampleFactor > rawSamples) {
+                throw new IllegalArgumentException("Invalid retention: " + rawSamples + " raw samples, factor "
+                        + downsampleFactor + ", " + downsampledSamples + " downsampled samples");
+            }
+            this.rawSamples = rawSamples;
+            this.downsampleFactor = downsampleFactor;
+            this.downsampledSamples = downsampledSamples;
+        }
+    }
+}
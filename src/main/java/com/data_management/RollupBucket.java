@@ -0,0 +1,54 @@
+package com.data_management;
+
+/**
+ * Summary of the samples of one record type of one patient that fall into a
+ * fixed time bucket, as returned by
+ * {@link DataStorage#getRollups(int, String, long, long, long)}.
+ */
+public final class RollupBucket {
+    private final long startTime;
+    private final long widthMillis;
+    private final double min;
+    private final double max;
+    private final double average;
+    private final int count;
+
+    RollupBucket(long startTime, long widthMillis, double min, double max, double average, int count) {
+        this.startTime = startTime;
+        this.widthMillis = widthMillis;
+        this.min = min;
+        this.max = max;
+        this.average = average;
+        this.count = count;
+    }
+
+    /** @return start of the bucket, in milliseconds since UNIX epoch; a multiple of the width */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /** @return length of the bucket in milliseconds: 1 second, 1 minute or 1 hour */
+    public long getWidthMillis() {
+        return widthMillis;
+    }
+
+    /** @return the smallest sample value in the bucket */
+    public double getMin() {
+        return min;
+    }
+
+    /** @return the largest sample value in the bucket */
+    public double getMax() {
+        return max;
+    }
+
+    /** @return the mean of the sample values in the bucket */
+    public double getAverage() {
+        return average;
+    }
+
+    /** @return number of samples in the bucket */
+    public int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,313 @@
+package com.data_management;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Min/max/average/count summaries of the samples of one record type of one
+ * patient in 1 second, 1 minute and 1 hour buckets, updated as each sample
+ * arrives. Every tier keeps a fixed number of its newest buckets (an hour of
+ * seconds, a day of minutes and 31 days of hours), so a query over any range
+ * touches at most a few thousand buckets however many samples it covers.
+ * A series may leave out its finer tiers: the {@link RetentionPolicy} says
+ * which tier is the finest, since for a signal sampled once a second or less
+ * the 1 second tier takes more memory than the samples.
+ *
+ * A query picks the coarsest tier whose buckets are no wider than the
+ * requested resolution, or the finest tier kept if none is. The part of the
+ * range older than that tier's oldest bucket is answered from the next
+ * coarser tier, so the result covers the range as far back as any tier
+ * reaches and never counts a sample twice.
+ *
+ * Thread-safety: one writer at a time (the owning {@link Patient} serialises
+ * appends), any number of readers. Buckets are updated in place under the write
+ * lock of a {@link StampedLock} used as a sequence lock, as in
+ * {@link RetainedTimeSeries}: a query copies its buckets without locking and
+ * keeps the copy only if no write overlapped it, and only takes the read lock
+ * after a few overlapping attempts.
+ */
+final class RollupSeries {
+    static final long[] TIER_WIDTHS = {1_000L, 60_000L, 3_600_000L};
+    private static final int[] TIER_CAPACITIES = {3_600, 1_440, 31 * 24};
+    private static final int OPTIMISTIC_ATTEMPTS = 4;
+    /** Memory of one bucket: its start, min, max, sum and count. */
+    static final int BYTES_PER_BUCKET = Long.BYTES + 3 * Double.BYTES + Integer.BYTES;
+
+    private final Tier[] tiers;
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * @param finestTier index in {@link #TIER_WIDTHS} of the finest tier kept;
+     *                   the coarser ones are kept too
+     */
+    RollupSeries(int finestTier) {
+        tiers = new Tier[TIER_WIDTHS.length - finestTier];
+        for (int t = 0; t < tiers.length; t++) {
+            tiers[t] = new Tier(TIER_WIDTHS[finestTier + t], TIER_CAPACITIES[finestTier + t]);
+        }
+    }
+
+    /**
+     * @param finestTier index in {@link #TIER_WIDTHS} of the finest tier kept
+     * @return most bytes the buckets of a series with these tiers occupy
+     */
+    static long maxBytes(int finestTier) {
+        long buckets = 0;
+        for (int t = finestTier; t < TIER_CAPACITIES.length; t++) {
+            buckets += TIER_CAPACITIES[t];
+        }
+        return buckets * BYTES_PER_BUCKET;
+    }
+
+    /**
+     * Adds one sample to its bucket in every tier; a late sample updates an
+     * older bucket as long as the tier still holds it.
+     *
+     * @param timestamp milliseconds since UNIX epoch
+     * @param value     the measurement value
+     */
+    void add(long timestamp, double value) {
+        long stamp = lock.writeLock();
+        try {
+            for (Tier tier : tiers) {
+                tier.add(timestamp, value);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param startTime        lower bound, inclusive
+     * @param endTime          upper bound, inclusive
+     * @param resolutionMillis widest bucket the caller accepts
+     * @return the buckets overlapping the range, oldest first
+     */
+    List<RollupBucket> query(long startTime, long endTime, long resolutionMillis) {
+        int tier = 0;
+        while (tier + 1 < tiers.length && tiers[tier + 1].width <= resolutionMillis) {
+            tier++;
+        }
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                List<RollupBucket> result = new ArrayList<>();
+                collect(tier, startTime, endTime, result);
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        List<RollupBucket> result = new ArrayList<>();
+        long stamp = lock.readLock();
+        try {
+            collect(tier, startTime, endTime, result);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return result;
+    }
+
+    /** @return bytes the buckets take, counting the columns as allocated */
+    long sizeInBytes() {
+        long buckets = 0;
+        for (Tier tier : tiers) {
+            buckets += tier.columns.starts.length;
+        }
+        return buckets * BYTES_PER_BUCKET;
+    }
+
+    /**
+     * Collects from one tier, falling back to coarser tiers for what it no
+     * longer holds. May run concurrently with the writer, so it must tolerate
+     * torn state without failing; the caller discards the result in that case.
+     */
+    private void collect(int t, long startTime, long endTime, List<RollupBucket> result) {
+        Tier tier = tiers[t];
+        long from = startTime;
+        // a tier that never evicted a bucket still holds everything it was given
+        if (t + 1 < tiers.length && tier.start > 0 && tier.startAt(tier.start) > startTime) {
+            collect(t + 1, startTime, Math.min(endTime, tier.startAt(tier.start) - 1), result);
+            if (!result.isEmpty()) {
+                // tiers are aligned, so this tier resumes exactly where the coarser bucket ends
+                RollupBucket last = result.get(result.size() - 1);
+                from = Math.max(from, last.getStartTime() + last.getWidthMillis());
+            }
+        }
+        tier.collect(from, endTime, result);
+    }
+
+    /**
+     * The buckets of one tier in a ring addressed by sequence number, like the
+     * rings of {@link RetainedTimeSeries}. The columns grow up to the tier's
+     * capacity, so a series with little data stays small; they only wrap once
+     * they are full, so growing never moves a bucket to another slot. Growing
+     * replaces all columns at once, so a reader always sees columns of one
+     * length.
+     */
+    private static final class Tier {
+        private static final int INITIAL_CAPACITY = 16;
+
+        final long width;
+        final int capacity;
+        volatile Columns columns;
+        long start;
+        long end;
+
+        Tier(long width, int capacity) {
+            this.width = width;
+            this.capacity = capacity;
+            this.columns = new Columns(Math.min(INITIAL_CAPACITY, capacity));
+        }
+
+        long startAt(long sequence) {
+            Columns c = columns;
+            return c.starts[c.slot(sequence)];
+        }
+
+        void add(long timestamp, double value) {
+            Columns c = columns;
+            long key = Math.floorDiv(timestamp, width) * width;
+            if (end > start) {
+                long newest = c.starts[c.slot(end - 1)];
+                if (key == newest) {
+                    c.update(c.slot(end - 1), value);
+                    return;
+                }
+                if (key < newest) {
+                    addLate(key, value);
+                    return;
+                }
+            }
+            c = makeRoom();
+            c.open(c.slot(end), key, value);
+            end++;
+        }
+
+        private void addLate(long key, double value) {
+            Columns c = columns;
+            long position = c.indexAtOrAfter(key, start, end);
+            if (position < end && c.starts[c.slot(position)] == key) {
+                c.update(c.slot(position), value);
+                return;
+            }
+            boolean full = end - start == capacity;
+            if (position == start && (start > 0 || full)) {
+                return; // older than the tier reaches: its bucket was evicted or there is no room for it
+            }
+            c = makeRoom();
+            for (long sequence = end; sequence > position; sequence--) {
+                int to = c.slot(sequence);
+                int from = c.slot(sequence - 1);
+                c.starts[to] = c.starts[from];
+                c.mins[to] = c.mins[from];
+                c.maxs[to] = c.maxs[from];
+                c.sums[to] = c.sums[from];
+                c.counts[to] = c.counts[from];
+            }
+            c.open(c.slot(position), key, value);
+            end++;
+        }
+
+        /**
+         * Grows the columns, or evicts the oldest bucket once they have reached the tier's capacity.
+         *
+         * @return the columns to write the new bucket to
+         */
+        private Columns makeRoom() {
+            Columns c = columns;
+            if (end - start < c.starts.length) {
+                return c;
+            }
+            if (c.starts.length < capacity) {
+                // not wrapped yet: start == 0, so every bucket keeps its slot
+                c = c.grow((int) Math.min(capacity, 2L * c.starts.length));
+                columns = c;
+            } else {
+                start++;
+            }
+            return c;
+        }
+
+        /** Adds the buckets that overlap {@code [from, to]}; tolerates torn state like {@link #collect}. */
+        void collect(long from, long to, List<RollupBucket> result) {
+            Columns c = columns;
+            long first = start;
+            long last = end;
+            if (last < first || last - first > c.starts.length) {
+                return; // overlapped a write: the caller retries
+            }
+            long lowest = from < Long.MIN_VALUE + width ? Long.MIN_VALUE : from - width + 1;
+            for (long sequence = c.indexAtOrAfter(lowest, first, last); sequence < last; sequence++) {
+                int slot = c.slot(sequence);
+                if (c.starts[slot] > to) {
+                    break;
+                }
+                result.add(new RollupBucket(c.starts[slot], width, c.mins[slot], c.maxs[slot],
+                        c.sums[slot] / c.counts[slot], c.counts[slot]));
+            }
+        }
+    }
+
+    /** The bucket columns of one tier, all of the same length. */
+    private static final class Columns {
+        final long[] starts;
+        final double[] mins;
+        final double[] maxs;
+        final double[] sums;
+        final int[] counts;
+
+        Columns(int length) {
+            this(new long[length], new double[length], new double[length], new double[length], new int[length]);
+        }
+
+        private Columns(long[] starts, double[] mins, double[] maxs, double[] sums, int[] counts) {
+            this.starts = starts;
+            this.mins = mins;
+            this.maxs = maxs;
+            this.sums = sums;
+            this.counts = counts;
+        }
+
+        Columns grow(int length) {
+            return new Columns(Arrays.copyOf(starts, length), Arrays.copyOf(mins, length),
+                    Arrays.copyOf(maxs, length), Arrays.copyOf(sums, length), Arrays.copyOf(counts, length));
+        }
+
+        int slot(long sequence) {
+            return (int) (sequence % starts.length);
+        }
+
+        void open(int slot, long key, double value) {
+            starts[slot] = key;
+            mins[slot] = value;
+            maxs[slot] = value;
+            sums[slot] = value;
+            counts[slot] = 1;
+        }
+
+        void update(int slot, double value) {
+            mins[slot] = Math.min(mins[slot], value);
+            maxs[slot] = Math.max(maxs[slot], value);
+            sums[slot] += value;
+            counts[slot]++;
+        }
+
+        long indexAtOrAfter(long key, long from, long to) {
+            long low = from;
+            long high = to;
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (starts[slot(mid)] < key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
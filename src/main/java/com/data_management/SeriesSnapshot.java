@@ -0,0 +1,40 @@
+package com.data_management;
+
+/**
+ * Immutable read view over a run of samples in two parallel columns, as
+ * returned by a {@link RecordSeries} query. Index 0 is the oldest sample of
+ * the run.
+ */
+final class SeriesSnapshot {
+    static final SeriesSnapshot EMPTY = new SeriesSnapshot(new long[0], new double[0], 0, 0);
+
+    private final long[] timestamps;
+    private final double[] values;
+    private final int offset;
+    private final int size;
+
+    /**
+     * @param timestamps column holding the run; never modified while the view is in use
+     * @param values     column holding the run
+     * @param offset     index of the run's first sample in the columns
+     * @param size       number of samples in the run
+     */
+    SeriesSnapshot(long[] timestamps, double[] values, int offset, int size) {
+        this.timestamps = timestamps;
+        this.values = values;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long timestampAt(int index) {
+        return timestamps[offset + index];
+    }
+
+    double valueAt(int index) {
+        return values[offset + index];
+    }
+}
@@ -0,0 +1,224 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Follows a live feed of {@code patientId,timestamp,label,data} lines, as
+ * sent by {@link com.cardio_generator.outputs.TcpOutputStrategy} and
+ * {@link com.cardio_generator.outputs.WebSocketOutputStrategy}, into a
+ * {@link DataStorage}.
+ *
+ * {@link #readData} blocks until {@link #close()}: it connects, hands each
+ * chunk of received data to the storage as one {@link RecordBatch} (so
+ * listeners such as the {@code AlertGenerator} see every record as it
+ * arrives) and reconnects with exponential backoff whenever the connection
+ * fails or ends. The backoff is reset once a connection is established.
+ *
+ * Throughput and lag are tracked as data arrives. Lag is the age of the
+ * newest record of a batch when it was stored, measured against this host's
+ * clock, so it is the end-to-end delay when the producer runs on the same host.
+ */
+abstract class StreamingDataReader implements DataReader {
+
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 100;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 5000;
+
+    /** Records of one chunk of received data; only touched by the thread delivering data. */
+    final RecordBatch batch = new RecordBatch(1024);
+    private final CsvLineParser parser = new CsvLineParser(batch);
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private volatile boolean running = true;
+    private DataStorage storage;
+    private long backoffMillis;
+
+    // Written by the thread delivering data, read by anyone
+    private volatile long startNanos;
+    private volatile long recordsRead;
+    private volatile long bytesRead;
+    private volatile long skipped;
+    private volatile long connections;
+    private volatile long lagMillis;
+    private volatile long maxLagMillis;
+
+    StreamingDataReader(long initialBackoffMillis, long maxBackoffMillis) {
+        if (initialBackoffMillis < 1 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("backoff must be positive and at most maxBackoffMillis");
+        }
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Streams the feed into the storage until {@link #close()} is called or
+     * the thread is interrupted.
+     *
+     * @param dataStorage the storage where data will be stored
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        storage = dataStorage;
+        startNanos = System.nanoTime();
+        backoffMillis = initialBackoffMillis;
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                stream();
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println(describe() + ": " + e.getMessage());
+                }
+            }
+            if (!running) {
+                break;
+            }
+            System.out.println("Reconnecting to " + describe() + " in " + backoffMillis + " ms");
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            backoffMillis = Math.min(backoffMillis * 2, maxBackoffMillis);
+        }
+    }
+
+    /** Stops {@link #readData} and drops the connection; does nothing if already closed. */
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        disconnect();
+    }
+
+    /** @return records stored so far */
+    public long getRecordsRead() {
+        return recordsRead;
+    }
+
+    /** @return lines or frames that did not match the expected format and were skipped */
+    public long getLinesSkipped() {
+        return skipped;
+    }
+
+    /** @return connections established so far */
+    public long getConnectionCount() {
+        return connections;
+    }
+
+    /** @return age in milliseconds of the newest record of the last batch when it was stored */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    /** @return the largest {@link #getLagMillis()} seen so far */
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    /** @return what was read since {@link #readData} started, or {@code null} before that */
+    public IngestReport getReport() {
+        long start = startNanos;
+        return start == 0 ? null : new IngestReport(bytesRead, recordsRead, skipped, System.nanoTime() - start);
+    }
+
+    /**
+     * Connects, delivers data with {@link #append} or {@link #store} until the
+     * connection ends, and returns.
+     *
+     * @throws IOException if connecting fails or the connection breaks
+     */
+    abstract void stream() throws IOException;
+
+    /** Drops the current connection so that a blocked {@link #stream()} returns. */
+    abstract void disconnect();
+
+    /** @return the address of the feed, for log messages */
+    abstract String describe();
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /** Called by {@link #stream()} once a connection is established. */
+    void connected() {
+        backoffMillis = initialBackoffMillis;
+        connections++;
+        System.out.println("Connected to " + describe());
+    }
+
+    /**
+     * Parses the complete lines in {@code [from, to)} of {@code buffer} and stores them.
+     *
+     * @param endOfInput whether the data ends on a line boundary even without a final newline
+     * @param bytes      bytes received, for the throughput figures
+     * @return offset just past the last line parsed
+     */
+    int append(ByteBuffer buffer, int from, int to, boolean endOfInput, long bytes) {
+        long skippedBefore = parser.skipped;
+        int consumed = parser.parseLines(buffer, from, to, endOfInput);
+        skipped += parser.skipped - skippedBefore;
+        store(bytes);
+        return consumed;
+    }
+
+    /** Stores and clears {@link #batch}. */
+    void store(long bytes) {
+        bytesRead += bytes;
+        int size = batch.size();
+        if (size == 0) {
+            return;
+        }
+        long newest = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            newest = Math.max(newest, batch.timestampAt(i));
+        }
+        storage.addBatch(batch);
+        recordsRead += size;
+        long lag = System.currentTimeMillis() - newest;
+        lagMillis = lag;
+        if (lag > maxLagMillis) {
+            maxLagMillis = lag;
+        }
+        batch.clear();
+    }
+
+    /** Counts a malformed frame or message. */
+    void skip() {
+        skipped++;
+    }
+
+    /** Parses {@code patientId,timestamp,label,data} lines. */
+    private static final class CsvLineParser extends AsciiLineParser {
+
+        CsvLineParser(RecordBatch batch) {
+            super(batch);
+        }
+
+        @Override
+        boolean parseLine() {
+            long patientId = parseLong();
+            if (patientId < 0 || patientId > Integer.MAX_VALUE || !expect((byte) ',')) {
+                return false;
+            }
+            long timestamp = parseLong();
+            if (timestamp < 0 || !expect((byte) ',')) {
+                return false;
+            }
+            int labelStart = position;
+            int labelEnd = indexOf((byte) ',', labelStart, lineEnd);
+            if (labelEnd <= labelStart) {
+                return false;
+            }
+            int recordTypeId = labelId(labelStart, labelEnd);
+            position = labelEnd + 1;
+            double value = parseValue();
+            if (Double.isNaN(value)) {
+                return false;
+            }
+            batch.add((int) patientId, value, recordTypeId, timestamp);
+            return true;
+        }
+    }
+}
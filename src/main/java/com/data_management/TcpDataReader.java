@@ -0,0 +1,92 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Follows the CSV lines sent by
+ * {@link com.cardio_generator.outputs.TcpOutputStrategy} into a
+ * {@link DataStorage}; see {@link StreamingDataReader} for reconnecting and
+ * the throughput and lag figures.
+ *
+ * Lines are parsed straight from a reused direct buffer, so no String is
+ * built per record. Each socket read becomes one {@link RecordBatch}; a line
+ * cut off at the end of a read is moved to the front of the buffer and
+ * completed by the next one.
+ */
+public class TcpDataReader extends StreamingDataReader {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final String host;
+    private final int port;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private volatile SocketChannel channel;
+
+    /**
+     * Reconnects after {@value #DEFAULT_INITIAL_BACKOFF_MILLIS} ms, doubling up
+     * to {@value #DEFAULT_MAX_BACKOFF_MILLIS} ms.
+     *
+     * @param host host running the {@code TcpOutputStrategy}
+     * @param port port it listens on
+     */
+    public TcpDataReader(String host, int port) {
+        this(host, port, DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+    }
+
+    /**
+     * @param host                 host running the {@code TcpOutputStrategy}
+     * @param port                 port it listens on
+     * @param initialBackoffMillis wait before the first reconnect
+     * @param maxBackoffMillis     longest wait between reconnects
+     * @throws IllegalArgumentException if the backoff is not positive or exceeds the maximum
+     */
+    public TcpDataReader(String host, int port, long initialBackoffMillis, long maxBackoffMillis) {
+        super(initialBackoffMillis, maxBackoffMillis);
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    void stream() throws IOException {
+        try (SocketChannel socket = SocketChannel.open(new InetSocketAddress(host, port))) {
+            channel = socket;
+            if (!isRunning()) {
+                return; // closed while connecting
+            }
+            connected();
+            buffer.clear();
+            int read;
+            while ((read = socket.read(buffer)) >= 0) {
+                int end = buffer.position();
+                int consumed = append(buffer, 0, end, false, read);
+                if (consumed == 0 && end == buffer.capacity()) {
+                    throw new IOException("Line longer than " + READ_BUFFER_SIZE + " bytes");
+                }
+                buffer.limit(end).position(consumed);
+                buffer.compact();
+            }
+        } finally {
+            channel = null;
+        }
+    }
+
+    @Override
+    void disconnect() {
+        SocketChannel socket = channel;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // the blocked read fails either way
+            }
+        }
+    }
+
+    @Override
+    String describe() {
+        return host + ":" + port;
+    }
+}
@@ -0,0 +1,304 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Compressed storage for the samples of one record type of one patient, used
+ * when the record type's history is kept without a bound.
+ *
+ * New samples go to an uncompressed head chunk: two parallel primitive
+ * arrays, so an append is a pair of array stores. Once the head holds
+ * {@value #BLOCK_SIZE} samples it is sealed into an immutable
+ * {@link CompressedBlock} and a new head is started. Vital signs are regularly
+ * sampled and vary slowly, so a sealed sample takes a few bits instead of 16
+ * bytes.
+ *
+ * Samples are kept sorted by timestamp. A late sample is merged into place by
+ * re-encoding the blocks from the first one it falls into. Queries locate the
+ * blocks they overlap by their first and last timestamps and decode only those,
+ * one sample at a time; a query answered by the head alone copies nothing.
+ *
+ * Thread-safety: one writer at a time (the owning {@link Patient} serialises
+ * appends), any number of lock-free readers. The blocks and the head are held
+ * by one immutable {@link State} apart from its head size. An append writes
+ * past the head size before raising it; sealing, growing the head and merging
+ * a late sample publish a new state instead of changing the old one. A reader
+ * that reads the state once therefore always sees a consistent, sorted history.
+ */
+final class TimeSeries implements RecordSeries {
+    static final int BLOCK_SIZE = 1024;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final CompressedBlock[] NO_BLOCKS = new CompressedBlock[0];
+
+    private volatile State state = new State(NO_BLOCKS, new long[INITIAL_CAPACITY],
+            new double[INITIAL_CAPACITY], 0);
+
+    /**
+     * Adds one sample, sealing the head when it is full.
+     * Samples with equal timestamps keep their arrival order.
+     * Callers must not append concurrently.
+     *
+     * @param timestamp milliseconds since UNIX epoch
+     * @param value     the measurement value
+     */
+    @Override
+    public void append(long timestamp, double value) {
+        if (timestamp < lastTimestamp()) {
+            mergeSorted(new long[] {timestamp}, new double[] {value}, 1);
+            return;
+        }
+        State current = state;
+        int count = current.size;
+        if (count == BLOCK_SIZE) {
+            CompressedBlock sealed = CompressedBlock.encode(current.timestamps, current.values, 0, count);
+            CompressedBlock[] blocks = Arrays.copyOf(current.blocks, current.blocks.length + 1);
+            blocks[blocks.length - 1] = sealed;
+            current = new State(blocks, new long[INITIAL_CAPACITY], new double[INITIAL_CAPACITY], 0);
+            state = current;
+            count = 0;
+        } else if (count == current.timestamps.length) {
+            int capacity = Math.min(BLOCK_SIZE, count + (count >> 1));
+            current = new State(current.blocks, Arrays.copyOf(current.timestamps, capacity),
+                    Arrays.copyOf(current.values, capacity), count);
+            state = current;
+        }
+        current.timestamps[count] = timestamp;
+        current.values[count] = value;
+        current.size = count + 1;
+    }
+
+    @Override
+    public long lastTimestamp() {
+        State current = state;
+        int count = current.size;
+        if (count > 0) {
+            return current.timestamps[count - 1];
+        }
+        CompressedBlock[] blocks = current.blocks;
+        return blocks.length == 0 ? Long.MIN_VALUE : blocks[blocks.length - 1].lastTimestamp();
+    }
+
+    /**
+     * Merges a run of late samples in one pass: the blocks from the first one
+     * the run falls into are decoded, merged with the run and sealed again.
+     * Callers must not append concurrently.
+     *
+     * @param lateTimestamps timestamps of the run, sorted ascending
+     * @param lateValues     values of the run
+     * @param count          number of samples in the run
+     */
+    @Override
+    public void mergeSorted(long[] lateTimestamps, double[] lateValues, int count) {
+        if (count == 0) {
+            return;
+        }
+        State current = state;
+        CompressedBlock[] blocks = current.blocks;
+        // stored samples equal to the first late one stay in front of it, so their block can stay sealed
+        int first = firstBlockEndingAfter(blocks, lateTimestamps[0]);
+        int existing = current.size;
+        for (int b = first; b < blocks.length; b++) {
+            existing += blocks[b].count();
+        }
+        long[] storedTimestamps = new long[existing];
+        double[] storedValues = new double[existing];
+        int n = 0;
+        for (int b = first; b < blocks.length; b++) {
+            CompressedBlock.Reader reader = blocks[b].reader();
+            while (reader.next()) {
+                storedTimestamps[n] = reader.timestamp;
+                storedValues[n++] = reader.value;
+            }
+        }
+        System.arraycopy(current.timestamps, 0, storedTimestamps, n, current.size);
+        System.arraycopy(current.values, 0, storedValues, n, current.size);
+
+        int total = existing + count;
+        long[] timestamps = new long[total];
+        double[] values = new double[total];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < total; k++) {
+            // on equal timestamps the stored sample goes first: it arrived earlier
+            if (j == count || (i < existing && storedTimestamps[i] <= lateTimestamps[j])) {
+                timestamps[k] = storedTimestamps[i];
+                values[k] = storedValues[i++];
+            } else {
+                timestamps[k] = lateTimestamps[j];
+                values[k] = lateValues[j++];
+            }
+        }
+
+        int sealed = total / BLOCK_SIZE;
+        CompressedBlock[] merged = Arrays.copyOf(blocks, first + sealed);
+        for (int b = 0; b < sealed; b++) {
+            merged[first + b] = CompressedBlock.encode(timestamps, values, b * BLOCK_SIZE, BLOCK_SIZE);
+        }
+        int headSize = total - sealed * BLOCK_SIZE;
+        int capacity = Math.min(BLOCK_SIZE, Math.max(INITIAL_CAPACITY, headSize + (headSize >> 1)));
+        long[] headTimestamps = new long[capacity];
+        double[] headValues = new double[capacity];
+        System.arraycopy(timestamps, sealed * BLOCK_SIZE, headTimestamps, 0, headSize);
+        System.arraycopy(values, sealed * BLOCK_SIZE, headValues, 0, headSize);
+        state = new State(merged, headTimestamps, headValues, headSize);
+    }
+
+    @Override
+    public SeriesSnapshot window(long startTime, long endTime) {
+        State current = state;
+        int headSize = current.size;
+        int headFrom = indexAtOrAfter(current.timestamps, startTime, headSize);
+        int headTo = indexAfter(current.timestamps, endTime, headSize);
+        int headCount = Math.max(0, headTo - headFrom);
+
+        CompressedBlock[] blocks = current.blocks;
+        int firstBlock = firstBlockEndingAtOrAfter(blocks, startTime);
+        int endBlock = firstBlock;
+        int capacity = headCount;
+        while (endBlock < blocks.length && blocks[endBlock].firstTimestamp() <= endTime) {
+            capacity += blocks[endBlock++].count();
+        }
+        if (endBlock == firstBlock) {
+            return new SeriesSnapshot(current.timestamps, current.values, headFrom, headCount);
+        }
+
+        long[] timestamps = new long[capacity];
+        double[] values = new double[capacity];
+        int n = 0;
+        for (int b = firstBlock; b < endBlock; b++) {
+            CompressedBlock.Reader reader = blocks[b].reader();
+            while (reader.next() && reader.timestamp <= endTime) {
+                if (reader.timestamp >= startTime) {
+                    timestamps[n] = reader.timestamp;
+                    values[n++] = reader.value;
+                }
+            }
+        }
+        System.arraycopy(current.timestamps, headFrom, timestamps, n, headCount);
+        System.arraycopy(current.values, headFrom, values, n, headCount);
+        return new SeriesSnapshot(timestamps, values, 0, n + headCount);
+    }
+
+    @Override
+    public SeriesSnapshot latest(int count) {
+        State current = state;
+        int headSize = current.size;
+        int headCount = Math.min(Math.max(0, count), headSize);
+        int headFrom = headSize - headCount;
+        CompressedBlock[] blocks = current.blocks;
+        if (headCount == count || blocks.length == 0) {
+            return new SeriesSnapshot(current.timestamps, current.values, headFrom, headCount);
+        }
+
+        // walk back over the newest blocks until they hold enough samples
+        int needed = count - headCount;
+        int firstBlock = blocks.length;
+        int available = 0;
+        while (firstBlock > 0 && available < needed) {
+            available += blocks[--firstBlock].count();
+        }
+        int skip = Math.max(0, available - needed);
+        int total = available - skip + headCount;
+        long[] timestamps = new long[total];
+        double[] values = new double[total];
+        int n = 0;
+        for (int b = firstBlock; b < blocks.length; b++) {
+            CompressedBlock.Reader reader = blocks[b].reader();
+            while (reader.next()) {
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                timestamps[n] = reader.timestamp;
+                values[n++] = reader.value;
+            }
+        }
+        System.arraycopy(current.timestamps, headFrom, timestamps, n, headCount);
+        System.arraycopy(current.values, headFrom, values, n, headCount);
+        return new SeriesSnapshot(timestamps, values, 0, total);
+    }
+
+    @Override
+    public long sizeInBytes() {
+        State current = state;
+        long bytes = (long) current.timestamps.length * RetentionPolicy.BYTES_PER_SAMPLE;
+        for (CompressedBlock block : current.blocks) {
+            bytes += block.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    private static int firstBlockEndingAtOrAfter(CompressedBlock[] blocks, long timestamp) {
+        int low = 0;
+        int high = blocks.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (blocks[mid].lastTimestamp() < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int firstBlockEndingAfter(CompressedBlock[] blocks, long timestamp) {
+        int low = 0;
+        int high = blocks.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (blocks[mid].lastTimestamp() <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int indexAtOrAfter(long[] timestamps, long timestamp, int size) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int indexAfter(long[] timestamps, long timestamp, int size) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The sealed blocks and the head chunk. Replaced as a unit; only the head
+     * slots at and past {@code size} are written while it is published.
+     */
+    private static final class State {
+        final CompressedBlock[] blocks;
+        final long[] timestamps;
+        final double[] values;
+        volatile int size;
+
+        State(CompressedBlock[] blocks, long[] timestamps, double[] values, int size) {
+            this.blocks = blocks;
+            this.timestamps = timestamps;
+            this.values = values;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.data_management;
+
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Follows the frames sent by
+ * {@link com.cardio_generator.outputs.WebSocketOutputStrategy} into a
+ * {@link DataStorage}; see {@link StreamingDataReader} for reconnecting and
+ * the throughput and lag figures.
+ *
+ * Text frames are parsed line by line from their bytes, binary frames are
+ * decoded in the layout described on {@code WebSocketOutputStrategy}. Each
+ * frame becomes one {@link RecordBatch}. A subscription, if given, is sent
+ * again on every connection.
+ */
+public class WebSocketDataReader extends StreamingDataReader {
+
+    private final URI uri;
+    private final String subscription;
+    private volatile FeedClient client;
+
+    /**
+     * Receives every sample and reconnects after
+     * {@value #DEFAULT_INITIAL_BACKOFF_MILLIS} ms, doubling up to
+     * {@value #DEFAULT_MAX_BACKOFF_MILLIS} ms.
+     *
+     * @param uri address of the server, e.g. {@code ws://localhost:8080}
+     */
+    public WebSocketDataReader(URI uri) {
+        this(uri, null, DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+    }
+
+    /**
+     * @param uri                  address of the server, e.g. {@code ws://localhost:8080}
+     * @param subscription         message sent after connecting, e.g.
+     *                             {@code subscribe patients=1,2}, or {@code null} for everything
+     * @param initialBackoffMillis wait before the first reconnect
+     * @param maxBackoffMillis     longest wait between reconnects
+     * @throws IllegalArgumentException if the backoff is not positive or exceeds the maximum
+     */
+    public WebSocketDataReader(URI uri, String subscription, long initialBackoffMillis, long maxBackoffMillis) {
+        super(initialBackoffMillis, maxBackoffMillis);
+        this.uri = uri;
+        this.subscription = subscription;
+    }
+
+    @Override
+    void stream() throws IOException {
+        FeedClient feed = new FeedClient(uri);
+        client = feed;
+        try {
+            if (!isRunning()) {
+                return; // closed before connecting
+            }
+            if (!feed.connectBlocking()) {
+                throw new IOException("Could not connect");
+            }
+            connected();
+            feed.closed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            feed.close();
+            throw new InterruptedIOException("Interrupted while streaming");
+        } finally {
+            client = null;
+        }
+    }
+
+    @Override
+    void disconnect() {
+        FeedClient feed = client;
+        if (feed != null) {
+            feed.close();
+        }
+    }
+
+    @Override
+    String describe() {
+        return uri.toString();
+    }
+
+    /** Decodes one binary frame; a frame that ends early is skipped whole. */
+    private void decode(ByteBuffer frame) {
+        int bytes = frame.remaining();
+        try {
+            int[] typeIds = new int[frame.getShort() & 0xFFFF];
+            for (int i = 0; i < typeIds.length; i++) {
+                byte[] label = new byte[frame.getShort() & 0xFFFF];
+                frame.get(label);
+                typeIds[i] = RecordTypes.idOf(new String(label, StandardCharsets.UTF_8));
+            }
+            int recordCount = frame.getInt();
+            for (int i = 0; i < recordCount; i++) {
+                int patientId = frame.getInt();
+                long timestamp = frame.getLong();
+                int typeId = typeIds[frame.getShort() & 0xFFFF];
+                batch.add(patientId, frame.getDouble(), typeId, timestamp);
+            }
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            batch.clear();
+            skip();
+        }
+        store(bytes);
+    }
+
+    /** One connection; its callbacks run on the client's own thread, one at a time. */
+    private final class FeedClient extends WebSocketClient {
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        FeedClient(URI uri) {
+            super(uri);
+        }
+
+        @Override
+        public void onOpen(ServerHandshake handshake) {
+            if (subscription != null) {
+                send(subscription);
+            }
+        }
+
+        @Override
+        public void onMessage(String message) {
+            // a text frame holds whole lines
+            byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+            append(ByteBuffer.wrap(bytes), 0, bytes.length, true, bytes.length);
+        }
+
+        @Override
+        public void onMessage(ByteBuffer frame) {
+            decode(frame);
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+            closed.countDown();
+        }
+
+        @Override
+        public void onError(Exception ex) {
+            System.out.println(describe() + ": " + ex.getMessage());
+        }
+    }
+}
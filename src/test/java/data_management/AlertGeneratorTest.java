@@ -4,6 +4,11 @@ import com.alerts.AlertGenerator;
 import com.alerts.Alert;
 
 import com.data_management.*;
+import com.alerts.EvaluationReport;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 
@@ -85,4 +90,101 @@ class AlertGeneratorTest {
         assertTrue(ag.getAlerts().stream()
                      .anyMatch(a -> a.getCondition().contains("Hypotensive-Hypoxemia")));
     }
+
+    /* ------- incremental: alerts fire on ingestion ------- */
+    @Test
+    void alertsFireAsRecordsAreStored() {
+        DataStorage s = new DataStorage();
+        AlertGenerator ag = AlertGenerator.attach(s);   // listening before any data arrives
+
+        add(s, 6, 98, "Saturation", 1);
+        assertTrue(ag.getAlerts().isEmpty());
+
+        add(s, 6, 92, "Saturation", 2);              // drop of 6 → no evaluateData call needed
+        assertTrue(ag.getAlerts().stream()
+                     .anyMatch(a -> a.getCondition().contains("Rapid SpO₂ Drop")));
+    }
+
+    /* ------- late readings are ordered by timestamp ------ */
+    @Test
+    void lateReadingIsPlacedByTimestamp() {
+        DataStorage s = new DataStorage();
+        AlertGenerator ag = AlertGenerator.attach(s);
+
+        add(s, 7, 120, "SystolicPressure", 1);
+        add(s, 7, 142, "SystolicPressure", 3);
+        add(s, 7, 131, "SystolicPressure", 2);       // arrives last, belongs in the middle
+
+        assertTrue(ag.getAlerts().stream()
+                     .anyMatch(a -> a.getCondition().contains("Trend")));
+    }
+
+    /* ------- de-duplication: window and clearing -------- */
+    @Test
+    void holdingConditionIsSuppressedUntilWindowPasses() {
+        DataStorage s = new DataStorage();
+        AtomicLong now = new AtomicLong(1_000);
+        AlertGenerator ag = AlertGenerator.attach(s, 60_000, 100, now::get);
+
+        add(s, 8, 90, "Saturation", 1);
+        add(s, 8, 89, "Saturation", 2);              // still low, inside the window
+        assertEquals(1, ag.getAlerts().size());
+
+        now.addAndGet(60_000);
+        add(s, 8, 90, "Saturation", 3);              // still low, window has passed
+        assertEquals(2, ag.getAlerts().size());
+    }
+
+    @Test
+    void clearedConditionFiresAgain() {
+        DataStorage s = new DataStorage();
+        AlertGenerator ag = AlertGenerator.attach(s, 60_000, 100, () -> 1_000);
+
+        add(s, 9, 90, "Saturation", 1);              // low
+        add(s, 9, 96, "Saturation", 2);              // cleared
+        add(s, 9, 96, "Saturation", 3);              // keeps the drop rule quiet
+        add(s, 9, 90, "Saturation", 4);              // low again, same instant
+
+        assertEquals(2, ag.getAlerts(9, 0, Long.MAX_VALUE).stream()
+                     .filter(a -> a.getCondition().startsWith("Low SpO₂")).count());
+    }
+
+    @Test
+    void historyIsBounded() {
+        DataStorage s = new DataStorage();
+        AlertGenerator ag = AlertGenerator.attach(s, 60_000, 3, () -> 1_000);
+
+        for (int id = 100; id < 110; id++) {
+            add(s, id, 90, "Saturation", 1);
+        }
+
+        assertEquals(3, ag.getAlerts().size());
+        assertEquals("109", ag.getAlerts().get(2).getPatientId());
+        assertTrue(ag.getAlerts(100, 0, Long.MAX_VALUE).isEmpty());
+    }
+
+    /* ------- parallel cohort-wide evaluation ------------ */
+    @Test
+    void evaluateAllIsParallelAndDeterministic() throws InterruptedException {
+        DataStorage s = new DataStorage();
+        for (int id = 1; id <= 500; id++) {
+            add(s, id, id % 3 == 0 ? 90 : 97, "Saturation", 1);   // every third patient is low
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        AlertGenerator first = AlertGenerator.attach(s);
+        AlertGenerator second = AlertGenerator.attach(s);
+        EvaluationReport report = first.evaluateAll(s.getAllPatients(), pool);
+        second.evaluateAll(s.getAllPatients(), pool);
+        pool.shutdown();
+
+        assertEquals(500, report.getPatientCount());
+        assertEquals(166, report.getAlertCount());
+        List<Alert> alerts = first.getAlerts();
+        assertEquals(166, alerts.size());
+        for (int i = 0; i < alerts.size(); i++) {
+            assertEquals(Integer.toString(3 * (i + 1)), alerts.get(i).getPatientId());
+            assertEquals(alerts.get(i).getPatientId(), second.getAlerts().get(i).getPatientId());
+        }
+    }
 }
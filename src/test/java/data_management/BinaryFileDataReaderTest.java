@@ -0,0 +1,154 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.outputs.BinaryFileOutputStrategy;
+import com.cardio_generator.outputs.FileOutputStrategy;
+import com.cardio_generator.outputs.SegmentIndex;
+import com.data_management.BinaryFileDataReader;
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+class BinaryFileDataReaderTest {
+
+    @Test
+    void readsWhatBinaryFileOutputStrategyWrote() throws IOException {
+        Path dir = Files.createTempDirectory("binfile");
+        BinaryFileOutputStrategy output = new BinaryFileOutputStrategy(dir.toString());
+        output.output(1, 2000L, "Saturation", Double.toString(93.0) + "%");
+        output.output(1, 1000L, "Saturation", Double.toString(97.0) + "%");
+        output.output(1, 1500L, "ECG", Double.toString(-0.2857481008684907));
+        output.output(2, 1000L, "Alert", "triggered");
+        output.output(2, 3000L, "WhiteBloodCells", Double.toString(1.0E-4));
+        output.output(2, 4000L, "Alert", "not a number");
+        output.close();
+
+        assertEquals(1, output.getDroppedCount());
+        DataStorage storage = new DataStorage();
+        BinaryFileDataReader reader = new BinaryFileDataReader(dir.toString());
+        reader.readData(storage);
+
+        assertEquals(5, reader.getRecordsRead());
+        List<PatientRecord> first = storage.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(3, first.size());
+        assertEquals(97.0, first.get(0).getMeasurementValue());
+        assertEquals("ECG", first.get(1).getRecordType());
+        // doubles are stored bit for bit
+        assertEquals(-0.2857481008684907, first.get(1).getMeasurementValue());
+        assertEquals(93.0, first.get(2).getMeasurementValue());
+
+        List<PatientRecord> second = storage.getRecords(2, 0, Long.MAX_VALUE);
+        assertEquals("Alert", second.get(0).getRecordType());
+        assertEquals(1.0, second.get(0).getMeasurementValue());
+        assertEquals(1.0E-4, second.get(1).getMeasurementValue());
+    }
+
+    @Test
+    void blocksSealedByFlushesAppendAndATruncatedTailIsIgnored() throws Exception {
+        Path dir = Files.createTempDirectory("binfile");
+        BinaryFileOutputStrategy output = new BinaryFileOutputStrategy(dir.toString(), 1,
+                FileOutputStrategy.SyncPolicy.NEVER);
+        for (int i = 0; i < 100; i++) {
+            output.output(i % 3, 1_000_000L - i * 7L, "ECG", Double.toString(i));
+            if (i % 25 == 0) {
+                Thread.sleep(5); // let a flush seal the block
+            }
+        }
+        output.close();
+        // a second run appends to the same file
+        BinaryFileOutputStrategy again = new BinaryFileOutputStrategy(dir.toString());
+        again.output(7, 42L, "Cholesterol", "180.5");
+        again.close();
+
+        Path file = dir.resolve(BinaryFileOutputStrategy.FILE_NAME);
+        long complete = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(java.nio.ByteBuffer.wrap(new byte[] {0, 0, 1, 0, 0, 0, 0, 5}));
+        }
+
+        DataStorage storage = new DataStorage();
+        BinaryFileDataReader reader = new BinaryFileDataReader(dir.toString());
+        reader.readData(storage);
+
+        assertEquals(101, reader.getRecordsRead());
+        assertEquals(1, reader.getTruncatedBlocks());
+        assertEquals(34, storage.getRecords(0, 0, Long.MAX_VALUE).size());
+        assertEquals(180.5, storage.getRecords(7, 42, 42).get(0).getMeasurementValue());
+        assertTrue(complete < 101 * 20, "records should take well under 20 bytes: " + complete);
+    }
+
+    @Test
+    void rangeQueriesReadOnlyIndexedBlocksThatMatch() throws Exception {
+        Path dir = Files.createTempDirectory("binfile-segments");
+        // one block per hour of data, rolled into a new segment once a segment reaches 4 KB
+        long hour = 3_600_000L;
+        BinaryFileOutputStrategy output = new BinaryFileOutputStrategy(dir.toString(), 1,
+                FileOutputStrategy.SyncPolicy.NEVER, 0, 4096, hour, BinaryFileOutputStrategy.DEFAULT_BLOCK_RECORDS);
+        int hours = 48;
+        for (int h = 0; h < hours; h++) {
+            for (int patientId = 1; patientId <= 50; patientId++) {
+                for (int i = 0; i < 10; i++) {
+                    output.output(patientId, h * hour + i * 1000L, "ECG", Double.toString(h + i / 10.0));
+                }
+            }
+        }
+        output.close();
+
+        BinaryFileDataReader reader = new BinaryFileDataReader(dir.toString());
+        DataStorage all = new DataStorage();
+        reader.readData(all);
+        assertEquals(hours * 50 * 10, reader.getRecordsRead());
+        long totalBytes = reader.getLastReport().getBytes();
+
+        DataStorage storage = new DataStorage();
+        reader.readRange(storage, 42, (hours - 1) * hour, hours * hour);
+        List<PatientRecord> lastHour = storage.getRecords(42, 0, Long.MAX_VALUE);
+        assertEquals(10, lastHour.size());
+        assertEquals(hours - 1.0, lastHour.get(0).getMeasurementValue());
+        assertTrue(storage.getRecords(41, 0, Long.MAX_VALUE).isEmpty());
+        assertTrue(reader.getLastReport().getBytes() * 20 < totalBytes,
+                reader.getLastReport().getBytes() + " of " + totalBytes + " bytes read");
+    }
+
+    @Test
+    void largePatientIdsAreStoredButNotIndexed() throws Exception {
+        Path dir = Files.createTempDirectory("binfile-segments");
+        long hour = 3_600_000L;
+        BinaryFileOutputStrategy output = new BinaryFileOutputStrategy(dir.toString(), 1,
+                FileOutputStrategy.SyncPolicy.NEVER, 0, 1, hour, BinaryFileOutputStrategy.DEFAULT_BLOCK_RECORDS);
+        int large = 2_000_000_000;
+        output.output(7, 0L, "ECG", "1.0");                // hour 0: indexed patients only
+        output.output(large, hour, "ECG", "2.0");          // hour 1: an ID the bit sets do not reach
+        output.output(8, hour + 1, "ECG", "3.0");
+        output.close();
+
+        BinaryFileDataReader reader = new BinaryFileDataReader(dir.toString());
+        DataStorage storage = new DataStorage();
+        reader.readRange(storage, large, 0L, Long.MAX_VALUE);
+        List<PatientRecord> records = storage.getRecords(large, 0, Long.MAX_VALUE);
+        assertEquals(1, records.size());
+        assertEquals(2.0, records.get(0).getMeasurementValue());
+
+        DataStorage other = new DataStorage();
+        reader.readRange(other, 8, 0L, Long.MAX_VALUE);
+        assertEquals(3.0, other.getRecords(8, 0, Long.MAX_VALUE).get(0).getMeasurementValue());
+
+        // the segment with the large ID may hold anyone; the other one is still skipped by patient
+        SegmentIndex first = SegmentIndex.read(
+                BinaryFileOutputStrategy.indexFor(dir.resolve(BinaryFileOutputStrategy.segmentFileName(1))));
+        SegmentIndex second = SegmentIndex.read(
+                BinaryFileOutputStrategy.indexFor(dir.resolve(BinaryFileOutputStrategy.segmentFileName(2))));
+        assertTrue(first.mayContain(7));
+        assertFalse(first.mayContain(8));
+        assertTrue(second.mayContain(large));
+        assertTrue(second.getBlocks().get(0).mayContain(12_345));
+    }
+}
@@ -0,0 +1,97 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.Patient;
+import com.data_management.PatientRecord;
+import com.data_management.RecordTypes;
+import com.data_management.RetentionPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+class CompressedStorageTest {
+
+    @Test
+    void regularSlowlyVaryingSignalsTakeATenthOfTheRawSize() {
+        Patient patient = new Patient(1, RetentionPolicy.unbounded().withRollups(0)); // samples only
+        SplittableRandom random = new SplittableRandom(42);
+        int samples = 100_000;
+        long timestamp = 1_700_000_000_000L;
+        double saturation = 97;
+        for (int i = 0; i < samples; i++) {
+            timestamp += 1_000 + random.nextInt(-3, 4); // 1 Hz with scheduling jitter
+            if (random.nextInt(20) == 0) {
+                saturation = Math.max(90, Math.min(100, saturation + random.nextInt(-1, 2)));
+            }
+            patient.addRecord(saturation, "Saturation", timestamp);
+        }
+
+        assertTrue(patient.getStoredBytes() * 10 < samples * 16L, patient.getStoredBytes() + " bytes");
+        assertEquals(samples, patient.getRecords(0L, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void everySampleIsDecodedExactly() {
+        Patient patient = new Patient(2);
+        List<long[]> expected = new ArrayList<>(); // {timestamp, value bits}
+        SplittableRandom random = new SplittableRandom(7);
+        double[] specials = {Double.NaN, -0.0, 0.0, Double.POSITIVE_INFINITY, Double.MIN_VALUE, -1e300};
+        long timestamp = 0;
+        for (int i = 0; i < 5_000; i++) {
+            // steady rate, jitter, repeated timestamps and huge gaps
+            int kind = random.nextInt(10);
+            timestamp += kind == 0 ? 0 : kind == 1 ? random.nextLong(1L << 40) : 4 + random.nextInt(kind * 300);
+            double value = i % 97 == 0 ? specials[i % specials.length] : random.nextDouble() * 1_000;
+            patient.addRecord(value, "ECG", timestamp);
+            expected.add(new long[] {timestamp, Double.doubleToRawLongBits(value)});
+        }
+
+        List<PatientRecord> records = patient.getRecords(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(expected.size(), records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(expected.get(i)[0], records.get(i).getTimestamp());
+            assertEquals(expected.get(i)[1], Double.doubleToRawLongBits(records.get(i).getMeasurementValue()));
+        }
+
+        // a window starting and ending inside sealed blocks
+        long start = expected.get(1_500)[0];
+        long end = expected.get(3_200)[0];
+        List<PatientRecord> window = patient.getRecords(start, end);
+        assertEquals(start, window.get(0).getTimestamp());
+        assertEquals(end, window.get(window.size() - 1).getTimestamp());
+        assertEquals(expected.stream().filter(e -> e[0] >= start && e[0] <= end).count(), window.size());
+
+        // the newest samples span the head and the last sealed blocks
+        List<PatientRecord> latest = patient.getLatestRecords(RecordTypes.ECG, 2_000);
+        assertEquals(2_000, latest.size());
+        assertEquals(expected.get(3_000)[0], latest.get(0).getTimestamp());
+        assertEquals(expected.get(4_999)[0], latest.get(1_999).getTimestamp());
+    }
+
+    @Test
+    void lateSamplesAreMergedIntoSealedBlocks() {
+        Patient patient = new Patient(3);
+        for (int i = 0; i < 3_000; i++) {
+            patient.addRecord(i, "Saturation", i * 10L);
+        }
+        patient.addRecord(-1, "Saturation", 15L);     // into the first block
+        patient.addRecord(-2, "Saturation", 10_000L); // equal to a sealed sample: goes after it
+        patient.addRecord(-3, "Saturation", -5L);     // before everything
+
+        List<PatientRecord> records = patient.getRecords(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(3_003, records.size());
+        long previous = Long.MIN_VALUE;
+        for (PatientRecord record : records) {
+            assertTrue(record.getTimestamp() >= previous, "sorted");
+            previous = record.getTimestamp();
+        }
+        assertEquals(-3.0, records.get(0).getMeasurementValue());
+        assertEquals(-1.0, records.get(3).getMeasurementValue());
+        assertEquals(1_000.0, records.get(1_002).getMeasurementValue());
+        assertEquals(-2.0, records.get(1_003).getMeasurementValue());
+        assertEquals(2_999.0, patient.getLatestRecords(RecordTypes.SATURATION, 1).get(0).getMeasurementValue());
+    }
+}
@@ -8,7 +8,11 @@ import com.data_management.PatientRecord;
 import com.data_management.DataReader;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 class DataStorageTest {
 
@@ -24,4 +28,71 @@ class DataStorageTest {
         assertEquals(2, records.size()); // Check if two records are retrieved
         assertEquals(100.0, records.get(0).getMeasurementValue()); // Validate first record
     }
+
+    @Test
+    void concurrentWritersLoseNothingWhileReadersQuery() throws InterruptedException {
+        final int writers = 8;
+        final int patients = 16;
+        final int recordsPerWriter = 20_000;
+        DataStorage storage = new DataStorage();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // every writer spreads its records over all patients, so patients see contended appends
+        List<Thread> writerThreads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            final int writer = w;
+            writerThreads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < recordsPerWriter; i++) {
+                        int patientId = 1 + (i % patients);
+                        String type = (i & 1) == 0 ? "ECG" : "Saturation";
+                        // mostly increasing timestamps with some late arrivals
+                        long timestamp = i % 97 == 0 ? i / 2 : i;
+                        storage.addPatientData(patientId, writer, type, timestamp);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }));
+        }
+
+        // readers check that every snapshot they see is sorted and well-formed
+        Thread reader = new Thread(() -> {
+            try {
+                start.await();
+                while (writing.get()) {
+                    for (int patientId = 1; patientId <= patients; patientId++) {
+                        List<PatientRecord> records = storage.getRecords(patientId, 0, Long.MAX_VALUE);
+                        for (int i = 1; i < records.size(); i++) {
+                            if (records.get(i).getTimestamp() < records.get(i - 1).getTimestamp()) {
+                                throw new AssertionError("records out of order for patient " + patientId);
+                            }
+                        }
+                    }
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        });
+
+        writerThreads.forEach(Thread::start);
+        reader.start();
+        start.countDown();
+        for (Thread thread : writerThreads) {
+            thread.join();
+        }
+        writing.set(false);
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(patients, storage.getAllPatients().size());
+        int total = 0;
+        for (int patientId = 1; patientId <= patients; patientId++) {
+            total += storage.getRecords(patientId, 0, Long.MAX_VALUE).size();
+        }
+        assertEquals(writers * recordsPerWriter, total);
+    }
 }
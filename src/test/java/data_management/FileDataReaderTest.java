@@ -0,0 +1,234 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.outputs.FileOutputStrategy;
+import com.cardio_generator.outputs.Label;
+import com.data_management.DataStorage;
+import com.data_management.FileDataReader;
+import com.data_management.PatientRecord;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+class FileDataReaderTest {
+
+    @Test
+    void readsWhatFileOutputStrategyWrote() throws IOException {
+        Path dir = Files.createTempDirectory("file-reader");
+        FileOutputStrategy output = new FileOutputStrategy(dir.toString());
+        output.output(1, 1000L, "Saturation", Double.toString(97.0) + "%");
+        output.output(1, 2000L, "Saturation", Double.toString(93.0) + "%");
+        output.output(1, 1500L, "ECG", Double.toString(-0.2857481008684907));
+        output.output(2, 1000L, "Alert", "triggered");
+        output.output(2, 3000L, "WhiteBloodCells", Double.toString(1.0E-4));
+        output.close();
+
+        DataStorage storage = new DataStorage();
+        FileDataReader reader = new FileDataReader(dir.toString());
+        reader.readData(storage);
+
+        assertEquals(5, reader.getRecordsRead());
+        assertEquals(0, reader.getLinesSkipped());
+        List<PatientRecord> first = storage.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(3, first.size());
+        assertEquals(97.0, first.get(0).getMeasurementValue());
+        assertEquals("ECG", first.get(1).getRecordType());
+        assertEquals(-0.2857481008684907, first.get(1).getMeasurementValue());
+        assertEquals(93.0, first.get(2).getMeasurementValue());
+
+        List<PatientRecord> second = storage.getRecords(2, 0, Long.MAX_VALUE);
+        assertEquals(1.0, second.get(0).getMeasurementValue());
+        assertEquals(1.0E-4, second.get(1).getMeasurementValue());
+    }
+
+    @Test
+    void everyDoubleReadsBackExactly() throws IOException {
+        Path dir = Files.createTempDirectory("file-reader");
+        SplittableRandom random = new SplittableRandom(11);
+        double[] values = new double[50_000];
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            // 17-digit values, huge and tiny exponents, subnormals and long integers
+            switch (i % 4) {
+                case 0 -> values[i] = random.nextDouble() - 0.5;
+                case 1 -> values[i] = Double.longBitsToDouble(random.nextLong() & Long.MAX_VALUE);
+                case 2 -> values[i] = Double.longBitsToDouble(random.nextLong(1L << 52));
+                default -> values[i] = (double) random.nextLong();
+            }
+            if (!Double.isFinite(values[i])) {
+                values[i] = 0.5;
+            }
+            text.append("Patient ID: 1, Timestamp: ").append(i).append(", Label: ECG, Data: ")
+                    .append(values[i]).append('\n');
+        }
+        text.append("Patient ID: 1, Timestamp: 50000, Label: ECG, Data: 12345678901234567890123.5e-3\n");
+        Files.writeString(dir.resolve("ECG.txt"), text);
+
+        DataStorage storage = new DataStorage();
+        new FileDataReader(dir.toString()).readData(storage);
+
+        List<PatientRecord> records = storage.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(values.length + 1, records.size());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(Double.doubleToRawLongBits(values[i]),
+                    Double.doubleToRawLongBits(records.get(i).getMeasurementValue()), Double.toString(values[i]));
+        }
+        assertEquals(Double.parseDouble("12345678901234567890123.5e-3"),
+                records.get(values.length).getMeasurementValue());
+    }
+
+    @Test
+    void unformattedSamplesReadBackAsTheirValues() throws IOException {
+        Path dir = Files.createTempDirectory("file-reader");
+        FileOutputStrategy output = new FileOutputStrategy(dir.toString());
+        output.output(1, 1000L, Label.SATURATION, 97);
+        output.output(1, 1500L, Label.ECG, -0.2857481008684907);
+        output.output(1, 2000L, Label.ECG, 1.0E-4);
+        output.output(1, 2500L, Label.ECG, 123456789.0);
+        output.output(2, 1000L, Label.ALERT, 1);
+        output.output(2, 2000L, Label.ALERT, 0);
+        output.close();
+
+        assertEquals("Patient ID: 1, Timestamp: 1000, Label: Saturation, Data: 97.0%" + System.lineSeparator(),
+                Files.readString(dir.resolve("Saturation.txt")));
+        assertTrue(Files.readString(dir.resolve("Alert.txt")).contains("Data: triggered"));
+
+        DataStorage storage = new DataStorage();
+        FileDataReader reader = new FileDataReader(dir.toString());
+        reader.readData(storage);
+
+        assertEquals(6, reader.getRecordsRead());
+        List<PatientRecord> first = storage.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(97.0, first.get(0).getMeasurementValue());
+        assertEquals(-0.2857481008684907, first.get(1).getMeasurementValue());
+        assertEquals(1.0E-4, first.get(2).getMeasurementValue());
+        assertEquals(123456789.0, first.get(3).getMeasurementValue());
+        List<PatientRecord> second = storage.getRecords(2, 0, Long.MAX_VALUE);
+        assertEquals(1.0, second.get(0).getMeasurementValue());
+        assertEquals(0.0, second.get(1).getMeasurementValue());
+    }
+
+    @Test
+    void formattedDoublesRoundTripExactly() throws IOException {
+        Path dir = Files.createTempDirectory("file-reader");
+        FileOutputStrategy output = new FileOutputStrategy(dir.toString());
+        SplittableRandom random = new SplittableRandom(19);
+        double[] values = new double[200_000];
+        for (int i = 0; i < values.length; i++) {
+            // plain decimals of every magnitude, the text fallback outside them and powers of two
+            switch (i % 4) {
+                case 0 -> values[i] = random.nextDouble() - 0.5;
+                case 1 -> values[i] = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(-8, 17));
+                case 2 -> values[i] = Math.scalb(1.0, random.nextInt(-30, 60));
+                default -> values[i] = Double.longBitsToDouble(random.nextLong() & Long.MAX_VALUE);
+            }
+            if (!Double.isFinite(values[i])) {
+                values[i] = 1.5;
+            }
+            output.output(1, i, Label.ECG, values[i]);
+        }
+        output.output(1, values.length, Label.ECG, -0.45873841981085195);
+        output.close();
+
+        DataStorage storage = new DataStorage();
+        new FileDataReader(dir.toString()).readData(storage);
+
+        List<PatientRecord> records = storage.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(values.length + 1, records.size());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(Double.doubleToRawLongBits(values[i]),
+                    Double.doubleToRawLongBits(records.get(i).getMeasurementValue()), Double.toString(values[i]));
+        }
+        assertTrue(Files.readString(dir.resolve("ECG.txt")).contains("Data: -0.45873841981085195"));
+    }
+
+    @Test
+    void malformedLinesAreSkipped() throws IOException {
+        Path dir = Files.createTempDirectory("file-reader");
+        Files.write(dir.resolve("ECG.txt"), ("Patient ID: 3, Timestamp: 10, Label: ECG, Data: 0.5\r\n"
+                + "garbage\n"
+                + "Patient ID: 3, Timestamp: 11, Label: ECG, Data: n/a\n"
+                + "Patient ID: 3, Timestamp: 12, Label: ECG, Data: 0.25").getBytes(StandardCharsets.US_ASCII));
+
+        DataStorage storage = new DataStorage();
+        FileDataReader reader = new FileDataReader(dir.toString());
+        reader.readData(storage);
+
+        assertEquals(2, reader.getRecordsRead());
+        assertEquals(2, reader.getLinesSkipped());
+        assertEquals(0.25, storage.getRecords(3, 12, 12).get(0).getMeasurementValue());
+    }
+
+    @Test
+    void smallChunksAcrossFilesKeepEveryRecordInOrder() throws IOException {
+        Path dir = Files.createTempDirectory("file-reader");
+        FileOutputStrategy output = new FileOutputStrategy(dir.toString());
+        for (int i = 0; i < 500; i++) {
+            output.output(i % 7, 10_000L + i, "ECG", Double.toString(i * 0.001));
+            output.output(i % 7, 10_000L + i, "Saturation", Double.toString(90.0 + i % 10) + "%");
+        }
+        // a late reading for patient 0 in a later chunk
+        output.output(0, 5L, "ECG", Double.toString(1.5));
+        output.close();
+
+        DataStorage storage = new DataStorage();
+        FileDataReader reader = new FileDataReader(dir.toString(), 3, 200);
+        reader.readData(storage);
+
+        assertEquals(1001, reader.getRecordsRead());
+        assertEquals(1001, reader.getLastReport().getRecords());
+        assertEquals(0, reader.getLastReport().getLinesSkipped());
+        int total = 0;
+        for (int patientId = 0; patientId < 7; patientId++) {
+            List<PatientRecord> records = storage.getRecords(patientId, 0, Long.MAX_VALUE);
+            for (int i = 1; i < records.size(); i++) {
+                assertTrue(records.get(i - 1).getTimestamp() <= records.get(i).getTimestamp());
+            }
+            total += records.size();
+        }
+        assertEquals(1001, total);
+        assertEquals(1.5, storage.getRecords(0, 5, 5).get(0).getMeasurementValue());
+    }
+
+    @Test
+    void concurrentWritersLoseNothingOnClose() throws Exception {
+        Path dir = Files.createTempDirectory("file-output");
+        FileOutputStrategy output = new FileOutputStrategy(dir.toString(), 5,
+                FileOutputStrategy.SyncPolicy.NEVER);
+        int writers = 4;
+        int perWriter = 50_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int patientId = w + 1;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    output.output(patientId, i, i % 2 == 0 ? "ECG" : "Saturation", Integer.toString(i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        output.close();
+        output.output(1, 0, "ECG", "dropped after close");
+
+        DataStorage storage = new DataStorage();
+        FileDataReader reader = new FileDataReader(dir.toString());
+        reader.readData(storage);
+
+        assertEquals(writers * perWriter, reader.getRecordsRead());
+        assertEquals(0, reader.getLinesSkipped());
+        List<PatientRecord> records = storage.getRecords(3, 0, Long.MAX_VALUE);
+        assertEquals(perWriter, records.size());
+        assertEquals(perWriter - 1, records.get(perWriter - 1).getMeasurementValue());
+    }
+}
@@ -0,0 +1,97 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.generators.BloodLevelsDataGenerator;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.Label;
+import com.cardio_generator.outputs.SampleBatch;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongFunction;
+
+class PatientDataGeneratorTest {
+
+    private static final int PATIENTS = 200;
+    private static final int[] ALL = new int[PATIENTS];
+
+    static {
+        for (int i = 0; i < PATIENTS; i++) {
+            ALL[i] = i + 1;
+        }
+    }
+
+    @Test
+    void sameSeedRepeatsEveryPatientWhateverTheSlicing() {
+        for (LongFunction<PatientDataGenerator> generator : generators()) {
+            // one slice per tick
+            Map<Integer, String> whole = new TreeMap<>();
+            PatientDataGenerator first = generator.apply(7);
+            for (int tick = 0; tick < 3; tick++) {
+                collect(first, 0, PATIENTS, whole);
+            }
+
+            // the same ticks as two slices in reverse order
+            Map<Integer, String> sliced = new TreeMap<>();
+            PatientDataGenerator second = generator.apply(7);
+            for (int tick = 0; tick < 3; tick++) {
+                collect(second, 150, PATIENTS, sliced);
+                collect(second, 0, 150, sliced);
+            }
+            assertEquals(whole, sliced);
+
+            Map<Integer, String> other = new TreeMap<>();
+            collect(generator.apply(8), 0, PATIENTS, other);
+            assertFalse(whole.get(1).startsWith(other.get(1)));
+        }
+    }
+
+    @Test
+    void waveformModeEmitsOneSecondBlocksOfBeats() {
+        ECGDataGenerator ecg = new ECGDataGenerator(PATIENTS, 3, 250);
+        SampleBatch batch = new SampleBatch();
+        int beats = 0;
+        boolean inPeak = false;
+        for (int second = 0; second < 10; second++) {
+            batch.clear();
+            ecg.generate(ALL, 0, 2, batch);
+            assertEquals(2 * 250, batch.size());
+            assertEquals(1, batch.patientIdAt(0));
+            assertEquals(2, batch.patientIdAt(250));
+            assertEquals(Label.ECG, batch.labelAt(249));
+            assertEquals(batch.timestampAt(0) + 249 * 4, batch.timestampAt(249));
+            assertEquals(batch.timestampAt(249), batch.timestampAt(499));
+            for (int i = 0; i < 250; i++) {
+                double value = batch.valueAt(i);
+                assertTrue(value > -0.5 && value < 1.5, "millivolts: " + value);
+                if (!inPeak && value > 0.8) {
+                    beats++; // an R peak
+                }
+                inPeak = value > 0.8;
+            }
+        }
+        // a resting heart rate between 50 and 110 bpm
+        assertTrue(beats >= 7 && beats <= 20, "beats in 10 s: " + beats);
+        assertThrows(IllegalArgumentException.class, () -> new ECGDataGenerator(PATIENTS, 3, 300));
+    }
+
+    private static List<LongFunction<PatientDataGenerator>> generators() {
+        return List.of(
+            seed -> new BloodPressureDataGenerator(PATIENTS, seed),
+            seed -> new BloodLevelsDataGenerator(PATIENTS, seed));
+    }
+
+    /** Appends the values of one tick to each patient's history. */
+    private static void collect(PatientDataGenerator generator, int from, int to, Map<Integer, String> values) {
+        SampleBatch batch = new SampleBatch();
+        generator.generate(ALL, from, to, batch);
+        for (int i = 0; i < batch.size(); i++) {
+            values.merge(batch.patientIdAt(i), batch.labelAt(i) + "=" + batch.valueAt(i) + ";", String::concat);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.Patient;
+import com.data_management.PatientRecord;
+import com.data_management.RecordTypes;
+
+import java.util.List;
+
+class PatientTest {
+
+    @Test
+    void recordsOfAllTypesAreReturnedInTimeOrder() {
+        Patient patient = new Patient(7);
+        patient.addRecord(120.0, "SystolicPressure", 30L);
+        patient.addRecord(97.0, "Saturation", 10L);
+        patient.addRecord(80.0, "DiastolicPressure", 20L);
+
+        List<PatientRecord> records = patient.getRecords(0L, 100L);
+
+        assertEquals(3, records.size());
+        assertEquals("Saturation", records.get(0).getRecordType());
+        assertEquals("DiastolicPressure", records.get(1).getRecordType());
+        assertEquals(120.0, records.get(2).getMeasurementValue());
+        assertEquals(7, records.get(2).getPatientId());
+    }
+
+    @Test
+    void rangeBoundsAreInclusive() {
+        Patient patient = new Patient(1);
+        for (long ts = 1; ts <= 10; ts++) {
+            patient.addRecord(ts, "ECG", ts);
+        }
+
+        List<PatientRecord> records = patient.getRecords(3L, 5L);
+
+        assertEquals(3, records.size());
+        assertEquals(3L, records.get(0).getTimestamp());
+        assertEquals(5L, records.get(2).getTimestamp());
+    }
+
+    @Test
+    void columnsGrowPastInitialCapacity() {
+        Patient patient = new Patient(1);
+        for (int i = 0; i < 10_000; i++) {
+            patient.addRecord(i * 0.5, "ECG", i);
+        }
+
+        List<PatientRecord> records = patient.getRecords(0L, Long.MAX_VALUE);
+
+        assertEquals(10_000, records.size());
+        assertEquals(4999.5, records.get(9_999).getMeasurementValue());
+    }
+
+    @Test
+    void lateArrivalsAreMergedIntoTimeOrder() {
+        Patient patient = new Patient(1);
+        patient.addRecord(1.0, "ECG", 10L);
+        patient.addRecord(3.0, "ECG", 30L);
+        patient.addRecord(2.0, "ECG", 20L); // arrives late
+        patient.addRecord(0.0, "ECG", 5L);  // arrives late, before everything
+
+        List<PatientRecord> records = patient.getRecords(0L, 100L);
+
+        assertEquals(4, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals((double) i, records.get(i).getMeasurementValue());
+        }
+        assertEquals(2, patient.getRecords(6L, 20L).size());
+    }
+
+    @Test
+    void emptyAndReversedWindowsReturnNothing() {
+        Patient patient = new Patient(1);
+        patient.addRecord(1.0, "ECG", 10L);
+
+        assertTrue(patient.getRecords(11L, 20L).isEmpty());
+        assertTrue(patient.getRecords(20L, 0L).isEmpty());
+        assertTrue(new Patient(2).getRecords(0L, 100L).isEmpty());
+    }
+
+    @Test
+    void recordTypesAreRegisteredOnceAndKeepTheirLabel() {
+        int id = RecordTypes.idOf("HeartRate");
+
+        assertEquals(id, RecordTypes.idOf("HeartRate"));
+        assertEquals("HeartRate", RecordTypes.label(id));
+        assertEquals(RecordTypes.Category.SYSTOLIC_PRESSURE, RecordTypes.category(RecordTypes.idOf("Systolic")));
+        assertEquals(RecordTypes.Category.SATURATION, RecordTypes.category(RecordTypes.SATURATION));
+
+        Patient patient = new Patient(1);
+        patient.addRecord(72.0, id, 1L);
+        PatientRecord record = patient.getRecords(0L, 1L).get(0);
+        assertEquals("HeartRate", record.getRecordType());
+        assertEquals(id, record.getRecordTypeId());
+    }
+}
@@ -0,0 +1,124 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.alerts.AlertGenerator;
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+import com.data_management.PatientRecord;
+import com.data_management.RecordTypes;
+import com.data_management.RetentionPolicy;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+class RetentionPolicyTest {
+
+    @Test
+    void olderSamplesAreDownsampledThenDropped() {
+        // 10 raw samples, then averages of 5 raw samples, 3 of them
+        Patient patient = new Patient(1, RetentionPolicy.unbounded().with("ECG", 10, 5, 3));
+        for (int i = 0; i < 40; i++) {
+            patient.addRecord(i, "ECG", i * 10L);
+        }
+
+        List<PatientRecord> records = patient.getRecords(0L, Long.MAX_VALUE);
+        // averages of 15..19, 20..24 and 25..29, then raw 30..39
+        assertEquals(13, records.size());
+        assertEquals(150L, records.get(0).getTimestamp());
+        assertEquals(17.0, records.get(0).getMeasurementValue());
+        assertEquals(27.0, records.get(2).getMeasurementValue());
+        assertEquals(300L, records.get(3).getTimestamp());
+        assertEquals(39.0, records.get(12).getMeasurementValue());
+
+        List<PatientRecord> window = patient.getRecords(200L, 320L);
+        assertEquals(List.of(200L, 250L, 300L, 310L, 320L),
+                window.stream().map(PatientRecord::getTimestamp).toList());
+
+        List<PatientRecord> latest = patient.getLatestRecords(RecordTypes.ECG, 12);
+        assertEquals(12, latest.size());
+        assertEquals(22.0, latest.get(0).getMeasurementValue());
+        assertEquals(39.0, latest.get(11).getMeasurementValue());
+    }
+
+    @Test
+    void withoutADownsampledRingOnlyTheNewestSamplesAreKept() {
+        RetentionPolicy policy = RetentionPolicy.unbounded().withDefault(4, 1, 0).with("Saturation", 100, 10, 50);
+        Patient patient = new Patient(2, policy);
+        for (int i = 0; i < 10; i++) {
+            patient.addRecord(i, "Cholesterol", i);
+        }
+        patient.addRecord(5.5, "Cholesterol", 5L); // late, before the window: dropped
+        patient.addRecord(7.5, "Cholesterol", 7L); // late, within the window: merged
+
+        List<PatientRecord> records = patient.getRecords(0L, Long.MAX_VALUE);
+        assertEquals(List.of(7.0, 7.5, 8.0, 9.0),
+                records.stream().map(PatientRecord::getMeasurementValue).toList());
+
+        int rollupBytes = (3_600 + 1_440 + 744) * 36; // seconds, minutes and hours
+        assertEquals(64 + rollupBytes, policy.maxBytes("Cholesterol"));
+        assertEquals(150 * 16 + rollupBytes, policy.maxBytes("Saturation"));
+        assertEquals(64, policy.withRollups(0).maxBytes("Cholesterol"));
+        assertEquals(150 * 16 + 744 * 36, policy.withRollups("Saturation", 3_600_000).maxBytes("Saturation"));
+        assertEquals(-1, RetentionPolicy.unbounded().maxBytes("ECG"));
+        assertThrows(IllegalArgumentException.class, () -> policy.with("ECG", 4, 5, 1));
+    }
+
+    @Test
+    void alertsStillFireOverRetainedData() {
+        DataStorage storage = new DataStorage(RetentionPolicy.unbounded().withDefault(8, 4, 8));
+        for (int i = 0; i < 100; i++) {
+            storage.addPatientData(3, 98, "Saturation", i * 1000L);
+        }
+        AlertGenerator alerts = AlertGenerator.attach(storage);
+        storage.addPatientData(3, 89, "Saturation", 100_000L);
+
+        assertEquals(5 + 8, storage.getRecords(3, 0L, Long.MAX_VALUE).size()); // raw and downsampled
+        assertFalse(alerts.getAlerts(3, 0L, Long.MAX_VALUE).isEmpty());
+        alerts.evaluateAll();
+        assertFalse(alerts.getAlerts(3, 0L, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    void readersNeverSeeTornSamplesWhileTheRingIsOverwritten() throws Exception {
+        Patient patient = new Patient(4, RetentionPolicy.unbounded().with("ECG", 64, 8, 16));
+        int samples = 200_000;
+        AtomicReference<AssertionError> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < samples; i++) {
+                patient.addRecord(i, "ECG", i);
+                if (i % 97 == 0) {
+                    patient.addRecord(i - 0.5, "ECG", i - 1); // late, shifts the ring in place
+                }
+            }
+        });
+        writer.start();
+        int reads = 0;
+        while (writer.isAlive() || reads == 0) {
+            reads++;
+            List<PatientRecord> records = patient.getRecords(0L, Long.MAX_VALUE);
+            if (records.isEmpty()) {
+                continue; // nothing stored yet
+            }
+            try {
+                assertTrue(records.size() <= 80);
+                long previous = Long.MIN_VALUE;
+                for (PatientRecord record : records) {
+                    assertTrue(record.getTimestamp() >= previous, "sorted");
+                    previous = record.getTimestamp();
+                }
+                // the raw tail holds each sample with the value written for its timestamp
+                PatientRecord newest = records.get(records.size() - 1);
+                assertEquals((double) newest.getTimestamp(), newest.getMeasurementValue());
+            } catch (AssertionError e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+        writer.join();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        assertEquals(samples - 1.0, patient.getLatestRecords(RecordTypes.ECG, 1).get(0).getMeasurementValue());
+    }
+}
@@ -0,0 +1,161 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+import com.data_management.RecordBatch;
+import com.data_management.RecordTypes;
+import com.data_management.RetentionPolicy;
+import com.data_management.RollupBucket;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+class RollupTest {
+
+    @Test
+    void queriesUseTheCoarsestTierWithinTheRequestedResolution() {
+        DataStorage storage = new DataStorage();
+        for (int i = 0; i < 7_200; i++) { // two hours at 1 Hz
+            storage.addPatientData(1, i % 100, "Saturation", i * 1000L);
+        }
+
+        List<RollupBucket> hours = storage.getRollups(1, "Saturation", 0L, Long.MAX_VALUE, 24 * 3_600_000L);
+        assertEquals(2, hours.size());
+        assertEquals(3_600_000L, hours.get(1).getStartTime());
+        assertEquals(3_600_000L, hours.get(1).getWidthMillis());
+        assertEquals(3_600, hours.get(0).getCount());
+        assertEquals(0.0, hours.get(0).getMin());
+        assertEquals(99.0, hours.get(0).getMax());
+
+        List<RollupBucket> minutes = storage.getRollups(1, "Saturation", 60_000L, 179_999L, 60_000L);
+        assertEquals(2, minutes.size());
+        assertEquals(60, minutes.get(0).getCount());
+        double expected = 0;
+        for (int i = 60; i < 120; i++) {
+            expected += i % 100;
+        }
+        assertEquals(expected / 60, minutes.get(0).getAverage(), 1e-9);
+
+        // a bucket overlapping either end of the range is included
+        assertEquals(3, storage.getRollups(1, "Saturation", 59_999L, 120_000L, 60_000L).size());
+        assertTrue(storage.getRollups(2, "Saturation", 0L, Long.MAX_VALUE, 1_000L).isEmpty());
+    }
+
+    @Test
+    void olderPartsOfTheRangeComeFromCoarserTiers() {
+        DataStorage storage = new DataStorage();
+        for (int i = 0; i < 7_200; i++) {
+            storage.addPatientData(1, 1.0, "ECG", i * 1000L);
+        }
+
+        // the seconds only reach back an hour: the first hour comes in minutes
+        List<RollupBucket> buckets = storage.getRollups(1, "ECG", 0L, Long.MAX_VALUE, 100L);
+        assertEquals(60 + 3_600, buckets.size());
+        assertEquals(60_000L, buckets.get(59).getWidthMillis());
+        assertEquals(1_000L, buckets.get(60).getWidthMillis());
+        assertEquals(3_600_000L, buckets.get(60).getStartTime());
+        long previousEnd = Long.MIN_VALUE;
+        int total = 0;
+        for (RollupBucket bucket : buckets) {
+            assertTrue(bucket.getStartTime() >= previousEnd, "buckets never overlap");
+            previousEnd = bucket.getStartTime() + bucket.getWidthMillis();
+            total += bucket.getCount();
+        }
+        assertEquals(7_200, total);
+    }
+
+    @Test
+    void lateAndBatchedSamplesRollUpWhateverTheRetention() {
+        DataStorage storage = new DataStorage(RetentionPolicy.unbounded().withDefault(10, 1, 0));
+        RecordBatch batch = new RecordBatch(4);
+        batch.add(3, 90, RecordTypes.SATURATION, 5_500L);
+        batch.add(3, 96, RecordTypes.SATURATION, 61_000L);
+        batch.add(3, 94, RecordTypes.SATURATION, 5_100L); // late within the batch
+        storage.addBatch(batch);
+        storage.addPatientData(3, 99, "Saturation", 2_000L); // late, in a new bucket before the others
+        for (int i = 0; i < 20; i++) {
+            storage.addPatientData(3, 95, "Saturation", 120_000L + i);
+        }
+
+        assertEquals(10, storage.getRecords(3, 0L, Long.MAX_VALUE).size());
+        List<RollupBucket> seconds = storage.getRollups(3, "Saturation", 0L, 61_999L, 1_000L);
+        assertEquals(List.of(2_000L, 5_000L, 61_000L), seconds.stream().map(RollupBucket::getStartTime).toList());
+        assertEquals(2, seconds.get(1).getCount());
+        assertEquals(90.0, seconds.get(1).getMin());
+        assertEquals(94.0, seconds.get(1).getMax());
+        assertEquals(92.0, seconds.get(1).getAverage());
+
+        List<RollupBucket> hour = storage.getRollups(3, "Saturation", 0L, Long.MAX_VALUE, 3_600_000L);
+        assertEquals(1, hour.size());
+        assertEquals(24, hour.get(0).getCount());
+        assertEquals(99.0, hour.get(0).getMax());
+    }
+
+    @Test
+    void thePolicyPicksTheFinestTierAndTheMemoryIsCounted() {
+        RetentionPolicy policy = RetentionPolicy.unbounded().withDefault(60, 1, 0)
+                .withRollups(60_000).withRollups("ECG", 0);
+        DataStorage storage = new DataStorage(policy);
+        for (int i = 0; i < 20_000; i++) {
+            storage.addPatientData(1, 97, "Saturation", i * 1000L);
+            storage.addPatientData(1, 0.5, "ECG", i * 1000L);
+        }
+
+        // no seconds: the minutes serve a finer request
+        List<RollupBucket> buckets = storage.getRollups(1, "Saturation", 0L, 599_999L, 1_000L);
+        assertEquals(10, buckets.size());
+        assertEquals(60_000L, buckets.get(0).getWidthMillis());
+        assertEquals(60, buckets.get(0).getCount());
+        assertTrue(storage.getRollups(1, "ECG", 0L, Long.MAX_VALUE, 60_000L).isEmpty());
+
+        long stored = storage.getAllPatients().get(0).getStoredBytes();
+        assertTrue(stored > 2 * 60 * 16, "rollups are counted: " + stored);
+        assertTrue(stored <= policy.maxBytes("Saturation") + policy.maxBytes("ECG"), stored + " bytes");
+        assertThrows(IllegalArgumentException.class, () -> policy.withRollups(30_000));
+    }
+
+    @Test
+    void queriesNeverSeeTornBucketsWhileTheyAreUpdated() throws Exception {
+        Patient patient = new Patient(4);
+        int seconds = 20_000;
+        AtomicReference<AssertionError> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < seconds; i++) {
+                for (int k = 0; k < 4; k++) {
+                    patient.addRecord(5.0, RecordTypes.ECG, i * 1000L + k * 250L);
+                }
+                if (i % 97 == 0 && i > 10) {
+                    patient.addRecord(5.0, RecordTypes.ECG, (i - 10) * 1000L + 999L); // late, into an older bucket
+                }
+            }
+        });
+        writer.start();
+        int reads = 0;
+        while (writer.isAlive() || reads == 0) {
+            reads++;
+            List<RollupBucket> buckets = patient.getRollups(RecordTypes.ECG, 0L, Long.MAX_VALUE, 1_000L);
+            try {
+                long previousEnd = Long.MIN_VALUE;
+                for (RollupBucket bucket : buckets) {
+                    assertTrue(bucket.getStartTime() >= previousEnd, "buckets never overlap");
+                    previousEnd = bucket.getStartTime() + bucket.getWidthMillis();
+                    assertTrue(bucket.getCount() > 0);
+                    assertEquals(5.0, bucket.getMin());
+                    assertEquals(5.0, bucket.getMax());
+                    assertEquals(5.0, bucket.getAverage());
+                }
+            } catch (AssertionError e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+        writer.join();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        List<RollupBucket> hours = patient.getRollups(RecordTypes.ECG, 0L, Long.MAX_VALUE, 3_600_000L);
+        assertEquals(4 * seconds + (seconds - 1) / 97, hours.stream().mapToInt(RollupBucket::getCount).sum());
+    }
+}
@@ -0,0 +1,93 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.outputs.FileOutputStrategy;
+import com.cardio_generator.outputs.Label;
+import com.cardio_generator.outputs.SampleBatch;
+import com.data_management.DataStorage;
+import com.data_management.FileDataReader;
+import com.data_management.PatientRecord;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class SampleBatchTest {
+
+    @Test
+    void batchGenerateSharesOneTimestampPerTick() {
+        int[] patientIds = {4, 2, 7, 5};
+        SampleBatch batch = new SampleBatch(1);
+        new BloodPressureDataGenerator(10).generate(patientIds, 1, 3, batch);
+
+        assertEquals(4, batch.size());
+        assertEquals(2, batch.patientIdAt(0));
+        assertEquals(Label.SYSTOLIC_PRESSURE, batch.labelAt(0));
+        assertEquals(Label.DIASTOLIC_PRESSURE, batch.labelAt(1));
+        assertEquals(7, batch.patientIdAt(3));
+        for (int i = 1; i < batch.size(); i++) {
+            assertEquals(batch.timestampAt(0), batch.timestampAt(i));
+        }
+
+        batch.clear();
+        assertEquals(0, batch.size());
+    }
+
+    @Test
+    void formattedSamplesMustCarryAKnownLabel() {
+        SampleBatch batch = new SampleBatch();
+        batch.output(1, 1000L, "Saturation", "97.0%");
+        batch.output(1, 1000L, "Alert", "triggered");
+        assertEquals(97.0, batch.valueAt(0));
+        assertEquals(1.0, batch.valueAt(1));
+        assertThrows(IllegalArgumentException.class, () -> batch.output(1, 1000L, "Weight", "80.0"));
+        assertThrows(IllegalArgumentException.class, () -> batch.output(1, 1000L, "ECG", "high"));
+    }
+
+    @Test
+    void blocksAreAddedWithEvenlySpacedTimestamps() {
+        SampleBatch batch = new SampleBatch(2);
+        batch.add(9, 1L, Label.ALERT, 1);
+        batch.output(4, 100L, 4, Label.ECG, new double[] {0.1, 0.2, 0.3, 0.4}, 1, 3);
+        assertEquals(4, batch.size());
+        assertEquals(4, batch.patientIdAt(3));
+        assertEquals(Label.ECG, batch.labelAt(1));
+        assertEquals(108L, batch.timestampAt(3));
+        assertEquals(0.4, batch.valueAt(3));
+    }
+
+    @Test
+    void fileOutputWritesWholeBatchesAndBlocksInOrder() throws IOException {
+        Path dir = Files.createTempDirectory("sample-batch");
+        FileOutputStrategy output = new FileOutputStrategy(dir.toString());
+        SampleBatch batch = new SampleBatch(16);
+        int samples = 1000; // more than one claim of the queue
+        for (int i = 0; i < samples; i++) {
+            batch.add(1, 1000L + i, Label.ECG, i / 8.0);
+        }
+        batch.add(2, 1000L, Label.SATURATION, 95);
+        output.output(batch);
+        double[] block = {0.5, -0.25, 1.0};
+        output.output(3, 5000L, 2, Label.ECG, block, 1, 2);
+        batch.clear();
+        output.close();
+
+        DataStorage storage = new DataStorage();
+        new FileDataReader(dir.toString()).readData(storage);
+        List<PatientRecord> ecg = storage.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(samples, ecg.size());
+        for (int i = 0; i < samples; i++) {
+            assertEquals(1000L + i, ecg.get(i).getTimestamp());
+            assertEquals(i / 8.0, ecg.get(i).getMeasurementValue());
+        }
+        assertEquals(95.0, storage.getRecords(2, 0, Long.MAX_VALUE).get(0).getMeasurementValue());
+        List<PatientRecord> third = storage.getRecords(3, 0, Long.MAX_VALUE);
+        assertEquals(2, third.size());
+        assertEquals(5002L, third.get(1).getTimestamp());
+        assertEquals(1.0, third.get(1).getMeasurementValue());
+    }
+}
@@ -0,0 +1,109 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.alerts.AlertGenerator;
+import com.cardio_generator.outputs.Label;
+import com.cardio_generator.outputs.TcpOutputStrategy;
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.TcpDataReader;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+class TcpDataReaderTest {
+
+    @Test
+    void streamsTcpOutputIntoStorageAndAlerts() throws Exception {
+        TcpOutputStrategy output = new TcpOutputStrategy(0);
+        DataStorage storage = new DataStorage();
+        AlertGenerator alerts = AlertGenerator.attach(storage);
+        TcpDataReader reader = new TcpDataReader("localhost", output.getPort(), 10, 50);
+        Thread follower = follow(reader, storage);
+        try {
+            waitFor(() -> output.getClientCount() == 1);
+            long now = System.currentTimeMillis();
+            int samples = 5000;
+            for (int i = 0; i < samples; i++) {
+                output.output(1, now + i, Label.ECG, i / 1000.0);
+            }
+            output.output(2, now, "Saturation", "85.0%");
+            output.output(2, now + 1, "Alert", "triggered");
+            waitFor(() -> reader.getRecordsRead() == samples + 2);
+
+            List<PatientRecord> ecg = storage.getRecords(1, 0, Long.MAX_VALUE);
+            assertEquals(samples, ecg.size());
+            for (int i = 0; i < samples; i++) {
+                assertEquals(now + i, ecg.get(i).getTimestamp());
+                assertEquals(i / 1000.0, ecg.get(i).getMeasurementValue());
+            }
+            List<PatientRecord> second = storage.getRecords(2, 0, Long.MAX_VALUE);
+            assertEquals(85.0, second.get(0).getMeasurementValue());
+            assertEquals(1.0, second.get(1).getMeasurementValue());
+            assertEquals(0, reader.getLinesSkipped());
+            assertFalse(alerts.getAlerts(2, 0, Long.MAX_VALUE).isEmpty());
+            assertTrue(reader.getMaxLagMillis() >= 0);
+            assertEquals(samples + 2, reader.getReport().getRecords());
+        } finally {
+            reader.close();
+            output.close();
+            follower.join(5000);
+        }
+        assertFalse(follower.isAlive());
+    }
+
+    @Test
+    void reconnectsWhenTheServerComesBack() throws Exception {
+        TcpOutputStrategy first = new TcpOutputStrategy(0);
+        int port = first.getPort();
+        DataStorage storage = new DataStorage();
+        TcpDataReader reader = new TcpDataReader("localhost", port, 10, 50);
+        Thread follower = follow(reader, storage);
+        TcpOutputStrategy second = null;
+        try {
+            waitFor(() -> first.getClientCount() == 1);
+            first.output(3, 1000L, "ECG", "0.5");
+            waitFor(() -> reader.getRecordsRead() == 1);
+            first.close();
+
+            second = new TcpOutputStrategy(port);
+            TcpOutputStrategy restarted = second;
+            waitFor(() -> restarted.getClientCount() == 1);
+            restarted.output(3, 2000L, "ECG", "0.25");
+            waitFor(() -> reader.getRecordsRead() == 2);
+
+            assertEquals(2, reader.getConnectionCount());
+            assertEquals(2, storage.getRecords(3, 0, Long.MAX_VALUE).size());
+        } finally {
+            reader.close();
+            if (second != null) {
+                second.close();
+            }
+            follower.join(5000);
+        }
+        assertFalse(follower.isAlive());
+    }
+
+    private static Thread follow(TcpDataReader reader, DataStorage storage) {
+        Thread follower = new Thread(() -> {
+            try {
+                reader.readData(storage);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        follower.setDaemon(true);
+        follower.start();
+        return follower;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,94 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.outputs.TcpOutputStrategy;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TcpOutputStrategyTest {
+
+    @Test
+    void slowClientDoesNotBlockGeneratorsOrOtherClients() throws Exception {
+        int capacity = 1024;
+        TcpOutputStrategy output = new TcpOutputStrategy(0, capacity, TcpOutputStrategy.OverloadPolicy.DROP_OLDEST);
+        try (Socket fast = new Socket("localhost", output.getPort());
+             Socket stalled = new Socket()) {
+            stalled.setReceiveBufferSize(4096);
+            stalled.connect(new InetSocketAddress("localhost", output.getPort()));
+            waitForClients(output, 2);
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(fast.getInputStream(), StandardCharsets.UTF_8));
+
+            int lines = 40_000;
+            String data = "0.5".repeat(100); // large lines fill the stalled client's socket buffers quickly
+            AtomicInteger received = new AtomicInteger();
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < lines; i++) {
+                    // stay well inside the ring for the client that reads, however slowly it is scheduled
+                    while (i - received.get() > capacity / 2) {
+                        sleepQuietly();
+                    }
+                    output.output(1, i, "ECG", data);
+                }
+            });
+            producer.start();
+
+            fast.setSoTimeout(5000);
+            long last = -1;
+            while (last < lines - 1) {
+                String[] fields = reader.readLine().split(",");
+                assertEquals("1", fields[0]);
+                long timestamp = Long.parseLong(fields[1]);
+                assertTrue(timestamp > last);
+                last = timestamp;
+                received.incrementAndGet();
+            }
+            producer.join();
+            assertEquals(lines, received.get());
+            assertEquals(0, output.getDroppedCount(fast.getLocalSocketAddress()));
+            assertTrue(output.getDroppedCount(stalled.getLocalSocketAddress()) > 0);
+        } finally {
+            output.close();
+        }
+    }
+
+    @Test
+    void disconnectPolicyClosesClientThatFallsBehind() throws Exception {
+        TcpOutputStrategy output = new TcpOutputStrategy(0, 16, TcpOutputStrategy.OverloadPolicy.DISCONNECT);
+        try (Socket stalled = new Socket("localhost", output.getPort())) {
+            stalled.setReceiveBufferSize(1024);
+            waitForClients(output, 1);
+            String data = "97.0%".repeat(60); // enough to fill the socket buffers
+            for (int i = 0; i < 200_000 && output.getClientCount() > 0; i++) {
+                output.output(2, i, "Saturation", data);
+            }
+            waitForClients(output, 0);
+            assertEquals(0, output.getClientCount());
+        } finally {
+            output.close();
+        }
+    }
+
+    private static void sleepQuietly() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitForClients(TcpOutputStrategy output, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (output.getClientCount() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, output.getClientCount());
+    }
+}
@@ -0,0 +1,92 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.SchedulingStats;
+import com.cardio_generator.TickScheduler;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TickSchedulerTest {
+
+    private static final OutputStrategy DISCARD = (patientId, timestamp, label, data) -> {
+    };
+
+    @Test
+    void patientsAreSpreadOverEveryTickOfTheirPeriod() {
+        TickScheduler scheduler = new TickScheduler(1, new Random(3), new SchedulingStats("tick"));
+        List<Integer> patients = new ArrayList<>();
+        for (int i = 1; i <= 12_000; i++) {
+            patients.add(i);
+        }
+        BloodPressureDataGenerator generator = new BloodPressureDataGenerator(patients.size(), 1);
+        scheduler.schedule(generator, DISCARD, patients, 1, TimeUnit.SECONDS);
+        scheduler.schedule(generator, DISCARD, patients, 1, TimeUnit.MINUTES);
+        scheduler.schedule(generator, DISCARD, patients, 2, TimeUnit.MINUTES);
+        scheduler.shutdown();
+
+        assertArrayEquals(new int[] {12_000}, scheduler.getBucketSizes(0));
+        for (int group = 1; group <= 2; group++) {
+            int[] sizes = scheduler.getBucketSizes(group);
+            assertEquals(60 * group, sizes.length);
+            int expected = 12_000 / sizes.length;
+            int total = 0;
+            for (int size : sizes) {
+                // within about five standard deviations of a uniform draw
+                assertTrue(Math.abs(size - expected) < 5 * Math.sqrt(expected), size + " of " + expected);
+                total += size;
+            }
+            assertEquals(12_000, total);
+        }
+    }
+
+    @Test
+    void aBucketIsNotSweptAgainWhileItsLastSweepRuns() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger sweeps = new AtomicInteger();
+        PatientDataGenerator slow = new PatientDataGenerator() {
+            @Override
+            public void generate(int patientId, OutputStrategy outputStrategy) {
+            }
+
+            @Override
+            public void generate(int[] patientIds, int from, int to, SampleBatch batch) {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sweeps.incrementAndGet();
+                try {
+                    release.await(); // the first sweep outlasts the next ticks
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            }
+        };
+        TickScheduler scheduler = new TickScheduler(2, new Random(1), new SchedulingStats("tick"));
+        scheduler.schedule(slow, DISCARD, List.of(1), 1, TimeUnit.SECONDS);
+        scheduler.start();
+        try {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (scheduler.getSkippedSweeps() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue(scheduler.getSkippedSweeps() >= 2);
+            assertEquals(1, sweeps.get());
+        } finally {
+            release.countDown();
+            scheduler.shutdown();
+        }
+        assertEquals(1, maxRunning.get());
+    }
+}
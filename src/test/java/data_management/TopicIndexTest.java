@@ -0,0 +1,48 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.outputs.TopicIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+class TopicIndexTest {
+
+    @Test
+    void routesEachSampleOnlyToMatchingSubscribersOnce() {
+        TopicIndex<String> index = new TopicIndex<>();
+        index.subscribe("bedside", Set.of(42), Set.of("ECG", "Saturation"));
+        index.subscribe("patient", Set.of(42, 7), null);
+        index.subscribe("ward-ecg", null, Set.of("ECG"));
+        index.subscribe("archive", null, null);
+
+        assertEquals(List.of("bedside", "patient", "ward-ecg", "archive"), route(index, 42, "ECG"));
+        assertEquals(List.of("patient", "archive"), route(index, 42, "Cholesterol"));
+        assertEquals(List.of("patient", "ward-ecg", "archive"), route(index, 7, "ECG"));
+        assertEquals(List.of("archive"), route(index, 8, "Saturation"));
+    }
+
+    @Test
+    void resubscribingReplacesAndUnsubscribingRemoves() {
+        TopicIndex<String> index = new TopicIndex<>();
+        index.subscribe("display", Set.of(1), Set.of("ECG"));
+        index.subscribe("display", Set.of(2), Set.of("ECG"));
+
+        assertTrue(route(index, 1, "ECG").isEmpty());
+        assertEquals(List.of("display"), route(index, 2, "ECG"));
+
+        index.unsubscribe("display");
+        assertTrue(route(index, 2, "ECG").isEmpty());
+        assertEquals(0, index.size());
+        index.unsubscribe("display"); // unknown subscribers are ignored
+    }
+
+    private static List<String> route(TopicIndex<String> index, int patientId, String label) {
+        List<String> matches = new ArrayList<>();
+        index.route(patientId, label, matches::add);
+        return matches;
+    }
+}
@@ -0,0 +1,74 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.SchedulingStats;
+import com.cardio_generator.VirtualThreadScheduler;
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+class VirtualThreadSchedulerTest {
+
+    private static final OutputStrategy DISCARD = (patientId, timestamp, label, data) -> {
+    };
+
+    @Test
+    void everyRegistrationRunsOncePerPeriodForEveryPatient() throws Exception {
+        int patients = 50;
+        long[] periods = {20, 50};
+        AtomicIntegerArray[] runs = {new AtomicIntegerArray(patients + 1), new AtomicIntegerArray(patients + 1)};
+        VirtualThreadScheduler scheduler = new VirtualThreadScheduler(new Random(5), new SchedulingStats("virtual"));
+        for (int r = 0; r < periods.length; r++) {
+            AtomicIntegerArray counts = runs[r];
+            PatientDataGenerator generator = (patientId, output) -> counts.incrementAndGet(patientId);
+            scheduler.schedule(generator, DISCARD, periods[r], TimeUnit.MILLISECONDS);
+        }
+        List<Integer> patientIds = new ArrayList<>();
+        for (int id = 1; id <= patients; id++) {
+            patientIds.add(id);
+        }
+
+        long started = System.nanoTime();
+        scheduler.start(patientIds);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (minimum(runs[1], patients) < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread stopper = new Thread(() -> {
+            scheduler.shutdown();
+            scheduler.awaitTermination();
+        });
+        stopper.start();
+        stopper.join(5000);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertFalse(stopper.isAlive(), "awaitTermination returns after shutdown");
+        assertEquals(0, scheduler.liveThreadCount());
+        for (int r = 0; r < periods.length; r++) {
+            // a run is only due once per period, so a late patient catches up but never runs ahead
+            long most = elapsedMillis / periods[r] + 1;
+            for (int id = 1; id <= patients; id++) {
+                int count = runs[r].get(id);
+                assertTrue(count >= 1 && count <= most,
+                        "patient " + id + " ran " + count + " times every " + periods[r] + " ms in " + elapsedMillis);
+            }
+        }
+        assertTrue(minimum(runs[1], patients) >= 3);
+        assertEquals(0, runs[0].get(0), "no run for a patient that was not started");
+    }
+
+    private static int minimum(AtomicIntegerArray counts, int patients) {
+        int minimum = Integer.MAX_VALUE;
+        for (int id = 1; id <= patients; id++) {
+            minimum = Math.min(minimum, counts.get(id));
+        }
+        return minimum;
+    }
+}
@@ -0,0 +1,87 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.outputs.Label;
+import com.cardio_generator.outputs.WebSocketOutputStrategy;
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.WebSocketDataReader;
+
+import java.net.URI;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+class WebSocketDataReaderTest {
+
+    @Test
+    void followsBinaryFramesOfItsSubscription() throws Exception {
+        WebSocketOutputStrategy output = new WebSocketOutputStrategy(0, 5, 256,
+                WebSocketOutputStrategy.FrameFormat.BINARY);
+        DataStorage storage = new DataStorage();
+        WebSocketDataReader reader = null;
+        Thread follower = null;
+        try {
+            waitFor(() -> output.getPort() > 0);
+            reader = new WebSocketDataReader(URI.create("ws://localhost:" + output.getPort()),
+                    "subscribe patients=1 labels=ECG,Saturation", 10, 50);
+            follower = follow(reader, storage);
+            waitFor(() -> output.getSubscriberCount() == 1);
+
+            long now = System.currentTimeMillis();
+            int samples = 1000; // several frames
+            for (int i = 0; i < samples; i++) {
+                output.output(1, now + i, Label.ECG, i / 1000.0);
+                output.output(2, now + i, Label.ECG, -1.0);          // other patient: filtered out
+            }
+            output.output(1, now, "Alert", "triggered");             // other label: filtered out
+            output.output(1, now + samples, "Saturation", "95.0%");  // last: everything before it has arrived
+            WebSocketDataReader following = reader;
+            waitFor(() -> following.getRecordsRead() == samples + 1);
+
+            List<PatientRecord> records = storage.getRecords(1, 0, Long.MAX_VALUE);
+            assertEquals(samples + 1, records.size());
+            for (int i = 0; i < samples; i++) {
+                assertEquals(now + i, records.get(i).getTimestamp());
+                assertEquals("ECG", records.get(i).getRecordType());
+                assertEquals(i / 1000.0, records.get(i).getMeasurementValue());
+            }
+            assertEquals("Saturation", records.get(samples).getRecordType());
+            assertEquals(95.0, records.get(samples).getMeasurementValue());
+            assertTrue(storage.getRecords(2, 0, Long.MAX_VALUE).isEmpty());
+            assertEquals(0, reader.getLinesSkipped());
+            assertEquals(1, reader.getConnectionCount());
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+            output.close();
+            if (follower != null) {
+                follower.join(5000);
+            }
+        }
+        assertFalse(follower.isAlive());
+    }
+
+    private static Thread follow(WebSocketDataReader reader, DataStorage storage) {
+        Thread follower = new Thread(() -> {
+            try {
+                reader.readData(storage);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        follower.setDaemon(true);
+        follower.start();
+        return follower;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}